@@ -0,0 +1,27 @@
+package server.benchmark;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+// Запуск как у org.openjdk.jmh.Main, но всегда с профилем аллокаций и JSON-отчётом
+public class BenchmarkRunner {
+    public static void main(String[] args) throws RunnerException, CommandLineOptionException {
+        var commandLine = new CommandLineOptions(args);
+        var options = new OptionsBuilder()
+                .parent(commandLine)
+                .addProfiler(GCProfiler.class);
+        if (commandLine.getResult().hasValue() || commandLine.getResultFormat().hasValue()) {
+            new Runner(options.build()).run();
+            return;
+        }
+        new Runner(options
+                .resultFormat(ResultFormatType.JSON)
+                .result("jmh-result.json")
+                .build()).run();
+    }
+}
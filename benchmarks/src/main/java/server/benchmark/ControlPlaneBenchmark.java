@@ -0,0 +1,309 @@
+package server.benchmark;
+
+import server.client.manager.ClientManager;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/*
+ * Нагрузка командами управления (echo, time, list, help, ping) через loopback для TCP и UDP.
+ * Открытый цикл: в каждом сеансе пишущий поток шлёт команды по расписанию, суммарно rate в секунду,
+ * не дожидаясь ответов, а читающий поток сопоставляет ответы с очередью отправленных команд по порядку.
+ * Медленный сервер не снижает предлагаемую нагрузку (offered_rate): насыщение видно по отставанию
+ * achieved_rate (ответы, полученные за время измерения) и росту задержки. Ответы на команды,
+ * не получившие их за DRAIN_NANOS после конца, считаются в unanswered. Задержка считается от запланированного момента отправки,
+ * время обслуживания - от фактической. Первые warmup секунд не учитываются.
+ * Пример:
+ *   java -cp benchmarks.jar server.benchmark.ControlPlaneBenchmark \
+ *        --transports tcp,udp --sessions 10,100 --rates 1000,10000 \
+ *        --mix echo=70,time=10,list=10,ping=10 --duration 10 --warmup 2 --output control-results.json
+ */
+public class ControlPlaneBenchmark {
+    private static final long START_DELAY_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+    // Сколько после конца прогона ждать ответов на уже отправленные команды
+    private static final long DRAIN_NANOS = TimeUnit.SECONDS.toNanos(10);
+
+    private final List<String> transports;
+    private final List<Integer> sessions;
+    private final List<Integer> rates;
+    private final List<Operation> mix;
+    private final int totalWeight;
+    private final long durationNanos;
+    private final long warmupNanos;
+    private final Path output;
+
+    private record Operation(String name, String line, int weight) {
+        static Operation parse(String spec) {
+            String[] parts = spec.split("=");
+            String name = parts[0].trim().toLowerCase(Locale.ROOT);
+            int weight = parts.length > 1 ? Integer.parseInt(parts[1].trim()) : 1;
+            String line = switch (name) {
+                case "ping" -> ClientManager.HEARTBEAT_REQUEST;
+                case "echo" -> "echo load";
+                case "time", "list", "help" -> name;
+                default -> throw new IllegalArgumentException("Неизвестная команда в --mix: " + name);
+            };
+            return new Operation(name, line, weight);
+        }
+    }
+
+    // Своя пара гистограмм на команду в каждом сеансе, складываются после прогона
+    private static final class Recorder {
+        final Map<String, LatencyHistogram> latency = new TreeMap<>();
+        final Map<String, LatencyHistogram> service = new TreeMap<>();
+
+        void record(String name, long latencyNanos, long serviceNanos) {
+            latency.computeIfAbsent(name, _ -> new LatencyHistogram()).record(latencyNanos);
+            service.computeIfAbsent(name, _ -> new LatencyHistogram()).record(serviceNanos);
+        }
+
+        void add(Recorder other) {
+            other.latency.forEach((name, h) -> latency.computeIfAbsent(name, _ -> new LatencyHistogram()).add(h));
+            other.service.forEach((name, h) -> service.computeIfAbsent(name, _ -> new LatencyHistogram()).add(h));
+        }
+
+        static LatencyHistogram total(Map<String, LatencyHistogram> histograms) {
+            var total = new LatencyHistogram();
+            histograms.values().forEach(total::add);
+            return total;
+        }
+    }
+
+    // Отправленная команда, ответ на которую ещё не прочитан
+    private record Pending(Operation operation, long intended, long sent) {
+    }
+
+    private static final Pending LAST = new Pending(null, 0, 0);
+
+    // Сеанс: очередь между пишущим и читающим потоками
+    private static final class Session {
+        final TransferClient client;
+        final BlockingQueue<Pending> pending = new LinkedBlockingQueue<>();
+        final Recorder recorder = new Recorder();
+        volatile boolean failed = false;
+        long offered = 0;
+        long answered = 0;
+
+        Session(TransferClient client) {
+            this.client = client;
+        }
+    }
+
+    private record ScenarioResult(String transport, int sessions, int rate, long durationNanos, int errors,
+                                  long offered, long answered, Recorder recorder) {
+        String toJson() {
+            long completed = Recorder.total(recorder.latency).count();
+            StringJoiner commands = new StringJoiner(", ");
+            recorder.latency.forEach((name, latency) -> commands.add(String.format(Locale.ROOT,
+                    "\"%s\": {\"latency\": %s, \"service\": %s}",
+                    name, latency.toJson(), recorder.service.get(name).toJson())));
+            return String.format(Locale.ROOT, """
+                            {"transport": "%s", "sessions": %d, "target_rate": %d, "offered_rate": %.1f, \
+                            "achieved_rate": %.1f, "unanswered": %d, "errors": %d, "duration_s": %.3f, \
+                            "latency": %s, "service": %s, "commands": {%s}}""",
+                    transport, sessions, rate, offered / (durationNanos / 1e9), answered / (durationNanos / 1e9),
+                    offered - completed, errors, durationNanos / 1e9,
+                    Recorder.total(recorder.latency).toJson(), Recorder.total(recorder.service).toJson(), commands);
+        }
+    }
+
+    public ControlPlaneBenchmark(Map<String, String> options) {
+        transports = List.of(options.getOrDefault("transports", "tcp,udp").split(","));
+        sessions = Arrays.stream(options.getOrDefault("sessions", "1,10,100").split(","))
+                .map(Integer::parseInt).toList();
+        rates = Arrays.stream(options.getOrDefault("rates", "1000,10000").split(","))
+                .map(Integer::parseInt).toList();
+        mix = Arrays.stream(options.getOrDefault("mix", "echo=70,time=10,list=10,ping=10").split(","))
+                .map(Operation::parse).filter(operation -> operation.weight() > 0).toList();
+        totalWeight = mix.stream().mapToInt(Operation::weight).sum();
+        if (totalWeight == 0) {
+            throw new IllegalArgumentException("В --mix нет ни одной команды");
+        }
+        durationNanos = TimeUnit.SECONDS.toNanos(Long.parseLong(options.getOrDefault("duration", "10")));
+        warmupNanos = TimeUnit.SECONDS.toNanos(Long.parseLong(options.getOrDefault("warmup", "2")));
+        output = Paths.get(options.getOrDefault("output", "control-results.json"));
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new HashMap<>();
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            options.put(args[i].replaceFirst("^--", ""), args[i + 1]);
+        }
+        new ControlPlaneBenchmark(options).run();
+        // Воркеры в этом же процессе могут ещё отвечать оборванным после перегрузки сеансам
+        System.exit(0);
+    }
+
+    public void run() throws IOException, InterruptedException {
+        Files.createDirectories(Paths.get("download"));
+        List<ScenarioResult> results = new ArrayList<>();
+        for (String transport : transports) {
+            for (int count : sessions) {
+                for (int rate : rates) {
+                    var result = runScenario(transport, count, rate);
+                    System.out.println(result.toJson());
+                    results.add(result);
+                    writeReport(results);
+                }
+            }
+        }
+    }
+
+    private ScenarioResult runScenario(String transport, int count, int rate) throws InterruptedException {
+        List<Session> sessions = new ArrayList<>();
+        AtomicInteger errors = new AtomicInteger();
+        for (int i = 0; i < count; i++) {
+            try {
+                int port = LoopbackServer.startWorker(transport);
+                sessions.add(new Session("udp".equals(transport)
+                        ? new UdpTransferClient(port, true)
+                        : new TcpTransferClient(port, true)));
+            } catch (IOException | IllegalStateException e) {
+                errors.incrementAndGet();
+                System.err.printf("%s: не удалось подключиться: %s%n", transport, e);
+            }
+        }
+        // Сеанс шлёт команду раз в interval, фазы сеансов разнесены равномерно
+        long interval = Math.max(1, (long) (1e9 * sessions.size() / rate));
+        long start = System.nanoTime() + START_DELAY_NANOS;
+        long measureFrom = start + warmupNanos;
+        long end = measureFrom + durationNanos;
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<Future<?>> tasks = new ArrayList<>();
+            for (int i = 0; i < sessions.size(); i++) {
+                var session = sessions.get(i);
+                long first = start + interval * i / sessions.size();
+                tasks.add(executor.submit(() -> send(session, first, interval, measureFrom, end, errors)));
+                tasks.add(executor.submit(() -> receive(session, measureFrom, end, errors)));
+            }
+            long drainUntil = end + DRAIN_NANOS;
+            for (var task : tasks) {
+                try {
+                    task.get(Math.max(0, drainUntil - System.nanoTime()), TimeUnit.NANOSECONDS);
+                } catch (TimeoutException e) {
+                    // Ответы так и не пришли: прерванный поток закрывает сокет, остаток считается unanswered
+                    task.cancel(true);
+                } catch (ExecutionException e) {
+                    throw new IllegalStateException(e.getCause());
+                }
+            }
+        } finally {
+            for (var session : sessions) {
+                try {
+                    if (session.failed) {
+                        // Сервер может ещё разбирать очередь команд и не дойти до close
+                        session.client.abort();
+                    } else {
+                        session.client.close();
+                    }
+                } catch (IOException e) {
+                    // Сеанс мог уже закрыться после ошибки
+                }
+            }
+        }
+        var total = new Recorder();
+        long offered = 0;
+        long answered = 0;
+        for (var session : sessions) {
+            total.add(session.recorder);
+            offered += session.offered;
+            answered += session.answered;
+        }
+        return new ScenarioResult(transport, count, rate, durationNanos, errors.get(), offered, answered, total);
+    }
+
+    // Пишущий поток: расписание не зависит от ответов, опоздавшие команды уходят сразу.
+    // offered считает все запланированные команды, в том числе не отправленные после ошибки
+    private void send(Session session, long first, long interval, long measureFrom, long end, AtomicInteger errors) {
+        var random = ThreadLocalRandom.current();
+        long intended = first;
+        try {
+            for (; intended < end && !session.failed; intended += interval) {
+                long wait = intended - System.nanoTime();
+                if (wait > 0) {
+                    LockSupport.parkNanos(wait);
+                }
+                Operation operation = pick(random.nextInt(totalWeight));
+                session.pending.add(new Pending(operation, intended, System.nanoTime()));
+                if (intended >= measureFrom) {
+                    session.offered++;
+                }
+                session.client.send(operation.line());
+            }
+        } catch (IOException e) {
+            session.failed = true;
+            errors.incrementAndGet();
+            System.err.printf("отправка: %s%n", e);
+            intended += interval;
+        } finally {
+            session.pending.add(LAST);
+        }
+        for (; intended < end; intended += interval) {
+            if (intended >= measureFrom) {
+                session.offered++;
+            }
+        }
+    }
+
+    // Читающий поток: ответы приходят в порядке команд, поэтому берём голову очереди
+    private void receive(Session session, long measureFrom, long end, AtomicInteger errors) {
+        try {
+            for (var command = session.pending.take(); command != LAST; command = session.pending.take()) {
+                session.client.awaitReply(command.operation().line());
+                long done = System.nanoTime();
+                if (done >= measureFrom && done < end) {
+                    session.answered++;
+                }
+                if (command.intended() >= measureFrom) {
+                    session.recorder.record(command.operation().name(),
+                            done - command.intended(), done - command.sent());
+                }
+            }
+        } catch (IOException e) {
+            session.failed = true;
+            errors.incrementAndGet();
+            System.err.printf("ответ: %s%n", e);
+        } catch (InterruptedException e) {
+            session.failed = true;
+        }
+    }
+
+    private Operation pick(int ticket) {
+        for (var operation : mix) {
+            ticket -= operation.weight();
+            if (ticket < 0) {
+                return operation;
+            }
+        }
+        return mix.getLast();
+    }
+
+    private void writeReport(List<ScenarioResult> results) throws IOException {
+        try (var writer = new PrintWriter(Files.newBufferedWriter(output, StandardCharsets.UTF_8))) {
+            writer.println("{");
+            writer.printf("  \"timestamp\": \"%s\",%n", java.time.Instant.now());
+            writer.printf("  \"java\": \"%s\",%n", System.getProperty("java.version"));
+            StringJoiner weights = new StringJoiner(", ");
+            mix.forEach(operation -> weights.add("\"" + operation.name() + "\": " + operation.weight()));
+            writer.println("  \"mix\": {" + weights + "},");
+            writer.printf(Locale.ROOT, "  \"warmup_s\": %.3f,%n", warmupNanos / 1e9);
+            writer.println("  \"load_model\": \"open-loop\",");
+            writer.println("  \"settings\": {" + LoopbackTransferBenchmark.serverSettings() + "},");
+            writer.println("  \"scenarios\": [");
+            for (int i = 0; i < results.size(); i++) {
+                writer.print("    " + results.get(i).toJson());
+                writer.println(i + 1 < results.size() ? "," : "");
+            }
+            writer.println("  ]");
+            writer.println("}");
+        }
+    }
+}
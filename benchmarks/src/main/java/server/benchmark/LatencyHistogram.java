@@ -0,0 +1,75 @@
+package server.benchmark;
+
+import java.util.Locale;
+
+/*
+ * Гистограмма задержек в духе HdrHistogram: корзины по степеням двойки, каждая поделена на 128 подкорзин,
+ * так что относительная погрешность любого значения меньше 1% во всём диапазоне long.
+ * Запись без выделения памяти и блокировок: у каждого потока своя гистограмма, в конце они складываются.
+ */
+final class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 8;
+    private static final int SUB_BUCKET_HALF = 1 << (SUB_BUCKET_BITS - 1);
+    private static final int SIZE = (Long.SIZE - SUB_BUCKET_BITS + 1) * SUB_BUCKET_HALF + SUB_BUCKET_HALF;
+
+    private final long[] counts = new long[SIZE];
+    private long total = 0;
+    private long max = 0;
+
+    void record(long nanos) {
+        long value = Math.max(nanos, 0);
+        counts[index(value)]++;
+        total++;
+        max = Math.max(max, value);
+    }
+
+    void add(LatencyHistogram other) {
+        for (int i = 0; i < SIZE; i++) {
+            counts[i] += other.counts[i];
+        }
+        total += other.total;
+        max = Math.max(max, other.max);
+    }
+
+    long count() {
+        return total;
+    }
+
+    // Значения меньше 2^8 лежат каждое в своей ячейке, дальше ячейка покрывает 2^shift значений
+    private static int index(long value) {
+        int shift = Math.max(0, Long.SIZE - 1 - Long.numberOfLeadingZeros(value) - (SUB_BUCKET_BITS - 1));
+        return (shift << (SUB_BUCKET_BITS - 1)) + (int) (value >>> shift);
+    }
+
+    // Наибольшее значение, попадающее в ячейку: процентиль не занижается из-за округления
+    private static long highestValue(int index) {
+        if (index < 2 * SUB_BUCKET_HALF) {
+            return index;
+        }
+        int shift = (index >> (SUB_BUCKET_BITS - 1)) - 1;
+        long sub = index - ((long) shift << (SUB_BUCKET_BITS - 1));
+        return ((sub + 1) << shift) - 1;
+    }
+
+    long valueAtPercentile(double percentile) {
+        if (total == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100 * total));
+        long seen = 0;
+        for (int i = 0; i < SIZE; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return Math.min(highestValue(i), max);
+            }
+        }
+        return max;
+    }
+
+    String toJson() {
+        return String.format(Locale.ROOT, "{\"count\": %d, \"p50_ms\": %.3f, \"p90_ms\": %.3f, \"p99_ms\": %.3f, "
+                        + "\"p999_ms\": %.3f, \"p9999_ms\": %.3f, \"max_ms\": %.3f}",
+                total, valueAtPercentile(50) / 1e6, valueAtPercentile(90) / 1e6, valueAtPercentile(99) / 1e6,
+                valueAtPercentile(99.9) / 1e6, valueAtPercentile(99.99) / 1e6, max / 1e6);
+    }
+}
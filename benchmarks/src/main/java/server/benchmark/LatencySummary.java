@@ -0,0 +1,25 @@
+package server.benchmark;
+
+import java.util.Arrays;
+
+public record LatencySummary(double p50, double p99, double p999, double max) {
+    public static LatencySummary ofNanos(long[] values) {
+        if (values.length == 0) {
+            return new LatencySummary(0, 0, 0, 0);
+        }
+        long[] sorted = values.clone();
+        Arrays.sort(sorted);
+        return new LatencySummary(percentile(sorted, 0.50), percentile(sorted, 0.99),
+                percentile(sorted, 0.999), sorted[sorted.length - 1] / 1e6);
+    }
+
+    private static double percentile(long[] sorted, double quantile) {
+        int index = (int) Math.ceil(quantile * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(index, sorted.length - 1))] / 1e6;
+    }
+
+    String toJson() {
+        return String.format(java.util.Locale.ROOT,
+                "{\"p50_ms\": %.3f, \"p99_ms\": %.3f, \"p999_ms\": %.3f, \"max_ms\": %.3f}", p50, p99, p999, max);
+    }
+}
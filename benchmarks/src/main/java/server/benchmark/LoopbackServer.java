@@ -0,0 +1,61 @@
+package server.benchmark;
+
+import server.connector.Connector;
+import server.connector.TcpConnector;
+import server.connector.UdpConnector;
+
+import java.io.IOException;
+import java.net.*;
+
+// Сервер в том же процессе: каждый клиент получает свой Connector.connect() в отдельном потоке,
+// как дочерний процесс в обычном режиме, но без запуска JVM
+public final class LoopbackServer {
+    private static final int START_ATTEMPTS = 3;
+
+    private LoopbackServer() {
+    }
+
+    // Проверка занятости порта сама ненадолго занимает его, и воркер может не успеть привязаться:
+    // тогда запускаем новый воркер на другом порту
+    public static int startWorker(String transport) throws IOException, InterruptedException {
+        for (int attempt = 1; ; attempt++) {
+            int port = findFreePort(transport);
+            Connector connector = "udp".equals(transport) ? new UdpConnector(port) : new TcpConnector(port);
+            Thread.ofPlatform().daemon().name("worker-" + transport + "-" + port).start(connector::connect);
+            if (awaitBound(transport, port)) {
+                return port;
+            }
+            if (attempt == START_ATTEMPTS) {
+                throw new IllegalStateException("Сервер не занял порт " + port);
+            }
+        }
+    }
+
+    // Свободный порт ищем в пространстве нужного протокола: UDP-порт клиентов не виден через ServerSocket
+    private static int findFreePort(String transport) throws IOException {
+        if ("udp".equals(transport)) {
+            try (var socket = new DatagramSocket(0)) {
+                return socket.getLocalPort();
+            }
+        }
+        try (var socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    private static boolean awaitBound(String transport, int port) throws InterruptedException {
+        for (int attempt = 0; attempt < 200; attempt++) {
+            try {
+                if ("udp".equals(transport)) {
+                    new DatagramSocket(port).close();
+                } else {
+                    new ServerSocket(port).close();
+                }
+            } catch (IOException e) {
+                return true;
+            }
+            Thread.sleep(10);
+        }
+        return false;
+    }
+}
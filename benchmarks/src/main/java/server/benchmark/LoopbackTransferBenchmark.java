@@ -0,0 +1,254 @@
+package server.benchmark;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/*
+ * Нагрузочный прогон download/upload через loopback для TCP и UDP.
+ * Пример:
+ *   java -cp benchmarks.jar server.benchmark.LoopbackTransferBenchmark \
+ *        --transports tcp,udp --operations download,upload \
+ *        --sizes 1K,1M,100M,1G,10G --concurrency 1,10,100,1000 --output transfer-results.json
+ * --handshake legacy - старое согласование с байтом синхронизации вместо передачи за один обмен
+ * --loss 0,1,5,10 - UDP через LossyUdpProxy с такими потерями в процентах, остальные условия канала
+ * задаёт --network "delay=5ms,jitter=1ms,reorder=1,duplicate=0.5,bandwidth=100M"; --seed - для повторяемости
+ */
+public class LoopbackTransferBenchmark {
+    private static final String PREFIX = "bench-";
+
+    private final List<String> transports;
+    private final List<String> operations;
+    private final List<Long> sizes;
+    private final List<Integer> concurrency;
+    private final int rounds;
+    private final long maxScenarioBytes;
+    private final Path output;
+    private final boolean singleFlight;
+    private final List<Double> losses;
+    private final NetworkConditions network;
+    private final long seed;
+
+    private record ScenarioResult(String transport, String operation, long size, int concurrency,
+                                  int transfers, int errors, long bytes, long elapsedNanos,
+                                  LatencySummary firstByte, LatencySummary latency,
+                                  NetworkConditions network, LossyUdpProxy.Stats proxy) {
+        String toJson() {
+            double seconds = elapsedNanos / 1e9;
+            return String.format(Locale.ROOT, """
+                            {"transport": "%s", "operation": "%s", "size_bytes": %d, "concurrency": %d, \
+                            "transfers": %d, "errors": %d, "bytes": %d, "elapsed_s": %.3f, \
+                            "throughput_bytes_per_s": %.1f, "ttfb": %s, "latency": %s, "network": %s, \
+                            "proxy": %s}""",
+                    transport, operation, size, concurrency, transfers, errors, bytes, seconds,
+                    seconds > 0 ? bytes / seconds : 0, firstByte.toJson(), latency.toJson(), network.toJson(),
+                    proxy.toJson());
+        }
+    }
+
+    public LoopbackTransferBenchmark(Map<String, String> options) {
+        transports = List.of(options.getOrDefault("transports", "tcp,udp").split(","));
+        operations = List.of(options.getOrDefault("operations", "download,upload").split(","));
+        sizes = Arrays.stream(options.getOrDefault("sizes", "1K,1M,100M,1G,10G").split(","))
+                .map(LoopbackTransferBenchmark::parseSize).toList();
+        concurrency = Arrays.stream(options.getOrDefault("concurrency", "1,10,100,1000").split(","))
+                .map(Integer::parseInt).toList();
+        rounds = Integer.parseInt(options.getOrDefault("rounds", "3"));
+        maxScenarioBytes = parseSize(options.getOrDefault("max-scenario-bytes", "64G"));
+        output = Paths.get(options.getOrDefault("output", "transfer-results.json"));
+        singleFlight = !"legacy".equals(options.getOrDefault("handshake", "single"));
+        losses = Arrays.stream(options.getOrDefault("loss", "0").split(","))
+                .map(Double::parseDouble).toList();
+        network = NetworkConditions.parse(options.getOrDefault("network", ""));
+        seed = Long.parseLong(options.getOrDefault("seed", Long.toString(System.nanoTime())));
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new HashMap<>();
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            options.put(args[i].replaceFirst("^--", ""), args[i + 1]);
+        }
+        new LoopbackTransferBenchmark(options).run();
+    }
+
+    public void run() throws IOException, InterruptedException {
+        Files.createDirectories(Paths.get("download"));
+        List<ScenarioResult> results = new ArrayList<>();
+        try {
+            for (long size : sizes) {
+                prepareFile(size);
+                for (String transport : transports) {
+                    for (String operation : operations) {
+                        for (int clients : concurrency) {
+                            if (size * clients * rounds > maxScenarioBytes) {
+                                System.out.printf("Пропуск %s %s %s x%d: больше %d байт%n",
+                                        transport, operation, formatSize(size), clients, maxScenarioBytes);
+                                continue;
+                            }
+                            for (double loss : losses) {
+                                var conditions = network.withLoss(loss);
+                                if (!"udp".equals(transport) && !conditions.isIdeal()) {
+                                    System.out.printf("Пропуск %s %s %s x%d: канал эмулируется только для UDP%n",
+                                            transport, operation, formatSize(size), clients);
+                                    continue;
+                                }
+                                var result = runScenario(transport, operation, size, clients, conditions);
+                                System.out.println(result.toJson());
+                                results.add(result);
+                                writeReport(results);
+                            }
+                        }
+                    }
+                }
+            }
+        } finally {
+            cleanUp();
+        }
+    }
+
+    private ScenarioResult runScenario(String transport, String operation, long size, int clients,
+                                       NetworkConditions conditions) throws InterruptedException {
+        List<TransferSample> samples = Collections.synchronizedList(new ArrayList<>());
+        AtomicInteger errors = new AtomicInteger();
+        String fileName = PREFIX + formatSize(size);
+        var ready = new CountDownLatch(clients);
+        var go = new CountDownLatch(1);
+        List<LossyUdpProxy> proxies = new CopyOnWriteArrayList<>();
+        long start;
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < clients; i++) {
+                int clientId = i;
+                executor.submit(() -> {
+                    TransferClient client;
+                    try {
+                        client = connect(transport, conditions, clientId, proxies);
+                    } catch (Exception e) {
+                        errors.incrementAndGet();
+                        System.err.printf("%s: не удалось подключиться: %s%n", transport, e);
+                        return null;
+                    } finally {
+                        ready.countDown();
+                    }
+                    try (client) {
+                        go.await();
+                        for (int round = 0; round < rounds; round++) {
+                            samples.add("upload".equals(operation)
+                                    ? client.upload(fileName + "-" + clientId, size)
+                                    : client.download(fileName));
+                        }
+                    } catch (Exception e) {
+                        errors.incrementAndGet();
+                        System.err.printf("%s %s: %s%n", transport, operation, e);
+                    }
+                    return null;
+                });
+            }
+            ready.await();
+            start = System.nanoTime();
+            go.countDown();
+        }
+        long elapsed = System.nanoTime() - start;
+        var proxyStats = LossyUdpProxy.Stats.EMPTY;
+        for (var proxy : proxies) {
+            proxyStats = proxyStats.plus(proxy.stats());
+            proxy.close();
+        }
+
+        long bytes = samples.stream().mapToLong(TransferSample::bytes).sum();
+        return new ScenarioResult(transport, operation, size, clients, samples.size(), errors.get(), bytes, elapsed,
+                LatencySummary.ofNanos(samples.stream().mapToLong(TransferSample::firstByteNanos).toArray()),
+                LatencySummary.ofNanos(samples.stream().mapToLong(TransferSample::totalNanos).toArray()),
+                conditions, proxyStats);
+    }
+
+    // При неидеальном канале UDP-клиент говорит с воркером через свой посредник
+    private TransferClient connect(String transport, NetworkConditions conditions, int clientId,
+                                   List<LossyUdpProxy> proxies) throws IOException, InterruptedException {
+        int port = LoopbackServer.startWorker(transport);
+        if ("udp".equals(transport) && !conditions.isIdeal()) {
+            var proxy = new LossyUdpProxy(port, conditions, seed + clientId);
+            proxies.add(proxy);
+            port = proxy.getPort();
+        }
+        return "udp".equals(transport)
+                ? new UdpTransferClient(port, singleFlight)
+                : new TcpTransferClient(port, singleFlight);
+    }
+
+    // Файл для download: разреженный, чтобы 10 ГБ не приходилось записывать на диск
+    private static void prepareFile(long size) throws IOException {
+        Path path = Paths.get("download", PREFIX + formatSize(size));
+        if (Files.exists(path) && Files.size(path) == size) {
+            return;
+        }
+        try (var file = new RandomAccessFile(path.toFile(), "rw")) {
+            file.setLength(size);
+        }
+    }
+
+    private void writeReport(List<ScenarioResult> results) throws IOException {
+        try (var writer = new PrintWriter(Files.newBufferedWriter(output, StandardCharsets.UTF_8))) {
+            writer.println("{");
+            writer.printf("  \"timestamp\": \"%s\",%n", java.time.Instant.now());
+            writer.printf("  \"java\": \"%s\",%n", System.getProperty("java.version"));
+            writer.printf("  \"rounds\": %d,%n", rounds);
+            writer.printf("  \"handshake\": \"%s\",%n", singleFlight ? "single" : "legacy");
+            writer.printf("  \"seed\": %d,%n", seed);
+            writer.println("  \"settings\": {" + serverSettings() + "},");
+            writer.println("  \"scenarios\": [");
+            for (int i = 0; i < results.size(); i++) {
+                writer.print("    " + results.get(i).toJson());
+                writer.println(i + 1 < results.size() ? "," : "");
+            }
+            writer.println("  ]");
+            writer.println("}");
+        }
+    }
+
+    static String serverSettings() {
+        StringJoiner joiner = new StringJoiner(", ");
+        System.getProperties().stringPropertyNames().stream()
+                .filter(name -> name.startsWith("server."))
+                .sorted()
+                .forEach(name -> joiner.add("\"" + name + "\": \"" + System.getProperty(name) + "\""));
+        return joiner.toString();
+    }
+
+    private void cleanUp() throws IOException {
+        Path upload = Paths.get("upload");
+        if (!Files.isDirectory(upload)) {
+            return;
+        }
+        try (var files = Files.list(upload)) {
+            for (Path path : files.filter(p -> p.getFileName().toString().startsWith(PREFIX)).toList()) {
+                Files.deleteIfExists(path);
+            }
+        }
+    }
+
+    static long parseSize(String value) {
+        String text = value.trim().toUpperCase(Locale.ROOT);
+        long multiplier = switch (text.charAt(text.length() - 1)) {
+            case 'K' -> 1L << 10;
+            case 'M' -> 1L << 20;
+            case 'G' -> 1L << 30;
+            default -> 1;
+        };
+        String digits = multiplier == 1 ? text : text.substring(0, text.length() - 1);
+        return Long.parseLong(digits) * multiplier;
+    }
+
+    static String formatSize(long size) {
+        if (size % (1L << 30) == 0) return (size >> 30) + "G";
+        if (size % (1L << 20) == 0) return (size >> 20) + "M";
+        if (size % (1L << 10) == 0) return (size >> 10) + "K";
+        return Long.toString(size);
+    }
+}
@@ -0,0 +1,271 @@
+package server.benchmark;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.*;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/*
+ * UDP-посредник на loopback с плохим каналом между клиентом и сервером: потери, дубли, перестановки,
+ * задержка с разбросом и узкое место с ограниченной полосой и очередью. Клиент шлёт на getPort(),
+ * для каждого клиента открывается свой сокет к серверу, так что сервер видит посредника как обычного клиента.
+ * Каждое направление - отдельный канал со своим генератором: при одном seed прогон воспроизводим.
+ * Условия можно менять на ходу через setConditions().
+ *
+ * try (var proxy = new LossyUdpProxy(serverPort, NetworkConditions.parse("loss=5,delay=10ms"))) {
+ *     var client = new UdpTransferClient(proxy.getPort(), true);
+ * }
+ */
+public final class LossyUdpProxy implements AutoCloseable {
+    private static final int MAX_DATAGRAM = 65_535;
+    private static final int SOCKET_BUFFER = 4 * 1024 * 1024;
+    // Переставленный пакет придерживается, чтобы идущие за ним успели его обогнать
+    private static final long REORDER_HOLD_NANOS = TimeUnit.MILLISECONDS.toNanos(2);
+
+    private final DatagramSocket front;
+    private final InetSocketAddress target;
+    private final Map<SocketAddress, Flow> flows = new ConcurrentHashMap<>();
+    private final CopyOnWriteArrayList<Thread> threads = new CopyOnWriteArrayList<>();
+    private final SplittableRandom seeds;
+    private volatile NetworkConditions conditions;
+    private volatile boolean closed = false;
+
+    private final LongAdder forwarded = new LongAdder();
+    private final LongAdder lost = new LongAdder();
+    private final LongAdder overflowed = new LongAdder();
+    private final LongAdder duplicated = new LongAdder();
+    private final LongAdder reordered = new LongAdder();
+
+    public record Stats(long forwarded, long lost, long overflowed, long duplicated, long reordered) {
+        public static final Stats EMPTY = new Stats(0, 0, 0, 0, 0);
+
+        public Stats plus(Stats other) {
+            return new Stats(forwarded + other.forwarded, lost + other.lost, overflowed + other.overflowed,
+                    duplicated + other.duplicated, reordered + other.reordered);
+        }
+
+        String toJson() {
+            return String.format(Locale.ROOT,
+                    "{\"forwarded\": %d, \"lost\": %d, \"overflowed\": %d, \"duplicated\": %d, \"reordered\": %d}",
+                    forwarded, lost, overflowed, duplicated, reordered);
+        }
+    }
+
+    public LossyUdpProxy(int targetPort, NetworkConditions conditions) throws SocketException {
+        this(targetPort, conditions, System.nanoTime());
+    }
+
+    public LossyUdpProxy(int targetPort, NetworkConditions conditions, long seed) throws SocketException {
+        this.target = new InetSocketAddress(InetAddress.getLoopbackAddress(), targetPort);
+        this.conditions = conditions;
+        this.seeds = new SplittableRandom(seed);
+        front = new DatagramSocket(0, InetAddress.getLoopbackAddress());
+        front.setReceiveBufferSize(SOCKET_BUFFER);
+        front.setSendBufferSize(SOCKET_BUFFER);
+        start("proxy-front-" + front.getLocalPort(), this::readFront);
+    }
+
+    public int getPort() {
+        return front.getLocalPort();
+    }
+
+    public NetworkConditions getConditions() {
+        return conditions;
+    }
+
+    public void setConditions(NetworkConditions conditions) {
+        this.conditions = conditions;
+    }
+
+    public Stats stats() {
+        return new Stats(forwarded.sum(), lost.sum(), overflowed.sum(), duplicated.sum(), reordered.sum());
+    }
+
+    private void readFront() {
+        byte[] buffer = new byte[MAX_DATAGRAM];
+        var packet = new DatagramPacket(buffer, buffer.length);
+        try {
+            while (!closed) {
+                packet.setLength(buffer.length);
+                front.receive(packet);
+                Flow flow = flows.computeIfAbsent(packet.getSocketAddress(), this::openFlow);
+                flow.up.offer(buffer, packet.getLength());
+            }
+        } catch (IOException | UncheckedIOException e) {
+            if (!closed) {
+                System.err.println("Посредник остановлен: " + e);
+            }
+        }
+    }
+
+    private Flow openFlow(SocketAddress client) {
+        try {
+            return new Flow(client);
+        } catch (SocketException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private Thread start(String name, Runnable task) {
+        Thread thread = Thread.ofPlatform().daemon().name(name).start(task);
+        threads.add(thread);
+        return thread;
+    }
+
+    private synchronized Random nextRandom() {
+        return new Random(seeds.nextLong());
+    }
+
+    // Клиент и его сокет к серверу: ответы сервера уходят клиенту с порта посредника
+    private final class Flow {
+        private final DatagramSocket upstream;
+        private final Link up;
+        private final Link down;
+
+        Flow(SocketAddress client) throws SocketException {
+            upstream = new DatagramSocket(0, InetAddress.getLoopbackAddress());
+            upstream.setReceiveBufferSize(SOCKET_BUFFER);
+            upstream.setSendBufferSize(SOCKET_BUFFER);
+            up = new Link("proxy-up-" + upstream.getLocalPort(),
+                    (data, length) -> upstream.send(new DatagramPacket(data, length, target)));
+            down = new Link("proxy-down-" + upstream.getLocalPort(),
+                    (data, length) -> front.send(new DatagramPacket(data, length, client)));
+            start("proxy-upstream-" + upstream.getLocalPort(), this::readUpstream);
+        }
+
+        private void readUpstream() {
+            byte[] buffer = new byte[MAX_DATAGRAM];
+            var packet = new DatagramPacket(buffer, buffer.length);
+            try {
+                while (!closed) {
+                    packet.setLength(buffer.length);
+                    upstream.receive(packet);
+                    down.offer(buffer, packet.getLength());
+                }
+            } catch (IOException e) {
+                if (!closed) {
+                    System.err.println("Посредник: сокет к серверу закрыт: " + e);
+                }
+            }
+        }
+
+        void close() {
+            upstream.close();
+        }
+    }
+
+    @FunctionalInterface
+    private interface Sender {
+        void send(byte[] data, int length) throws IOException;
+    }
+
+    private record Scheduled(long departure, long order, byte[] data) implements Delayed {
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(departure - System.nanoTime(), TimeUnit.NANOSECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed other) {
+            var scheduled = (Scheduled) other;
+            int byTime = Long.compare(departure, scheduled.departure);
+            return byTime != 0 ? byTime : Long.compare(order, scheduled.order);
+        }
+    }
+
+    /*
+     * Одно направление канала. offer() вызывает только поток чтения этого направления,
+     * поэтому генератор и состояние узкого места не требуют синхронизации.
+     * Пакет сначала ждёт своей очереди на узком месте (drop-tail при переполнении buffer),
+     * затем задерживается на delay ± jitter: при разбросе больше интервала между пакетами они
+     * переставляются и сами, как в netem.
+     */
+    private final class Link {
+        private final DelayQueue<Scheduled> queue = new DelayQueue<>();
+        private final Random random = nextRandom();
+        private final Sender sender;
+        private long busyUntil = 0;
+        private long order = 0;
+
+        Link(String name, Sender sender) {
+            this.sender = sender;
+            start(name, this::deliver);
+        }
+
+        void offer(byte[] data, int length) {
+            NetworkConditions current = conditions;
+            if (chance(current.loss())) {
+                lost.increment();
+                return;
+            }
+            int copies = 1;
+            if (chance(current.duplicate())) {
+                duplicated.increment();
+                copies = 2;
+            }
+            byte[] packet = Arrays.copyOf(data, length);
+            long now = System.nanoTime();
+            for (int i = 0; i < copies; i++) {
+                long departure = now;
+                if (current.bandwidth() > 0) {
+                    long start = Math.max(now, busyUntil);
+                    long backlog = (long) ((start - now) / 1e9 * current.bandwidth());
+                    if (backlog + length > current.buffer()) {
+                        overflowed.increment();
+                        continue;
+                    }
+                    busyUntil = start + (long) (length * 1e9 / current.bandwidth());
+                    departure = busyUntil;
+                }
+                long delay = current.delayMicros();
+                if (current.jitterMicros() > 0) {
+                    delay += random.nextLong(-current.jitterMicros(), current.jitterMicros() + 1);
+                }
+                departure += TimeUnit.MICROSECONDS.toNanos(Math.max(delay, 0));
+                if (chance(current.reorder())) {
+                    reordered.increment();
+                    departure += REORDER_HOLD_NANOS;
+                }
+                queue.add(new Scheduled(departure, order++, packet));
+            }
+        }
+
+        private boolean chance(double percent) {
+            return percent > 0 && random.nextDouble() * 100 < percent;
+        }
+
+        private void deliver() {
+            try {
+                while (!closed) {
+                    Scheduled packet = queue.take();
+                    sender.send(packet.data(), packet.data().length);
+                    forwarded.increment();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (IOException e) {
+                if (!closed) {
+                    System.err.println("Посредник: не удалось переслать пакет: " + e);
+                }
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        front.close();
+        flows.values().forEach(Flow::close);
+        threads.forEach(Thread::interrupt);
+    }
+}
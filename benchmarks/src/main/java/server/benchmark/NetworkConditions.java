@@ -0,0 +1,83 @@
+package server.benchmark;
+
+import java.util.Locale;
+
+/*
+ * Условия канала для LossyUdpProxy. Вероятности - в процентах, задержки - в микросекундах,
+ * bandwidth - байт в секунду (0 - без ограничения), buffer - очередь перед узким местом в байтах.
+ * Задаётся строкой вида "loss=5,delay=10ms,jitter=2ms,duplicate=1,reorder=1,bandwidth=10M,buffer=256K".
+ */
+public record NetworkConditions(double loss, double duplicate, double reorder, long delayMicros,
+                                long jitterMicros, long bandwidth, long buffer) {
+    public static final long DEFAULT_BUFFER = 256 * 1024;
+    public static final NetworkConditions NONE = new NetworkConditions(0, 0, 0, 0, 0, 0, DEFAULT_BUFFER);
+
+    public NetworkConditions {
+        if (loss < 0 || loss > 100 || duplicate < 0 || duplicate > 100 || reorder < 0 || reorder > 100) {
+            throw new IllegalArgumentException("Вероятность должна быть от 0 до 100 процентов");
+        }
+        if (delayMicros < 0 || jitterMicros < 0 || bandwidth < 0 || buffer <= 0) {
+            throw new IllegalArgumentException("Задержка, полоса и буфер не могут быть отрицательными");
+        }
+    }
+
+    public static NetworkConditions parse(String spec) {
+        double loss = 0, duplicate = 0, reorder = 0;
+        long delay = 0, jitter = 0, bandwidth = 0, buffer = DEFAULT_BUFFER;
+        for (String part : spec.trim().split("[,\\s]+")) {
+            if (part.isEmpty()) {
+                continue;
+            }
+            String[] pair = part.split("=", 2);
+            if (pair.length != 2) {
+                throw new IllegalArgumentException("Ожидалось имя=значение: " + part);
+            }
+            String value = pair[1].trim();
+            switch (pair[0].trim().toLowerCase(Locale.ROOT)) {
+                case "loss" -> loss = parsePercent(value);
+                case "duplicate" -> duplicate = parsePercent(value);
+                case "reorder" -> reorder = parsePercent(value);
+                case "delay" -> delay = parseMicros(value);
+                case "jitter" -> jitter = parseMicros(value);
+                case "bandwidth" -> bandwidth = LoopbackTransferBenchmark.parseSize(value);
+                case "buffer" -> buffer = LoopbackTransferBenchmark.parseSize(value);
+                default -> throw new IllegalArgumentException("Неизвестный параметр канала: " + pair[0]);
+            }
+        }
+        return new NetworkConditions(loss, duplicate, reorder, delay, jitter, bandwidth, buffer);
+    }
+
+    public NetworkConditions withLoss(double loss) {
+        return new NetworkConditions(loss, duplicate, reorder, delayMicros, jitterMicros, bandwidth, buffer);
+    }
+
+    public boolean isIdeal() {
+        return loss == 0 && duplicate == 0 && reorder == 0 && delayMicros == 0 && jitterMicros == 0 && bandwidth == 0;
+    }
+
+    String toJson() {
+        return String.format(Locale.ROOT, """
+                        {"loss_pct": %.2f, "duplicate_pct": %.2f, "reorder_pct": %.2f, "delay_ms": %.3f, \
+                        "jitter_ms": %.3f, "bandwidth_bytes_per_s": %d, "buffer_bytes": %d}""",
+                loss, duplicate, reorder, delayMicros / 1e3, jitterMicros / 1e3, bandwidth, buffer);
+    }
+
+    private static double parsePercent(String value) {
+        return Double.parseDouble(value.endsWith("%") ? value.substring(0, value.length() - 1) : value);
+    }
+
+    // 10ms, 500us, 1s; число без единиц - миллисекунды
+    private static long parseMicros(String value) {
+        String text = value.toLowerCase(Locale.ROOT);
+        if (text.endsWith("us")) {
+            return Long.parseLong(text.substring(0, text.length() - 2));
+        }
+        if (text.endsWith("ms")) {
+            return Math.round(Double.parseDouble(text.substring(0, text.length() - 2)) * 1e3);
+        }
+        if (text.endsWith("s")) {
+            return Math.round(Double.parseDouble(text.substring(0, text.length() - 1)) * 1e6);
+        }
+        return Math.round(Double.parseDouble(text) * 1e3);
+    }
+}
@@ -0,0 +1,201 @@
+package server.benchmark;
+
+import server.client.manager.ClientManager;
+import server.status.Status;
+
+import java.io.*;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.CRC32C;
+
+public class TcpTransferClient implements TransferClient {
+    private static final int CHUNK = 64 * 1024;
+    static final int INLINE = Integer.getInteger("benchmark.inline", 32 * 1024);
+
+    private final Socket socket;
+    private final DataInputStream in;
+    private final DataOutputStream out;
+    private final byte[] buffer = new byte[CHUNK];
+    private final boolean singleFlight;
+
+    public TcpTransferClient(int port, boolean singleFlight) throws IOException {
+        this.singleFlight = singleFlight;
+        socket = new Socket(InetAddress.getLoopbackAddress(), port);
+        socket.setTcpNoDelay(true);
+        in = new DataInputStream(new BufferedInputStream(socket.getInputStream(), CHUNK));
+        out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream(), CHUNK));
+    }
+
+    @Override
+    public TransferSample download(String remoteName) throws IOException {
+        long start = System.nanoTime();
+        long size;
+        if (singleFlight) {
+            command("download " + remoteName + " " + remoteName + " offset=0 inline=" + INLINE);
+            expect("300");
+            String accept = expect("200");
+            size = option(accept, "size");
+            if (accept.contains(" INLINE ")) {
+                return readInline(remoteName, size, option(accept, "crc"), start);
+            }
+        } else {
+            command("download " + remoteName + " " + remoteName);
+            expect("300");
+            expect("200");
+            out.write(1);
+            out.flush();
+            size = Long.reverseBytes(in.readLong());
+        }
+        long firstByte = 0;
+        long received = 0;
+        var digest = new CRC32C();
+        while (received < size) {
+            int read = in.read(buffer, 0, (int) Math.min(buffer.length, size - received));
+            if (read == -1) {
+                throw new EOFException("Соединение закрыто после " + received + " из " + size + " байт");
+            }
+            if (firstByte == 0) {
+                firstByte = System.nanoTime() - start;
+            }
+            digest.update(buffer, 0, read);
+            received += read;
+        }
+        long expected = Long.reverseBytes(in.readLong());
+        if (expected != digest.getValue()) {
+            throw new IOException("Контрольная сумма не совпала: " + remoteName);
+        }
+        return new TransferSample(received, firstByte, System.nanoTime() - start);
+    }
+
+    // Ответ INLINE: данные сразу за строкой, CRC32C уже в самой строке
+    private TransferSample readInline(String remoteName, long size, long crc, long start) throws IOException {
+        byte[] data = new byte[(int) size];
+        in.readFully(data);
+        long firstByte = System.nanoTime() - start;
+        var digest = new CRC32C();
+        digest.update(data, 0, data.length);
+        if (digest.getValue() != crc) {
+            throw new IOException("Контрольная сумма не совпала: " + remoteName);
+        }
+        return new TransferSample(size, firstByte, System.nanoTime() - start);
+    }
+
+    @Override
+    public TransferSample upload(String remoteName, long size) throws IOException {
+        long start = System.nanoTime();
+        long firstByte;
+        if (singleFlight) {
+            // Команда и данные уходят одним потоком, без ожидания ответа
+            out.write(("upload " + remoteName + " " + remoteName + " size=" + size + "\n")
+                    .getBytes(StandardCharsets.UTF_8));
+            firstByte = System.nanoTime() - start;
+        } else {
+            command("upload " + remoteName + " " + remoteName);
+            expect("300");
+            expect("200");
+            firstByte = System.nanoTime() - start;
+            out.write(1);
+            out.writeLong(Long.reverseBytes(size));
+        }
+        long sent = 0;
+        var digest = new CRC32C();
+        while (sent < size) {
+            int chunk = (int) Math.min(buffer.length, size - sent);
+            out.write(buffer, 0, chunk);
+            digest.update(buffer, 0, chunk);
+            sent += chunk;
+        }
+        out.writeLong(Long.reverseBytes(digest.getValue()));
+        if (singleFlight) {
+            out.flush();
+            expect("300");
+            expect("200");
+        } else {
+            // Команды обрабатываются по очереди, ответ на echo означает, что файл принят
+            command("echo done");
+            expect("200");
+            expect("300");
+        }
+        return new TransferSample(sent, firstByte, System.nanoTime() - start);
+    }
+
+    @Override
+    public void send(String line) throws IOException {
+        command(line);
+    }
+
+    @Override
+    public void awaitReply(String line) throws IOException {
+        while (true) {
+            String reply = readLine();
+            if (reply == null) {
+                throw new EOFException("Сервер закрыл соединение, не ответив на " + line);
+            }
+            if (reply.equals(ClientManager.HEARTBEAT_REQUEST)) {
+                // Heartbeat сервера мог прийти раньше ответа, он не относится к команде
+                command(ClientManager.HEARTBEAT_RESPONSE);
+            } else if (line.equals(ClientManager.HEARTBEAT_REQUEST)
+                    ? reply.equals(ClientManager.HEARTBEAT_RESPONSE)
+                    : reply.startsWith(Integer.toString(Status.END.code()))) {
+                return;
+            }
+        }
+    }
+
+    // На heartbeat сервера отвечает читающий поток, поэтому запись под замком
+    private void command(String line) throws IOException {
+        synchronized (out) {
+            out.write((line + "\n").getBytes(StandardCharsets.UTF_8));
+            out.flush();
+        }
+    }
+
+    private String expect(String code) throws IOException {
+        String line = readLine();
+        if (line == null || !line.startsWith(code)) {
+            throw new IOException("Ожидался ответ " + code + ", получено: " + line);
+        }
+        return line;
+    }
+
+    static long option(String line, String name) throws IOException {
+        for (String part : line.split(" ")) {
+            if (part.startsWith(name + "=")) {
+                return Long.parseLong(part.substring(name.length() + 1));
+            }
+        }
+        throw new IOException("В ответе нет " + name + ": " + line);
+    }
+
+    private String readLine() throws IOException {
+        var bytes = new ByteArrayOutputStream();
+        int b;
+        while ((b = in.read()) != -1 && b != '\n') {
+            bytes.write(b);
+        }
+        if (b == -1 && bytes.size() == 0) {
+            return null;
+        }
+        return bytes.toString(StandardCharsets.UTF_8).trim();
+    }
+
+    @Override
+    public void abort() {
+        try {
+            socket.close();
+        } catch (IOException e) {
+            // Закрываем без обмена, ошибка закрытия ничего не меняет
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            command("close");
+            expect("300");
+        } finally {
+            socket.close();
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package server.benchmark;
+
+import java.io.IOException;
+
+public interface TransferClient extends AutoCloseable {
+    // Скачивает download/<remoteName>, данные отбрасываются
+    TransferSample download(String remoteName) throws IOException;
+
+    // Загружает size байт в upload/<remoteName> и дожидается, пока сервер их примет
+    TransferSample upload(String remoteName, long size) throws IOException;
+
+    // Команда управления (echo, time, list, PING): ответ читается до конца и отбрасывается
+    default void control(String line) throws IOException {
+        send(line);
+        awaitReply(line);
+    }
+
+    // Отправляет команду управления, не дожидаясь ответа. Сервер отвечает на команды по порядку,
+    // так что ответы можно читать в другом потоке через awaitReply
+    void send(String line) throws IOException;
+
+    // Дочитывает ответ на ранее отправленную команду line
+    void awaitReply(String line) throws IOException;
+
+    // Закрывает соединение без обмена с сервером, когда сеанс завис или оборвался
+    void abort();
+
+    @Override
+    void close() throws IOException;
+}
@@ -0,0 +1,4 @@
+package server.benchmark;
+
+public record TransferSample(long bytes, long firstByteNanos, long totalNanos) {
+}
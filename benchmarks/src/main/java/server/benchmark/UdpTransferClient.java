@@ -0,0 +1,166 @@
+package server.benchmark;
+
+import server.client.manager.ClientManager;
+import server.socket.Message;
+import server.socket.ReliableUdpSocket;
+import server.status.Status;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.CRC32C;
+
+public class UdpTransferClient implements TransferClient {
+    private static final int TIMEOUT = 120_000;
+
+    private final ReliableUdpSocket socket;
+    private final InetAddress address = InetAddress.getLoopbackAddress();
+    private final int port;
+    private final byte[] chunk;
+    private final boolean singleFlight;
+
+    public UdpTransferClient(int port, boolean singleFlight) throws IOException {
+        this.port = port;
+        this.singleFlight = singleFlight;
+        socket = new ReliableUdpSocket(0, true);
+        socket.setSoTimeout(TIMEOUT);
+        chunk = new byte[socket.getPayloadSize()];
+        socket.send(Status.CONNECT.code() + " CONNECT", address, port);
+        expect("200");
+    }
+
+    @Override
+    public TransferSample download(String remoteName) throws IOException {
+        long start = System.nanoTime();
+        long size;
+        if (singleFlight) {
+            socket.send("download " + remoteName + " " + remoteName + " offset=0 inline=" + TcpTransferClient.INLINE,
+                    address, port);
+            expect("300");
+            Message accept = socket.receive();
+            int newline = indexOf(accept, (byte) '\n');
+            String line = new String(accept.data(), 0, newline < 0 ? accept.length() : newline, StandardCharsets.UTF_8);
+            if (!line.startsWith("200")) {
+                throw new IOException("Ожидался ответ 200, получено: " + line);
+            }
+            size = TcpTransferClient.option(line, "size");
+            if (line.contains(" INLINE ")) {
+                var digest = new CRC32C();
+                digest.update(accept.data(), newline + 1, accept.length() - newline - 1);
+                if (digest.getValue() != TcpTransferClient.option(line, "crc")) {
+                    throw new IOException("Контрольная сумма не совпала: " + remoteName);
+                }
+                long elapsed = System.nanoTime() - start;
+                return new TransferSample(size, elapsed, elapsed);
+            }
+        } else {
+            socket.send("download " + remoteName + " " + remoteName, address, port);
+            expect("300");
+            expect("200");
+            socket.send(new byte[]{1}, address, port);
+            size = ByteBuffer.wrap(socket.receive().data()).getLong();
+        }
+        long firstByte = 0;
+        long received = 0;
+        var digest = new CRC32C();
+        while (received < size) {
+            Message message = socket.receive();
+            if (firstByte == 0) {
+                firstByte = System.nanoTime() - start;
+            }
+            digest.update(message.data(), 0, message.length());
+            received += message.length();
+        }
+        if (ByteBuffer.wrap(socket.receive().data()).getLong() != digest.getValue()) {
+            throw new IOException("Контрольная сумма не совпала: " + remoteName);
+        }
+        return new TransferSample(received, firstByte, System.nanoTime() - start);
+    }
+
+    @Override
+    public TransferSample upload(String remoteName, long size) throws IOException {
+        long start = System.nanoTime();
+        long firstByte;
+        if (singleFlight) {
+            socket.send("upload " + remoteName + " " + remoteName + " size=" + size, address, port);
+            firstByte = System.nanoTime() - start;
+        } else {
+            socket.send("upload " + remoteName + " " + remoteName, address, port);
+            expect("300");
+            expect("200");
+            firstByte = System.nanoTime() - start;
+            socket.send(new byte[]{1}, address, port);
+            socket.send(ByteBuffer.allocate(Long.BYTES).putLong(size).array(), address, port);
+        }
+        long sent = 0;
+        var digest = new CRC32C();
+        while (sent < size) {
+            int length = (int) Math.min(chunk.length, size - sent);
+            socket.send(length == chunk.length ? chunk : new byte[length], address, port, TIMEOUT);
+            digest.update(chunk, 0, length);
+            sent += length;
+        }
+        socket.send(ByteBuffer.allocate(Long.BYTES).putLong(digest.getValue()).array(), address, port);
+        if (singleFlight) {
+            expect("300");
+            expect("200");
+        } else {
+            socket.send("echo done", address, port);
+            expect("200");
+            expect("300");
+        }
+        return new TransferSample(sent, firstByte, System.nanoTime() - start);
+    }
+
+    @Override
+    public void send(String line) throws IOException {
+        socket.send(line, address, port);
+    }
+
+    @Override
+    public void awaitReply(String line) throws IOException {
+        while (true) {
+            String reply = socket.receive().text();
+            if (reply.equals(ClientManager.HEARTBEAT_REQUEST)) {
+                socket.send(ClientManager.HEARTBEAT_RESPONSE, address, port);
+            } else if (line.equals(ClientManager.HEARTBEAT_REQUEST)
+                    ? reply.equals(ClientManager.HEARTBEAT_RESPONSE)
+                    : reply.startsWith(Integer.toString(Status.END.code()))) {
+                return;
+            }
+        }
+    }
+
+    private static int indexOf(Message message, byte value) {
+        for (int i = 0; i < message.length(); i++) {
+            if (message.data()[i] == value) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private String expect(String code) throws IOException {
+        String text = socket.receive().text();
+        if (!text.startsWith(code)) {
+            throw new IOException("Ожидался ответ " + code + ", получено: " + text);
+        }
+        return text;
+    }
+
+    @Override
+    public void abort() {
+        socket.close();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            socket.send("close", address, port);
+            expect("300");
+        } finally {
+            socket.close();
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package server.client.manager;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import server.downloader.Downloader;
+import server.downloader.TransferOptions;
+
+import java.net.InetAddress;
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class ClientManagerBenchmark {
+    @Param({"echo hello world", "PING", "time", "help", "unknown-command arg"})
+    public String line;
+
+    private BlackholeClientManager manager;
+
+    private static class BlackholeClientManager extends ClientManager {
+        private Blackhole blackhole;
+
+        BlackholeClientManager() {
+            super(new Downloader() {
+                @Override
+                public void downloadFile(String fileName, InetAddress clientAddress, TransferOptions options) {
+                }
+
+                @Override
+                public void uploadFile(String fileName, InetAddress clientAddress, TransferOptions options) {
+                }
+
+                @Override
+                public void downloadDirectory(String dirName, InetAddress clientAddress) {
+                }
+
+                @Override
+                public void uploadDirectory(String dirName, InetAddress clientAddress) {
+                }
+
+                @Override
+                public void discardUpload(TransferOptions options) {
+                }
+            });
+            this.clientAddress = InetAddress.getLoopbackAddress();
+        }
+
+        @Override
+        public boolean checkChannel() {
+            return true;
+        }
+
+        @Override
+        protected void writeMessage(int code, String message) {
+            blackhole.consume(code);
+            blackhole.consume(message);
+        }
+
+        @Override
+        protected void writeEndMessage() {
+            blackhole.consume(Boolean.TRUE);
+        }
+
+        @Override
+        protected void writeHeartbeatResponse() {
+            blackhole.consume(HEARTBEAT_RESPONSE);
+        }
+
+        @Override
+        protected void writeHeartbeatRequest() {
+            blackhole.consume(HEARTBEAT_REQUEST);
+        }
+
+        @Override
+        protected String readLine() {
+            return null;
+        }
+    }
+
+    @Setup
+    public void setUp(Blackhole blackhole) {
+        manager = new BlackholeClientManager();
+        manager.blackhole = blackhole;
+    }
+
+    @Benchmark
+    public Object parse() {
+        String trimmed = line.trim();
+        return manager.getCommand(trimmed.split(" ", 2)[0], trimmed);
+    }
+
+    @Benchmark
+    public void dispatch() {
+        manager.dispatch(line);
+    }
+}
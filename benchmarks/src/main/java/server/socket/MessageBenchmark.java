@@ -0,0 +1,34 @@
+package server.socket;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.net.InetAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class MessageBenchmark {
+    @Param({"ascii", "cyrillic"})
+    public String text;
+
+    private Message message;
+
+    @Setup
+    public void setUp() {
+        String line = "ascii".equals(text)
+                ? "download report-2024.csv report.csv continue"
+                : "200 Содерживое корневого каталога:\n\tФайл: отчёт.csv\n";
+        byte[] data = line.getBytes(StandardCharsets.UTF_8);
+        message = new Message(data, InetAddress.getLoopbackAddress(), 12345, data.length);
+    }
+
+    @Benchmark
+    public String decode() {
+        return message.text();
+    }
+}
@@ -0,0 +1,100 @@
+package server.socket;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.SocketTimeoutException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class ReliableUdpSocketBenchmark {
+    private static final int BATCH = 64;
+
+    @Param({"64", "1400", "65494"})
+    public int payloadSize;
+
+    private ReliableUdpSocket socket;
+    private InetAddress address;
+    private ReliableUdpSocket.Packet packet;
+    private byte[] serialized;
+    private byte[] payload;
+    private int[] shuffled;
+    private int nextSeq;
+
+    @Setup
+    public void setUp() throws IOException {
+        socket = new ReliableUdpSocket(0, false);
+        address = InetAddress.getLoopbackAddress();
+        payload = new byte[payloadSize];
+        new Random(42).nextBytes(payload);
+        packet = new ReliableUdpSocket.Packet(false, 12345, payload);
+        serialized = socket.serialize(packet);
+
+        shuffled = new int[BATCH];
+        for (int i = 0; i < BATCH; i++) {
+            shuffled[i] = i;
+        }
+        var random = new Random(7);
+        for (int i = BATCH - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int tmp = shuffled[i];
+            shuffled[i] = shuffled[j];
+            shuffled[j] = tmp;
+        }
+    }
+
+    @Setup(Level.Iteration)
+    public void resetSequence() {
+        socket.resetState();
+        nextSeq = 0;
+    }
+
+    @TearDown
+    public void tearDown() {
+        socket.close();
+    }
+
+    @Benchmark
+    public byte[] serialize() throws IOException {
+        return socket.serialize(packet);
+    }
+
+    @Benchmark
+    public ReliableUdpSocket.Packet deserialize() throws IOException {
+        return socket.deserialize(serialized);
+    }
+
+    @Benchmark
+    public Message bufferInOrder() throws SocketTimeoutException {
+        socket.bufferAndOrderPackets(new ReliableUdpSocket.Packet(false, nextSeq++, payload), address, 0);
+        return socket.receive(0);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void bufferOutOfOrder(Blackhole blackhole) throws SocketTimeoutException {
+        int base = nextSeq;
+        for (int offset : shuffled) {
+            socket.bufferAndOrderPackets(new ReliableUdpSocket.Packet(false, base + offset, payload), address, 0);
+        }
+        nextSeq += BATCH;
+        for (int i = 0; i < BATCH; i++) {
+            blackhole.consume(socket.receive(0));
+        }
+    }
+
+    @Benchmark
+    public void handleAck() {
+        int seq = nextSeq++;
+        socket.registerPending(seq, serialized, address, 0);
+        socket.handleAck(seq);
+    }
+}
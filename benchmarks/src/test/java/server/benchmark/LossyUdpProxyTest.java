@@ -0,0 +1,73 @@
+package server.benchmark;
+
+import org.junit.jupiter.api.Test;
+import server.socket.ReliableUdpSocket;
+
+import java.net.InetAddress;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LossyUdpProxyTest {
+    private static final int MESSAGES = 100;
+    private static final int SIZE = 1024;
+
+    // Надёжный UDP через канал с потерями, дублями и перестановками: всё доходит целым и по порядку
+    @Test
+    void deliversEveryMessageInOrderOverLossyLink() throws Exception {
+        try (var receiver = new ReliableUdpSocket(0, true);
+             var proxy = new LossyUdpProxy(receiver.getPort(),
+                     NetworkConditions.parse("loss=5,duplicate=1,reorder=1,delay=1ms"), 42);
+             var sender = new ReliableUdpSocket(0, true)) {
+            var loopback = InetAddress.getLoopbackAddress();
+            var writer = Thread.ofVirtual().start(() -> {
+                try {
+                    for (int i = 0; i < MESSAGES; i++) {
+                        sender.send(message(i), loopback, proxy.getPort());
+                    }
+                } catch (Exception e) {
+                    throw new RuntimeException(e);
+                }
+            });
+
+            long start = System.nanoTime();
+            assertTimeoutPreemptively(Duration.ofSeconds(60), () -> {
+                for (int i = 0; i < MESSAGES; i++) {
+                    var received = receiver.receive(10_000);
+                    assertTrue(Arrays.equals(message(i), 0, SIZE, received.data(), 0, received.length()),
+                            "message " + i);
+                }
+            });
+            double seconds = (System.nanoTime() - start) / 1e9;
+            writer.join();
+
+            var stats = proxy.stats();
+            assertTrue(stats.lost() > 0, "канал не потерял ни одного пакета");
+            System.out.printf("goodput %.1f KiB/s, %s%n", MESSAGES * SIZE / 1024.0 / seconds, stats.toJson());
+        }
+    }
+
+    @Test
+    void passesEverythingWithoutConditions() throws Exception {
+        try (var receiver = new ReliableUdpSocket(0, true);
+             var proxy = new LossyUdpProxy(receiver.getPort(), NetworkConditions.NONE, 42);
+             var sender = new ReliableUdpSocket(0, true)) {
+            sender.send(message(7), InetAddress.getLoopbackAddress(), proxy.getPort());
+            var received = receiver.receive(5_000);
+            assertEquals(7, ByteBuffer.wrap(received.data()).getInt());
+            assertEquals(0, proxy.stats().lost());
+        }
+    }
+
+    private static byte[] message(int index) {
+        var buffer = ByteBuffer.allocate(SIZE).putInt(index);
+        while (buffer.hasRemaining()) {
+            buffer.put((byte) (index * 31 + buffer.position()));
+        }
+        return buffer.array();
+    }
+}
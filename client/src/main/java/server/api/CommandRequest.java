@@ -0,0 +1,36 @@
+package server.api;
+
+import server.status.Status;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+// Простая команда (echo, time, list, help): строки ответа до "300 END"
+class CommandRequest extends Request<List<String>> {
+    private final String line;
+
+    CommandRequest(String line) {
+        this.line = line;
+    }
+
+    @Override
+    void write(Session session) throws IOException {
+        session.writeLine(line);
+        session.flush();
+    }
+
+    @Override
+    List<String> read(Session session, String firstLine) throws IOException {
+        List<String> lines = new ArrayList<>();
+        String reply = firstLine;
+        while (code(reply) != Status.END.code()) {
+            lines.add(reply);
+            reply = session.readLine();
+            if (reply == null) {
+                throw new IOException("Сервер закрыл сеанс, не закончив ответ на " + line);
+            }
+        }
+        return lines;
+    }
+}
@@ -0,0 +1,62 @@
+package server.api;
+
+import server.status.Status;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32C;
+
+/*
+ * download <файл> <файл> offset=0 inline=<n> за один обмен. Ответ - "200 INLINE size= crc=" с данными
+ * сразу за строкой или "200 ACCEPT size= offset=", данные и CRC32C.
+ */
+class DownloadRequest extends Request<Long> {
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final String remote;
+    private final Path local;
+    private final int inline;
+
+    DownloadRequest(String remote, Path local, int inline) {
+        this.remote = checkName(remote);
+        this.local = local;
+        this.inline = inline;
+    }
+
+    @Override
+    void write(Session session) throws IOException {
+        session.writeLine("download " + remote + " " + remote + " offset=0 inline=" + inline);
+        session.flush();
+    }
+
+    @Override
+    Long read(Session session, String firstLine) throws IOException {
+        String line = resultLine(session, firstLine);
+        long size = option(line, "size");
+        boolean isInline = line.contains(" INLINE ");
+        long length = isInline ? size : size - option(line, "offset", 0);
+        var digest = new CRC32C();
+        try (var channel = FileChannel.open(local, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            byte[] buffer = new byte[(int) Math.min(BUFFER_SIZE, Math.max(length, 1))];
+            long received = 0;
+            while (received < length) {
+                int part = (int) Math.min(buffer.length, length - received);
+                session.readFully(buffer, 0, part);
+                digest.update(buffer, 0, part);
+                channel.write(ByteBuffer.wrap(buffer, 0, part));
+                received += part;
+            }
+        }
+        long expected = isInline ? option(line, "crc") : session.readDigest();
+        if (expected != digest.getValue()) {
+            Files.deleteIfExists(local);
+            throw new ReplyException(Status.ERROR.code() + " Контрольная сумма не совпала: " + remote);
+        }
+        return length;
+    }
+}
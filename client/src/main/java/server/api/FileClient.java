@@ -0,0 +1,102 @@
+package server.api;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/*
+ * Асинхронный клиент файлового сервера по TCP или UDP. Сеансы открываются по мере надобности,
+ * переиспользуются и закрываются после простоя, запросы в одном сеансе идут конвейером.
+ * Передачи идут за один обмен (offset=/size=), отказ "503 BUSY" повторяется через предложенное сервером время.
+ *
+ * try (var client = new FileClient("localhost", 12345, Transport.TCP)) {
+ *     client.download("report.pdf", Path.of("report.pdf")).join();
+ * }
+ */
+public class FileClient implements AutoCloseable {
+    public static final int DEFAULT_MAX_SESSIONS = 4;
+    public static final long DEFAULT_IDLE_TIMEOUT_MS = 30_000;
+    // Файл не больше этого размера сервер отдаёт одним ответом INLINE
+    private static final int INLINE_THRESHOLD = 32 * 1024;
+    private static final int MAX_BUSY_RETRIES = 5;
+    // Эти команды меняют состояние сеанса или несут данные, для них есть отдельные методы.
+    // На PING сервер отвечает одной строкой PONG без "300 END", а heartbeat конвейер ведёт сам
+    private static final Set<String> RESERVED = Set.of("download", "upload", "close", "ping");
+
+    private final SessionPool pool;
+
+    public FileClient(String host, int port, Transport transport) {
+        this(new InetSocketAddress(host, port), transport, DEFAULT_MAX_SESSIONS, DEFAULT_IDLE_TIMEOUT_MS);
+    }
+
+    public FileClient(InetSocketAddress server, Transport transport, int maxSessions, long idleTimeoutMs) {
+        this.pool = new SessionPool(server, transport, maxSessions, idleTimeoutMs);
+    }
+
+    // Строки ответа без завершающей "300 END"
+    public CompletableFuture<List<String>> command(String line) {
+        String name = line.trim().split(" ", 2)[0].toLowerCase();
+        if (name.isEmpty() || RESERVED.contains(name)) {
+            return CompletableFuture.failedFuture(new IllegalArgumentException("Команда " + name + " недоступна"));
+        }
+        return withRetry(() -> new CommandRequest(line.trim()), 0);
+    }
+
+    // Файл сервера download/<remote> в local, результат - число байт
+    public CompletableFuture<Long> download(String remote, Path local) {
+        return withRetry(() -> new DownloadRequest(remote, local, INLINE_THRESHOLD), 0);
+    }
+
+    // Файл local в upload/<remote> на сервере, результат - число сохранённых байт
+    public CompletableFuture<Long> upload(Path local, String remote) {
+        // Без файла не уйдёт и команда: проверяем заранее, а не ломаем сеанс на полпути
+        if (!Files.isRegularFile(local)) {
+            return CompletableFuture.failedFuture(new NoSuchFileException(local.toString()));
+        }
+        return withRetry(() -> new UploadRequest(local, remote), 0);
+    }
+
+    private <T> CompletableFuture<T> withRetry(Supplier<Request<T>> requests, int attempt) {
+        Request<T> request;
+        try {
+            request = requests.get();
+        } catch (IllegalArgumentException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        return pool.submit(request).handle((result, error) -> {
+            if (error == null) {
+                return CompletableFuture.completedFuture(result);
+            }
+            Throwable cause = unwrap(error);
+            if (cause instanceof ReplyException reply && reply.getRetryAfterSeconds() >= 0
+                    && attempt < MAX_BUSY_RETRIES) {
+                return CompletableFuture.runAsync(() -> { },
+                                CompletableFuture.delayedExecutor(reply.getRetryAfterSeconds(), TimeUnit.SECONDS))
+                        .thenCompose(_ -> withRetry(requests, attempt + 1));
+            }
+            return CompletableFuture.<T>failedFuture(cause);
+        }).thenCompose(Function.identity());
+    }
+
+    private static Throwable unwrap(Throwable error) {
+        while (error instanceof CompletionException && error.getCause() != null) {
+            error = error.getCause();
+        }
+        return error instanceof UncheckedIOException unchecked ? unchecked.getCause() : error;
+    }
+
+    @Override
+    public void close() {
+        pool.close();
+    }
+}
@@ -0,0 +1,162 @@
+package server.api;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import server.status.Heartbeat;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.SocketTimeoutException;
+import java.util.Queue;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/*
+ * Конвейер запросов одного сеанса. Сервер выполняет команды строго по очереди и отвечает в том же порядке,
+ * поэтому следующий запрос уходит, не дожидаясь ответа на предыдущий: поток записи шлёт запросы,
+ * поток чтения разбирает ответы и отдаёт их запросам из очереди. Он же отвечает на heartbeat сервера.
+ * Ошибка в ответе (ReplyException) завершает только свой запрос, любая другая - весь сеанс.
+ */
+class Pipeline {
+    private static final Logger logger = LoggerFactory.getLogger(Pipeline.class);
+    private static final long CLOSE_TIMEOUT_MS = 1000;
+    private static final long READ_TIMEOUT_NANOS = TimeUnit.MILLISECONDS.toNanos(Session.READ_TIMEOUT);
+
+    private final Session session;
+    private final ExecutorService writer = Executors.newSingleThreadExecutor(
+            Thread.ofVirtual().name("client-writer").factory());
+    private final Queue<Request<?>> inFlight = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger load = new AtomicInteger();
+    private volatile boolean closed = false;
+    private volatile long idleSince = System.nanoTime();
+
+    Pipeline(Session session) {
+        this.session = session;
+        Thread.ofVirtual().name("client-reader").start(this::readReplies);
+    }
+
+    <T> CompletableFuture<T> submit(Request<T> request) {
+        load.incrementAndGet();
+        request.future.whenComplete((_, _) -> {
+            if (load.decrementAndGet() == 0) {
+                idleSince = System.nanoTime();
+            }
+        });
+        try {
+            writer.execute(() -> send(request));
+        } catch (RejectedExecutionException e) {
+            request.future.completeExceptionally(new IOException("Сеанс закрыт"));
+        }
+        return request.future;
+    }
+
+    // В очередь ответов запрос встаёт до отправки: ответ может прийти раньше, чем write вернёт управление
+    private void send(Request<?> request) {
+        synchronized (this) {
+            if (closed) {
+                request.future.completeExceptionally(new IOException("Сеанс закрыт"));
+                return;
+            }
+            inFlight.add(request);
+        }
+        try {
+            request.write(session);
+        } catch (IOException | RuntimeException e) {
+            // Неизвестно, сколько байт запроса ушло, поток команд не восстановить
+            fail(e);
+        }
+    }
+
+    private void readReplies() {
+        try {
+            while (!closed) {
+                String line;
+                try {
+                    line = session.readLine();
+                } catch (SocketTimeoutException e) {
+                    // Во время загрузки сервер молчит: срок ответа отсчитывается от последней записи
+                    if (inFlight.isEmpty() || session.nanosSinceWrite() < READ_TIMEOUT_NANOS) {
+                        continue;
+                    }
+                    throw e;
+                }
+                if (line == null) {
+                    throw new EOFException("Сервер закрыл сеанс");
+                }
+                if (line.equals(Heartbeat.REQUEST)) {
+                    writer.execute(this::heartbeat);
+                    continue;
+                }
+                Request<?> request = inFlight.poll();
+                if (request == null) {
+                    throw new IOException("Ответ без запроса: " + line);
+                }
+                complete(request, line);
+            }
+        } catch (IOException | RuntimeException e) {
+            fail(e);
+        }
+    }
+
+    private <T> void complete(Request<T> request, String line) throws IOException {
+        try {
+            request.future.complete(request.read(session, line));
+        } catch (ReplyException e) {
+            request.future.completeExceptionally(e);
+        } catch (IOException | RuntimeException e) {
+            request.future.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    private void heartbeat() {
+        try {
+            session.writeLine(Heartbeat.RESPONSE);
+            session.flush();
+        } catch (IOException e) {
+            fail(e);
+        }
+    }
+
+    private synchronized void fail(Throwable cause) {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        logger.debug("Сеанс закрыт: {}", cause.getMessage());
+        session.close();
+        // Неотправленные запросы увидят closed и завершатся ошибкой
+        writer.shutdownNow().forEach(Runnable::run);
+        Request<?> request;
+        while ((request = inFlight.poll()) != null) {
+            request.future.completeExceptionally(cause);
+        }
+    }
+
+    boolean isOpen() {
+        return !closed;
+    }
+
+    int load() {
+        return load.get();
+    }
+
+    long idleNanos() {
+        return load.get() > 0 ? 0 : System.nanoTime() - idleSince;
+    }
+
+    // Вежливое закрытие: сервер освобождает процесс по команде close, не дожидаясь таймаута
+    void close() {
+        if (closed) {
+            return;
+        }
+        try {
+            submit(new CommandRequest("close")).get(CLOSE_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        } catch (ExecutionException | TimeoutException e) {
+            logger.debug("Сервер не подтвердил закрытие сеанса: {}", e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        fail(new IOException("Сеанс закрыт"));
+    }
+}
@@ -0,0 +1,37 @@
+package server.api;
+
+import server.status.Status;
+
+import java.io.IOException;
+import java.io.Serial;
+
+/*
+ * Сервер ответил ошибкой, но поток ответов не нарушен - сеанс можно использовать дальше.
+ * Остальные IOException означают, что сеанс потерян.
+ */
+public class ReplyException extends IOException {
+    @Serial
+    private static final long serialVersionUID = 1L;
+
+    private final Status status;
+    private final String reply;
+
+    public ReplyException(String reply) {
+        super(reply);
+        this.reply = reply;
+        this.status = Status.getStatusFromCode(Request.code(reply));
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public String getReply() {
+        return reply;
+    }
+
+    // Через сколько секунд сервер предлагает повторить отклонённую передачу, -1 - повтор не предложен
+    public long getRetryAfterSeconds() {
+        return status == Status.BUSY ? Request.option(reply, "retry", 1) : -1;
+    }
+}
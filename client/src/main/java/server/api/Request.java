@@ -0,0 +1,71 @@
+package server.api;
+
+import server.status.Status;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+
+/*
+ * Запрос в конвейере сеанса: write выполняет поток записи, read - поток чтения,
+ * когда до этого запроса дошла очередь ответов. Первая строка ответа уже прочитана.
+ */
+abstract class Request<T> {
+    final CompletableFuture<T> future = new CompletableFuture<>();
+
+    abstract void write(Session session) throws IOException;
+
+    abstract T read(Session session, String firstLine) throws IOException;
+
+    // Ответы на download и upload за один обмен начинаются с "300 END", следом - строка с результатом
+    static String resultLine(Session session, String firstLine) throws IOException {
+        if (code(firstLine) != Status.END.code()) {
+            throw new IOException("Ожидался ответ " + Status.END.code() + ", получено: " + firstLine);
+        }
+        String line = session.readLine();
+        if (line == null) {
+            throw new IOException("Сервер закрыл сеанс, не ответив на запрос");
+        }
+        if (code(line) != Status.SUCCESS.code()) {
+            throw new ReplyException(line);
+        }
+        return line;
+    }
+
+    static int code(String line) {
+        int space = line.indexOf(' ');
+        try {
+            return Integer.parseInt(space < 0 ? line : line.substring(0, space));
+        } catch (NumberFormatException e) {
+            return Status.UNKNOWN.code();
+        }
+    }
+
+    static long option(String line, String name, long defaultValue) {
+        for (String part : line.split(" ")) {
+            if (part.startsWith(name + "=")) {
+                try {
+                    return Long.parseLong(part.substring(name.length() + 1));
+                } catch (NumberFormatException e) {
+                    return defaultValue;
+                }
+            }
+        }
+        return defaultValue;
+    }
+
+    static long option(String line, String name) throws IOException {
+        long value = option(line, name, Long.MIN_VALUE);
+        if (value == Long.MIN_VALUE) {
+            throw new IOException("В ответе нет " + name + ": " + line);
+        }
+        return value;
+    }
+
+    // Имена передаются через пробел, пробел внутри имени сервер не разберёт
+    static String checkName(String name) {
+        if (name.isBlank() || name.chars().anyMatch(Character::isWhitespace)) {
+            throw new IllegalArgumentException("Имя файла не должно содержать пробелов: \"" + name + "\"");
+        }
+        return name;
+    }
+}
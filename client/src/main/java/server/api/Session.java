@@ -0,0 +1,56 @@
+package server.api;
+
+import java.io.EOFException;
+import java.io.IOException;
+
+/*
+ * Одно подключение к процессу сервера. Команды и ответы - строки, данные - байты между ними.
+ * Порядок байт контрольной суммы у транспортов разный, поэтому она читается и пишется отдельно.
+ */
+abstract class Session implements AutoCloseable {
+    // Сколько ждать очередной части ответа после того, как запрос целиком отправлен
+    static final int READ_TIMEOUT = 120_000;
+    // Сколько ждать, пока сервер поднимет процесс для клиента
+    static final int CONNECT_TIMEOUT = 30_000;
+
+    private volatile long lastWrite = System.nanoTime();
+
+    abstract void writeLine(String line) throws IOException;
+
+    abstract void write(byte[] data, int offset, int length) throws IOException;
+
+    abstract void writeDigest(long digest) throws IOException;
+
+    abstract void flush() throws IOException;
+
+    // null - сеанс закрыт сервером
+    abstract String readLine() throws IOException;
+
+    // Не больше length байт данных, -1 - сеанс закрыт
+    abstract int read(byte[] data, int offset, int length) throws IOException;
+
+    abstract long readDigest() throws IOException;
+
+    @Override
+    public abstract void close();
+
+    // Реализации отмечают каждую запись: пока запрос уходит, ответа на него не ждут
+    void wrote() {
+        lastWrite = System.nanoTime();
+    }
+
+    long nanosSinceWrite() {
+        return System.nanoTime() - lastWrite;
+    }
+
+    void readFully(byte[] data, int offset, int length) throws IOException {
+        while (length > 0) {
+            int read = read(data, offset, length);
+            if (read < 0) {
+                throw new EOFException("Сеанс закрыт посреди данных");
+            }
+            offset += read;
+            length -= read;
+        }
+    }
+}
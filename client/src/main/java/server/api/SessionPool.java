@@ -0,0 +1,120 @@
+package server.api;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.*;
+
+/*
+ * Не больше maxSessions сеансов с сервером - и столько же его процессов. Запрос уходит в свободный сеанс;
+ * если все заняты, открывается новый, а при исчерпании лимита запрос встаёт в конвейер наименее
+ * загруженного. Сеанс без запросов дольше idleTimeout закрывается.
+ */
+class SessionPool implements AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(SessionPool.class);
+
+    private final InetSocketAddress server;
+    private final Transport transport;
+    private final int maxSessions;
+    private final long idleTimeoutNanos;
+    private final List<Pipeline> pipelines = new ArrayList<>();
+    private final List<CompletableFuture<Pipeline>> opening = new ArrayList<>();
+    private final ExecutorService connector = Executors.newVirtualThreadPerTaskExecutor();
+    private final ScheduledExecutorService reaper = Executors.newSingleThreadScheduledExecutor(
+            Thread.ofVirtual().name("client-pool-reaper").factory());
+    private boolean closed = false;
+
+    SessionPool(InetSocketAddress server, Transport transport, int maxSessions, long idleTimeoutMs) {
+        this.server = server;
+        this.transport = transport;
+        this.maxSessions = Math.max(maxSessions, 1);
+        this.idleTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(idleTimeoutMs);
+        long period = Math.max(idleTimeoutMs / 2, 100);
+        reaper.scheduleAtFixedRate(this::closeIdle, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    // Запрос ставится в конвейер под блокировкой, чтобы выбранный сеанс не закрылся как простаивающий
+    synchronized <T> CompletableFuture<T> submit(Request<T> request) {
+        if (closed) {
+            return CompletableFuture.failedFuture(new IOException("Клиент закрыт"));
+        }
+        pipelines.removeIf(pipeline -> !pipeline.isOpen());
+        Pipeline best = pipelines.stream().min(Comparator.comparingInt(Pipeline::load)).orElse(null);
+        if (best != null && best.load() == 0) {
+            return best.submit(request);
+        }
+        if (pipelines.size() + opening.size() < maxSessions) {
+            // Не удалось подключиться - запрос всё же выполнит занятый сеанс, если он есть
+            return open().exceptionallyCompose(e -> best != null
+                            ? CompletableFuture.completedFuture(best)
+                            : CompletableFuture.failedFuture(e))
+                    .thenCompose(pipeline -> pipeline.submit(request));
+        }
+        if (best != null) {
+            return best.submit(request);
+        }
+        return opening.getFirst().thenCompose(pipeline -> pipeline.submit(request));
+    }
+
+    private CompletableFuture<Pipeline> open() {
+        var future = CompletableFuture.supplyAsync(this::connect, connector);
+        opening.add(future);
+        future.whenComplete((pipeline, _) -> opened(future, pipeline));
+        return future;
+    }
+
+    private synchronized void opened(CompletableFuture<Pipeline> future, Pipeline pipeline) {
+        opening.remove(future);
+        if (pipeline == null) {
+            return;
+        }
+        if (closed) {
+            pipeline.close();
+        } else {
+            pipelines.add(pipeline);
+        }
+    }
+
+    private Pipeline connect() {
+        try {
+            Session session = transport == Transport.TCP ? TcpSession.open(server) : UdpSession.open(server);
+            logger.debug("Открыт сеанс {} с {}", transport, server);
+            return new Pipeline(session);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void closeIdle() {
+        List<Pipeline> idle = new ArrayList<>();
+        synchronized (this) {
+            for (var iterator = pipelines.iterator(); iterator.hasNext(); ) {
+                Pipeline pipeline = iterator.next();
+                if (!pipeline.isOpen() || pipeline.idleNanos() > idleTimeoutNanos) {
+                    iterator.remove();
+                    idle.add(pipeline);
+                }
+            }
+        }
+        idle.forEach(Pipeline::close);
+    }
+
+    @Override
+    public void close() {
+        List<Pipeline> open;
+        synchronized (this) {
+            closed = true;
+            open = new ArrayList<>(pipelines);
+            pipelines.clear();
+        }
+        reaper.shutdownNow();
+        open.forEach(Pipeline::close);
+        connector.shutdown();
+    }
+}
@@ -0,0 +1,121 @@
+package server.api;
+
+import java.io.*;
+import java.net.ConnectException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+
+/*
+ * Основной порт отвечает строкой с портом процесса для клиента, дальше весь обмен идёт с ним.
+ * Контрольная сумма передаётся в обратном порядке байт, как её пишет сервер.
+ */
+class TcpSession extends Session {
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final Socket socket;
+    private final DataInputStream in;
+    private final DataOutputStream out;
+
+    private TcpSession(Socket socket) throws IOException {
+        this.socket = socket;
+        socket.setTcpNoDelay(true);
+        socket.setKeepAlive(true);
+        socket.setSoTimeout(READ_TIMEOUT);
+        in = new DataInputStream(new BufferedInputStream(socket.getInputStream(), BUFFER_SIZE));
+        out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream(), BUFFER_SIZE));
+    }
+
+    static TcpSession open(InetSocketAddress server) throws IOException {
+        int port;
+        try (var socket = new Socket(server.getAddress(), server.getPort());
+             var reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8))) {
+            socket.setSoTimeout(CONNECT_TIMEOUT);
+            String line = reader.readLine();
+            if (line == null) {
+                throw new EOFException("Сервер закрыл соединение, не назначив порт");
+            }
+            port = Integer.parseInt(line.trim());
+        } catch (NumberFormatException e) {
+            throw new IOException("Некорректный порт от сервера: " + e.getMessage());
+        }
+        // Процесс для клиента мог ещё не занять порт
+        long deadline = System.currentTimeMillis() + CONNECT_TIMEOUT;
+        while (true) {
+            try {
+                return new TcpSession(new Socket(server.getAddress(), port));
+            } catch (ConnectException e) {
+                if (System.currentTimeMillis() > deadline) {
+                    throw e;
+                }
+                sleep();
+            }
+        }
+    }
+
+    private static void sleep() throws IOException {
+        try {
+            Thread.sleep(50);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Подключение прервано");
+        }
+    }
+
+    @Override
+    void writeLine(String line) throws IOException {
+        out.write((line + "\n").getBytes(StandardCharsets.UTF_8));
+        wrote();
+    }
+
+    @Override
+    void write(byte[] data, int offset, int length) throws IOException {
+        out.write(data, offset, length);
+        wrote();
+    }
+
+    @Override
+    void writeDigest(long digest) throws IOException {
+        out.writeLong(Long.reverseBytes(digest));
+        wrote();
+    }
+
+    @Override
+    void flush() throws IOException {
+        out.flush();
+        wrote();
+    }
+
+    // По байту: данные идут сразу за строкой, и читать их вперёд нельзя
+    @Override
+    String readLine() throws IOException {
+        var bytes = new ByteArrayOutputStream();
+        int b;
+        while ((b = in.read()) != -1 && b != '\n') {
+            bytes.write(b);
+        }
+        if (b == -1 && bytes.size() == 0) {
+            return null;
+        }
+        return bytes.toString(StandardCharsets.UTF_8).trim();
+    }
+
+    @Override
+    int read(byte[] data, int offset, int length) throws IOException {
+        return in.read(data, offset, length);
+    }
+
+    @Override
+    long readDigest() throws IOException {
+        return Long.reverseBytes(in.readLong());
+    }
+
+    @Override
+    public void close() {
+        try {
+            socket.close();
+        } catch (IOException _) {
+            // Сеанс уже не нужен
+        }
+    }
+}
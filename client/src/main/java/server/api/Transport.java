@@ -0,0 +1,6 @@
+package server.api;
+
+public enum Transport {
+    TCP,
+    UDP
+}
@@ -0,0 +1,166 @@
+package server.api;
+
+import server.socket.Message;
+import server.socket.ReliableUdpSocket;
+import server.status.Status;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/*
+ * Каждая строка и каждая порция данных - отдельная дейтаграмма ReliableUdpSocket.
+ * Данные копятся до полного размера дейтаграммы, перед строкой и контрольной суммой
+ * остаток отправляется: сервер ждёт их отдельными сообщениями.
+ * Ответ INLINE - строка и данные в одной дейтаграмме, данные читаются из её остатка.
+ */
+class UdpSession extends Session {
+    private static final String CONNECT_MESSAGE = Status.CONNECT.code() + " CONNECT";
+    // Как часто поток чтения проверяет, не закрыт ли сеанс
+    private static final int POLL_MS = 1000;
+
+    private final ReliableUdpSocket socket;
+    private final InetAddress address;
+    private final int port;
+    private final byte[] pending;
+    private int pendingLength = 0;
+    private Message current;
+    private int position;
+    private volatile boolean closed = false;
+
+    private UdpSession(ReliableUdpSocket socket, InetAddress address, int port) {
+        this.socket = socket;
+        this.address = address;
+        this.port = port;
+        this.pending = new byte[socket.getPayloadSize()];
+    }
+
+    static UdpSession open(InetSocketAddress server) throws IOException {
+        int port;
+        try (var listener = new ReliableUdpSocket(0, true)) {
+            listener.setSoTimeout(CONNECT_TIMEOUT);
+            listener.send(CONNECT_MESSAGE, server.getAddress(), server.getPort());
+            expect(listener.receive(), Status.SUCCESS);
+            port = Integer.parseInt(listener.receive().text().trim());
+        } catch (NumberFormatException e) {
+            throw new IOException("Некорректный порт от сервера: " + e.getMessage());
+        }
+        // Нумерация пакетов у процесса для клиента начинается заново, поэтому и сокет новый
+        var socket = new ReliableUdpSocket(0, true);
+        try {
+            socket.setSoTimeout(CONNECT_TIMEOUT);
+            socket.send(CONNECT_MESSAGE, server.getAddress(), port);
+            expect(socket.receive(), Status.SUCCESS);
+            socket.setSoTimeout(POLL_MS);
+            return new UdpSession(socket, server.getAddress(), port);
+        } catch (IOException | RuntimeException e) {
+            socket.close();
+            throw e;
+        }
+    }
+
+    private static void expect(Message message, Status status) throws IOException {
+        if (Request.code(message.text()) != status.code()) {
+            throw new IOException("Сервер не принял подключение: " + message.text());
+        }
+    }
+
+    @Override
+    void writeLine(String line) throws IOException {
+        flush();
+        socket.send(line, address, port, READ_TIMEOUT);
+        wrote();
+    }
+
+    @Override
+    void write(byte[] data, int offset, int length) throws IOException {
+        while (length > 0) {
+            int part = Math.min(length, pending.length - pendingLength);
+            System.arraycopy(data, offset, pending, pendingLength, part);
+            pendingLength += part;
+            offset += part;
+            length -= part;
+            if (pendingLength == pending.length) {
+                flush();
+            }
+        }
+    }
+
+    @Override
+    void writeDigest(long digest) throws IOException {
+        flush();
+        socket.send(ByteBuffer.allocate(Long.BYTES).putLong(digest).array(), address, port, READ_TIMEOUT);
+        wrote();
+    }
+
+    // Сокет копирует данные в пакет, буфер можно сразу использовать снова
+    @Override
+    void flush() throws IOException {
+        if (pendingLength == 0) {
+            return;
+        }
+        byte[] data = pendingLength == pending.length ? pending : Arrays.copyOf(pending, pendingLength);
+        pendingLength = 0;
+        socket.send(data, address, port, READ_TIMEOUT);
+        wrote();
+    }
+
+    @Override
+    String readLine() throws IOException {
+        Message message = next();
+        int end = 0;
+        while (end < message.length() && message.data()[end] != '\n') {
+            end++;
+        }
+        // Что осталось после строки - данные ответа INLINE
+        current = message;
+        position = Math.min(end + 1, message.length());
+        return new String(message.data(), 0, end, StandardCharsets.UTF_8).trim();
+    }
+
+    @Override
+    int read(byte[] data, int offset, int length) throws IOException {
+        if (current == null || position >= current.length()) {
+            current = next();
+            position = 0;
+        }
+        int part = Math.min(length, current.length() - position);
+        System.arraycopy(current.data(), position, data, offset, part);
+        position += part;
+        return part;
+    }
+
+    @Override
+    long readDigest() throws IOException {
+        byte[] digest = new byte[Long.BYTES];
+        readFully(digest, 0, digest.length);
+        return ByteBuffer.wrap(digest).getLong();
+    }
+
+    private Message next() throws IOException {
+        long deadline = System.currentTimeMillis() + READ_TIMEOUT;
+        while (true) {
+            try {
+                return socket.receive(POLL_MS);
+            } catch (SocketTimeoutException e) {
+                if (closed) {
+                    throw new EOFException("Сеанс закрыт");
+                }
+                if (System.currentTimeMillis() > deadline) {
+                    throw e;
+                }
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        socket.close();
+    }
+}
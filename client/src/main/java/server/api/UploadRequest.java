@@ -0,0 +1,49 @@
+package server.api;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.util.zip.CRC32C;
+
+// upload <файл> <файл> size=<n> за один обмен: данные и CRC32C идут сразу за командой, ответ "200 STORED size="
+class UploadRequest extends Request<Long> {
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final Path local;
+    private final String remote;
+
+    UploadRequest(Path local, String remote) {
+        this.local = local;
+        this.remote = checkName(remote);
+    }
+
+    @Override
+    void write(Session session) throws IOException {
+        try (var channel = FileChannel.open(local)) {
+            long size = channel.size();
+            session.writeLine("upload " + remote + " " + remote + " size=" + size);
+            var digest = new CRC32C();
+            var buffer = ByteBuffer.allocate(BUFFER_SIZE);
+            long sent = 0;
+            while (sent < size) {
+                buffer.clear().limit((int) Math.min(BUFFER_SIZE, size - sent));
+                int read = channel.read(buffer, sent);
+                if (read < 0) {
+                    // Сервер ждёт size байт, поток команд уже не восстановить
+                    throw new IOException("Файл " + local + " укоротился во время загрузки");
+                }
+                session.write(buffer.array(), 0, read);
+                digest.update(buffer.array(), 0, read);
+                sent += read;
+            }
+            session.writeDigest(digest.getValue());
+            session.flush();
+        }
+    }
+
+    @Override
+    Long read(Session session, String firstLine) throws IOException {
+        return option(resultLine(session, firstLine), "size");
+    }
+}
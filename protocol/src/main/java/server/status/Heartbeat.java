@@ -0,0 +1,10 @@
+package server.status;
+
+// Строки heartbeat: сервер спрашивает простаивающего клиента, жив ли он, клиент отвечает
+public final class Heartbeat {
+    public static final String REQUEST = "PING";
+    public static final String RESPONSE = "PONG";
+
+    private Heartbeat() {
+    }
+}
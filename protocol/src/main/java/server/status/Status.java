@@ -4,6 +4,7 @@ public enum Status {
     SUCCESS(200, "Successful"),
     END(300, "End of response"),
     ERROR(400, "Error"),
+    BUSY(503, "Server busy, retry later"),
     UNKNOWN(-1, "Unknown status"),
     NO_END(-300, "No end of response"),
     CONNECT(100, "Request to connect");
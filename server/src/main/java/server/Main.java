@@ -3,13 +3,22 @@ package server;
 import server.connector.Connector;
 import server.connector.TcpConnector;
 import server.connector.UdpConnector;
+import server.metrics.MetricsEndpoint;
 
 import java.util.Scanner;
 
 public class Main {
         public static void main(String[] args) {
+            // Дочерний процесс запускается с протоколом и портом
+            try (var _ = MetricsEndpoint.startIfConfigured(args.length > 1)) {
+                run(args);
+            }
+        }
+
+        private static void run(String[] args) {
             Connector connector;
             if(args.length > 1) {
+                Connector.prepareWorker();
                 int port = Integer.parseInt(args[1]);
                 if (args[0].equals("TCP")) {
                     System.out.println("TCP, port " + port);
@@ -0,0 +1,184 @@
+package server.admission;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import server.metrics.Counter;
+import server.metrics.Histogram;
+import server.metrics.Labels;
+import server.metrics.MetricsRegistry;
+
+import server.runtime.RuntimeDirectory;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/*
+ * Допуск передач: не больше GLOBAL_LIMIT одновременно на сервер и CLIENT_LIMIT на клиента.
+ * Не получившие слот ждут в ограниченной очереди AdmissionTable не дольше своего срока и допускаются
+ * по приоритету, а внутри приоритета - в порядке прихода; при полной очереди или по истечении срока
+ * клиент сразу получает отказ с советом, через сколько повторить.
+ * Лишние передачи ждут, а не делят диск и page cache, поэтому при перегрузке
+ * суммарная скорость остаётся близкой к пиковой.
+ */
+public final class AdmissionController {
+    private static final Logger logger = LoggerFactory.getLogger(AdmissionController.class);
+    private static final int GLOBAL_LIMIT = Math.max(Integer.getInteger("server.admission.global", 64), 1);
+    private static final int CLIENT_LIMIT = Math.max(Integer.getInteger("server.admission.client", 8), 1);
+    private static final int QUEUE_LIMIT = Math.max(Integer.getInteger("server.admission.queue", 256), 0);
+    private static final long MAX_WAIT_MS = Long.getLong("server.admission.maxWaitMs", 10_000);
+    // Слот выдаёт другой процесс прямо в таблице, ожидающий только проверяет свою запись
+    private static final long POLL_MS = 2;
+    private static final AdmissionController INSTANCE = new AdmissionController();
+
+    private final AdmissionTable table;
+    private final AtomicInteger active = new AtomicInteger();
+    private final AtomicInteger waiting = new AtomicInteger();
+    // Сглаженная длительность передачи в секундах - по ней советуем, когда повторить
+    private volatile double averageSeconds = 1;
+    private final Counter admitted;
+    private final Counter queued;
+    private final Counter rejected;
+    private final Histogram waitTime;
+
+    private AdmissionController() {
+        // Общий каталог сервера: очереди двух серверов на одной машине не смешиваются
+        Path directory = Path.of(System.getProperty("server.admission.dir", RuntimeDirectory.get().toString()));
+        try {
+            table = AdmissionTable.open(directory, GLOBAL_LIMIT, CLIENT_LIMIT, QUEUE_LIMIT);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Очередь допуска недоступна", e);
+        }
+        Thread.ofPlatform().daemon().name("admission-lease").start(this::renewLoop);
+        var registry = MetricsRegistry.getInstance();
+        admitted = registry.counter("server_admission_total", "Transfer admission decisions",
+                Labels.of("result", "admitted"));
+        queued = registry.counter("server_admission_total", "Transfer admission decisions",
+                Labels.of("result", "queued"));
+        rejected = registry.counter("server_admission_total", "Transfer admission decisions",
+                Labels.of("result", "rejected"));
+        waitTime = registry.histogram("server_admission_wait_seconds", "Time transfers waited for admission",
+                Labels.EMPTY, Histogram.LATENCY_BUCKETS);
+        registry.gauge("server_admission_active", "Admitted transfers in this process", Labels.EMPTY, active::get);
+        registry.gauge("server_admission_waiting", "Transfers of this process waiting for admission",
+                Labels.EMPTY, waiting::get);
+    }
+
+    public static AdmissionController getInstance() {
+        return INSTANCE;
+    }
+
+    public class Permit implements AutoCloseable {
+        private final int slot;
+        private final long start = System.nanoTime();
+        private boolean closed = false;
+
+        private Permit(int slot) {
+            this.slot = slot;
+            active.incrementAndGet();
+        }
+
+        @Override
+        public void close() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            leave(slot);
+            active.decrementAndGet();
+            averageSeconds = 0.8 * averageSeconds + 0.2 * (System.nanoTime() - start) / 1e9;
+        }
+    }
+
+    // deadlineMs <= 0 - ждать не дольше server.admission.maxWaitMs
+    public Permit acquire(InetAddress client, TransferPriority priority, long deadlineMs)
+            throws BusyException, InterruptedIOException {
+        int slot;
+        try {
+            slot = table.enter(client, priority);
+        } catch (IOException e) {
+            rejected.increment();
+            logger.warn("Очередь допуска недоступна: {}", e.getMessage());
+            throw new BusyException("Очередь допуска недоступна", retryAfter());
+        }
+        if (slot < 0) {
+            rejected.increment();
+            throw new BusyException("Очередь передач заполнена", retryAfter());
+        }
+        if (table.state(slot) == AdmissionTable.ACTIVE) {
+            admitted.increment();
+            return new Permit(slot);
+        }
+        queued.increment();
+        waiting.incrementAndGet();
+        long start = System.nanoTime();
+        long wait = deadlineMs > 0 ? Math.min(deadlineMs, MAX_WAIT_MS) : MAX_WAIT_MS;
+        try {
+            while (true) {
+                try {
+                    Thread.sleep(POLL_MS);
+                } catch (InterruptedException e) {
+                    leave(slot);
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Ожидание допуска прервано");
+                }
+                int state = table.state(slot);
+                long waited = System.nanoTime() - start;
+                if (state == AdmissionTable.ACTIVE) {
+                    waitTime.observeNanos(waited);
+                    return new Permit(slot);
+                }
+                if (state == AdmissionTable.LOST || waited >= wait * 1_000_000) {
+                    // Слот могли выдать между проверкой и выходом из очереди - тогда передача допущена
+                    if (cancel(slot) == AdmissionTable.ACTIVE) {
+                        waitTime.observeNanos(waited);
+                        return new Permit(slot);
+                    }
+                    rejected.increment();
+                    logger.debug("Передача клиента {} не дождалась допуска за {} мс", client, wait);
+                    throw new BusyException("Не дождались свободного слота за " + wait + " мс", retryAfter());
+                }
+            }
+        } finally {
+            waiting.decrementAndGet();
+        }
+    }
+
+    private int cancel(int slot) {
+        try {
+            return table.cancel(slot);
+        } catch (IOException e) {
+            logger.warn("Не удалось выйти из очереди допуска: {}", e.getMessage());
+            return AdmissionTable.LOST;
+        }
+    }
+
+    private void leave(int slot) {
+        try {
+            table.leave(slot);
+        } catch (IOException e) {
+            // Запись истечёт сама через AdmissionTable.LEASE_MS
+            logger.warn("Не удалось освободить слот допуска: {}", e.getMessage());
+        }
+    }
+
+    private void renewLoop() {
+        while (true) {
+            try {
+                Thread.sleep(AdmissionTable.LEASE_MS / 4);
+                table.renew();
+            } catch (InterruptedException e) {
+                return;
+            } catch (IOException e) {
+                logger.warn("Не удалось продлить записи очереди допуска: {}", e.getMessage());
+            }
+        }
+    }
+
+    private int retryAfter() {
+        return (int) Math.min(60, Math.max(1, Math.ceil(averageSeconds)));
+    }
+}
@@ -0,0 +1,237 @@
+package server.admission;
+
+import java.io.IOException;
+import java.net.Inet4Address;
+import java.net.InetAddress;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+
+/*
+ * Очередь допуска, общая для всех процессов сервера: файл admission.table, отображённый в память.
+ * Запись - передача процесса, ожидающая или допущенная, с приоритетом, номером в очереди и адресом клиента.
+ * Допуск раздаёт тот процесс, который меняет таблицу: после постановки в очередь, освобождения слота
+ * и продления аренды ожидающие обходятся по приоритету, внутри приоритета - по номеру, и получают слоты,
+ * пока их хватает. Записи упавшего процесса истекают через LEASE_MS. Все изменения - под блокировкой файла.
+ */
+final class AdmissionTable {
+    static final long LEASE_MS = 3000;
+    static final int LOST = 0;
+    static final int WAITING = 1;
+    static final int ACTIVE = 2;
+    private static final int MAGIC = 0x41444d54;
+    private static final int HEADER_SIZE = 64;
+    private static final int NEXT_TICKET = 8;
+    // pid, срок аренды, номер в очереди, состояние, приоритет, адрес клиента в виде IPv6
+    private static final int SLOT_SIZE = 48;
+    private static final int SLOTS = 4096;
+    private static final int LEASE_OFFSET = 8;
+    private static final int TICKET_OFFSET = 16;
+    private static final int STATE_OFFSET = 24;
+    private static final int PRIORITY_OFFSET = 28;
+    private static final int ADDRESS_OFFSET = 32;
+    private static final TransferPriority[] PRIORITIES = TransferPriority.values();
+
+    private record Waiter(int slot, int priority, long ticket, String client) {
+    }
+
+    private final long pid = ProcessHandle.current().pid();
+    private final FileChannel channel;
+    private final MappedByteBuffer table;
+    private final int globalLimit;
+    private final int clientLimit;
+    private final int queueLimit;
+    // Записи процесса: слот -> номер; по номеру видно, что слот не заняли после истечения аренды
+    private final Map<Integer, Long> own = new HashMap<>();
+
+    private AdmissionTable(FileChannel channel, int globalLimit, int clientLimit, int queueLimit) throws IOException {
+        this.channel = channel;
+        this.table = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE + (long) SLOT_SIZE * SLOTS);
+        this.globalLimit = globalLimit;
+        this.clientLimit = clientLimit;
+        this.queueLimit = queueLimit;
+    }
+
+    static AdmissionTable open(Path directory, int globalLimit, int clientLimit, int queueLimit) throws IOException {
+        Files.createDirectories(directory);
+        var channel = FileChannel.open(directory.resolve("admission.table"),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            var admission = new AdmissionTable(channel, globalLimit, clientLimit, queueLimit);
+            try (var _ = channel.lock()) {
+                if (admission.table.getInt(0) != MAGIC) {
+                    admission.table.putInt(0, MAGIC);
+                }
+            }
+            return admission;
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /*
+     * Ставит передачу в конец очереди своего приоритета и раздаёт свободные слоты. Новая передача
+     * не обгоняет ожидающих: слот она получит, только если его хватит и им. Возвращает слот записи
+     * или -1, если ждать негде - очередь заполнена.
+     */
+    synchronized int enter(InetAddress client, TransferPriority priority) throws IOException {
+        long now = System.currentTimeMillis();
+        try (FileLock _ = channel.lock()) {
+            int slot = freeSlot(now);
+            if (slot < 0) {
+                return -1;
+            }
+            long ticket = table.getLong(NEXT_TICKET) + 1;
+            table.putLong(NEXT_TICKET, ticket);
+            int offset = offset(slot);
+            table.putLong(offset + LEASE_OFFSET, now + LEASE_MS);
+            table.putLong(offset + TICKET_OFFSET, ticket);
+            table.putInt(offset + STATE_OFFSET, WAITING);
+            table.putInt(offset + PRIORITY_OFFSET, priority.ordinal());
+            table.put(offset + ADDRESS_OFFSET, encode(client));
+            table.putLong(offset, pid);
+            own.put(slot, ticket);
+            if (dispatch(now) > queueLimit && table.getInt(offset + STATE_OFFSET) == WAITING) {
+                clear(slot);
+                return -1;
+            }
+            return slot;
+        }
+    }
+
+    // Состояние записи; LOST - запись заняли после истечения аренды, пока процесс стоял
+    synchronized int state(int slot) {
+        Long ticket = own.get(slot);
+        int offset = offset(slot);
+        if (ticket == null || table.getLong(offset) != pid || table.getLong(offset + TICKET_OFFSET) != ticket) {
+            return LOST;
+        }
+        return table.getInt(offset + STATE_OFFSET);
+    }
+
+    // Убирает запись и отдаёт освободившийся слот ожидающим; возвращает её последнее состояние
+    synchronized int leave(int slot) throws IOException {
+        try (FileLock _ = channel.lock()) {
+            int state = state(slot);
+            if (state != LOST) {
+                clear(slot);
+            }
+            own.remove(slot);
+            dispatch(System.currentTimeMillis());
+            return state;
+        }
+    }
+
+    // Выход из очереди по сроку: уже выданный слот остаётся за передачей
+    synchronized int cancel(int slot) throws IOException {
+        try (FileLock _ = channel.lock()) {
+            int state = state(slot);
+            if (state == WAITING) {
+                clear(slot);
+            } else if (state == LOST) {
+                own.remove(slot);
+            }
+            return state;
+        }
+    }
+
+    // Продлевает записи процесса и раздаёт слоты, освободившиеся по истечении чужой аренды
+    synchronized void renew() throws IOException {
+        if (own.isEmpty()) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        try (FileLock _ = channel.lock()) {
+            for (int slot : own.keySet()) {
+                if (state(slot) != LOST) {
+                    table.putLong(offset(slot) + LEASE_OFFSET, now + LEASE_MS);
+                }
+            }
+            dispatch(now);
+        }
+    }
+
+    /*
+     * Выдаёт слоты ожидающим по приоритету и номеру. Ожидающий, которому не хватает слота его клиента
+     * или его приоритета, не задерживает следующих. Возвращает число оставшихся ожидающих.
+     */
+    private int dispatch(long now) {
+        int active = 0;
+        Map<String, Integer> clients = new HashMap<>();
+        List<Waiter> waiters = new ArrayList<>();
+        byte[] address = new byte[16];
+        for (int slot = 0; slot < SLOTS; slot++) {
+            int offset = offset(slot);
+            if (table.getLong(offset) == 0) {
+                continue;
+            }
+            if (table.getLong(offset + LEASE_OFFSET) < now) {
+                table.putLong(offset, 0);
+                continue;
+            }
+            table.get(offset + ADDRESS_OFFSET, address);
+            String client = HexFormat.of().formatHex(address);
+            if (table.getInt(offset + STATE_OFFSET) == ACTIVE) {
+                active++;
+                clients.merge(client, 1, Integer::sum);
+            } else {
+                waiters.add(new Waiter(slot, table.getInt(offset + PRIORITY_OFFSET),
+                        table.getLong(offset + TICKET_OFFSET), client));
+            }
+        }
+        waiters.sort(Comparator.comparingInt(Waiter::priority).thenComparingLong(Waiter::ticket));
+        int remaining = waiters.size();
+        for (Waiter waiter : waiters) {
+            if (active >= PRIORITIES[waiter.priority()].usableSlots(globalLimit)
+                    || clients.getOrDefault(waiter.client(), 0) >= clientLimit) {
+                continue;
+            }
+            table.putInt(offset(waiter.slot()) + STATE_OFFSET, ACTIVE);
+            active++;
+            clients.merge(waiter.client(), 1, Integer::sum);
+            remaining--;
+        }
+        return remaining;
+    }
+
+    private void clear(int slot) {
+        table.putLong(offset(slot), 0);
+        own.remove(slot);
+    }
+
+    private int freeSlot(long now) {
+        for (int slot = 0; slot < SLOTS; slot++) {
+            int offset = offset(slot);
+            if (table.getLong(offset) == 0 || table.getLong(offset + LEASE_OFFSET) < now) {
+                return slot;
+            }
+        }
+        return -1;
+    }
+
+    private static int offset(int slot) {
+        return HEADER_SIZE + slot * SLOT_SIZE;
+    }
+
+    private static byte[] encode(InetAddress address) {
+        byte[] raw = address.getAddress();
+        if (address instanceof Inet4Address) {
+            byte[] mapped = new byte[16];
+            mapped[10] = (byte) 0xff;
+            mapped[11] = (byte) 0xff;
+            System.arraycopy(raw, 0, mapped, 12, 4);
+            return mapped;
+        }
+        return raw;
+    }
+}
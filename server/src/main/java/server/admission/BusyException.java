@@ -0,0 +1,21 @@
+package server.admission;
+
+import java.io.IOException;
+import java.io.Serial;
+
+// Передача не допущена: очередь заполнена или срок ожидания истёк, клиенту стоит повторить позже
+public class BusyException extends IOException {
+    @Serial
+    private static final long serialVersionUID = 1L;
+
+    private final int retryAfterSeconds;
+
+    public BusyException(String message, int retryAfterSeconds) {
+        super(message);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public int getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
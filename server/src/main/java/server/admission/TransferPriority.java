@@ -0,0 +1,32 @@
+package server.admission;
+
+/*
+ * Приоритет передачи из опции priority=high|normal|low. Очередь допуска обслуживает
+ * ожидающих строго по приоритету, в порядке объявления, а внутри приоритета - по приходу.
+ * reservedShare - доля общих слотов, недоступная этому приоритету: она остаётся
+ * для более важных передач, даже когда менее важные заполнили сервер.
+ */
+public enum TransferPriority {
+    HIGH(0),
+    NORMAL(0.125),
+    LOW(0.25);
+
+    private final double reservedShare;
+
+    TransferPriority(double reservedShare) {
+        this.reservedShare = reservedShare;
+    }
+
+    // Сколько из limit общих слотов может занять передача этого приоритета
+    int usableSlots(int limit) {
+        return Math.max(1, limit - (int) Math.floor(limit * reservedShare));
+    }
+
+    public static TransferPriority parse(String value) {
+        try {
+            return valueOf(value.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Некорректный приоритет " + value);
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package server.bandwidth;
+
+public interface BandwidthControlMXBean {
+    long getGlobalRate();
+
+    void setGlobalRate(long rate);
+
+    long getClientRate();
+
+    void setClientRate(long rate);
+
+    long getTransferRate();
+
+    void setTransferRate(long rate);
+
+    int getActiveTransfers();
+}
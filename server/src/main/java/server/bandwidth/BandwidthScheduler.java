@@ -0,0 +1,314 @@
+package server.bandwidth;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import server.runtime.RuntimeDirectory;
+
+import javax.management.ObjectName;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.lang.management.ManagementFactory;
+import java.net.InetAddress;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/*
+ * Ограничение скорости передач: общий, клиентский и собственный token bucket у каждой передачи.
+ * Каждого клиента обслуживает свой процесс, поэтому общий и клиентский лимиты делятся между процессами
+ * через SharedBandwidth: процесс получает долю лимита по числу своих передач среди всех живых.
+ * Передачи одного процесса обслуживаются по deficit round-robin: голова очереди отправляет куски,
+ * пока хватает её дефицита, остаток переходит на следующий круг, так что доли считаются в байтах,
+ * а не в кусках.
+ */
+public class BandwidthScheduler implements BandwidthControlMXBean {
+    private static final Logger logger = LoggerFactory.getLogger(BandwidthScheduler.class);
+    private static final int QUANTUM = 64 * 1024;
+    private static final long REFRESH_MS = 100;
+    // Голова, которая дольше этого не просит полосу, считается опустевшей и уступает ход
+    private static final long IDLE_HEAD_NANOS = TimeUnit.MILLISECONDS.toNanos(20);
+    private static BandwidthScheduler instance;
+
+    private final SharedBandwidth shared;
+    private final TokenBucket global = new TokenBucket(0);
+    private volatile long clientRate;
+    private long transferRate;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition turn = lock.newCondition();
+    private final ArrayDeque<TransferShare> ring = new ArrayDeque<>();
+    private final Set<TransferShare> shares = new HashSet<>();
+    private final Map<InetAddress, TokenBucket> clientBuckets = new HashMap<>();
+    private final Map<InetAddress, Integer> clientTransfers = new HashMap<>();
+    private volatile int activeTransfers;
+    private Thread refresher;
+
+    private BandwidthScheduler(SharedBandwidth shared) {
+        this.shared = shared;
+        this.clientRate = shared.clientRate();
+        this.transferRate = shared.transferRate();
+    }
+
+    public static synchronized BandwidthScheduler getInstance() {
+        if (instance == null) {
+            instance = new BandwidthScheduler(openShared(false));
+        }
+        return instance;
+    }
+
+    // Слушатель задаёт лимиты из своих свойств и выставляет MBean: процессы читают лимиты из таблицы
+    public static synchronized void registerControl() {
+        instance = new BandwidthScheduler(openShared(true));
+        try {
+            ManagementFactory.getPlatformMBeanServer()
+                    .registerMBean(instance, new ObjectName("server:type=Bandwidth"));
+        } catch (Exception e) {
+            logger.warn("Не удалось зарегистрировать MBean ограничения скорости: {}", e.getMessage());
+        }
+    }
+
+    private static SharedBandwidth openShared(boolean owner) {
+        try {
+            return SharedBandwidth.open(RuntimeDirectory.get(),
+                    Long.getLong("server.bandwidth.global", 0),
+                    Long.getLong("server.bandwidth.client", 0),
+                    Long.getLong("server.bandwidth.transfer", 0), owner);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Таблица полосы пропускания недоступна", e);
+        }
+    }
+
+    public TransferShare open(InetAddress clientAddress) {
+        TransferShare share;
+        lock.lock();
+        try {
+            share = new TransferShare(this, clientAddress, transferRate);
+            shares.add(share);
+            clientBuckets.computeIfAbsent(clientAddress, _ -> new TokenBucket(0));
+            clientTransfers.merge(clientAddress, 1, Integer::sum);
+            activeTransfers = shares.size();
+            if (refresher == null) {
+                refresher = Thread.ofPlatform().daemon().name("bandwidth-refresh").start(this::refreshLoop);
+            }
+        } finally {
+            lock.unlock();
+        }
+        refresh();
+        return share;
+    }
+
+    void close(TransferShare share) {
+        lock.lock();
+        try {
+            if (!shares.remove(share)) {
+                return;
+            }
+            if (share.queued) {
+                ring.remove(share);
+                share.queued = false;
+            }
+            var address = share.getClientAddress();
+            if (clientTransfers.merge(address, -1, Integer::sum) <= 0) {
+                clientTransfers.remove(address);
+                clientBuckets.remove(address);
+            }
+            activeTransfers = shares.size();
+            turn.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        refresh();
+    }
+
+    private void refreshLoop() {
+        while (true) {
+            try {
+                Thread.sleep(REFRESH_MS);
+            } catch (InterruptedException e) {
+                return;
+            }
+            refresh();
+        }
+    }
+
+    // Продлевает записи процесса в таблице и пересчитывает его доли лимитов
+    private void refresh() {
+        Map<InetAddress, Integer> local;
+        lock.lock();
+        try {
+            local = new HashMap<>(clientTransfers);
+        } finally {
+            lock.unlock();
+        }
+        SharedBandwidth.Snapshot snapshot;
+        try {
+            snapshot = shared.update(local);
+        } catch (IOException e) {
+            logger.warn("Не удалось обновить таблицу полосы пропускания: {}", e.getMessage());
+            return;
+        }
+        int own = local.values().stream().mapToInt(Integer::intValue).sum();
+        lock.lock();
+        try {
+            global.setRate(share(shared.globalRate(), own, snapshot.totalTransfers()));
+            clientRate = shared.clientRate();
+            clientBuckets.forEach((address, bucket) -> bucket.setRate(share(clientRate,
+                    local.getOrDefault(address, 0), snapshot.clientTransfers().getOrDefault(address, 0))));
+            long rate = shared.transferRate();
+            if (rate != transferRate) {
+                transferRate = rate;
+                shares.forEach(share -> share.setRate(rate));
+            }
+            turn.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Доля лимита rate для own передач из total; 0 - без ограничения
+    private static long share(long rate, int own, int total) {
+        if (rate <= 0 || own <= 0 || total <= own) {
+            return rate;
+        }
+        return Math.max(1, rate * own / total);
+    }
+
+    void acquire(TransferShare share, int bytes) throws InterruptedIOException {
+        if (activeTransfers <= 1 && !isLimited(share)) {
+            return;
+        }
+        lock.lock();
+        try {
+            share.waiting = true;
+            if (!share.queued) {
+                share.queued = true;
+                ring.addLast(share);
+            }
+            while (true) {
+                TransferShare head = ring.peekFirst();
+                if (head != share) {
+                    if (!head.waiting && System.nanoTime() - head.lastGrant > IDLE_HEAD_NANOS) {
+                        // Голове нечего отправлять: по DRR она выбывает из круга и теряет остаток дефицита
+                        ring.pollFirst();
+                        head.queued = false;
+                        head.granted = false;
+                        head.deficit = 0;
+                        continue;
+                    }
+                    turn.awaitNanos(IDLE_HEAD_NANOS);
+                    continue;
+                }
+                if (!share.granted) {
+                    share.granted = true;
+                    share.deficit = Math.min(share.deficit + QUANTUM, (long) QUANTUM + bytes);
+                }
+                if (share.deficit < bytes) {
+                    nextTurn();
+                    continue;
+                }
+                var clientBucket = clientBuckets.get(share.getClientAddress());
+                long ownDelay = Math.max(share.getBucket().delayNanos(bytes),
+                        clientBucket == null ? 0 : clientBucket.delayNanos(bytes));
+                if (ownDelay > 0 && ring.size() > 1) {
+                    // Упёрлись в свой лимит - уступаем очередь остальным, дефицит сохраняется
+                    nextTurn();
+                    turn.awaitNanos(ownDelay);
+                    continue;
+                }
+                long delay = Math.max(ownDelay, global.delayNanos(bytes));
+                if (delay > 0) {
+                    turn.awaitNanos(delay);
+                    continue;
+                }
+                global.consume(bytes);
+                share.getBucket().consume(bytes);
+                if (clientBucket != null) {
+                    clientBucket.consume(bytes);
+                }
+                share.deficit -= bytes;
+                share.lastGrant = System.nanoTime();
+                return;
+            }
+        } catch (InterruptedException e) {
+            if (share.queued) {
+                ring.remove(share);
+                share.queued = false;
+            }
+            turn.signalAll();
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Ожидание полосы пропускания прервано");
+        } finally {
+            share.waiting = false;
+            lock.unlock();
+        }
+    }
+
+    // Голова исчерпала квант: в хвост, новый квант - когда снова дойдёт очередь
+    private void nextTurn() {
+        TransferShare head = ring.pollFirst();
+        head.granted = false;
+        ring.addLast(head);
+        turn.signalAll();
+    }
+
+    private boolean isLimited(TransferShare share) {
+        return global.isLimited() || clientRate > 0 || share.getBucket().isLimited();
+    }
+
+    private void setRates(long globalRate, long clientRate, long transferRate) {
+        try {
+            shared.setRates(globalRate, clientRate, transferRate);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Не удалось записать лимиты", e);
+        }
+    }
+
+    @Override
+    public long getGlobalRate() {
+        return shared.globalRate();
+    }
+
+    @Override
+    public void setGlobalRate(long rate) {
+        setRates(rate, shared.clientRate(), shared.transferRate());
+        logger.info("Общий лимит скорости: {} байт/с", rate);
+    }
+
+    @Override
+    public long getClientRate() {
+        return shared.clientRate();
+    }
+
+    @Override
+    public void setClientRate(long rate) {
+        setRates(shared.globalRate(), rate, shared.transferRate());
+        logger.info("Лимит скорости клиента: {} байт/с", rate);
+    }
+
+    @Override
+    public long getTransferRate() {
+        return shared.transferRate();
+    }
+
+    @Override
+    public void setTransferRate(long rate) {
+        setRates(shared.globalRate(), shared.clientRate(), rate);
+        logger.info("Лимит скорости передачи: {} байт/с", rate);
+    }
+
+    // Передачи всех процессов сервера
+    @Override
+    public int getActiveTransfers() {
+        try {
+            return shared.totalTransfers();
+        } catch (IOException e) {
+            return activeTransfers;
+        }
+    }
+}
@@ -0,0 +1,189 @@
+package server.bandwidth;
+
+import java.io.IOException;
+import java.net.Inet4Address;
+import java.net.InetAddress;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/*
+ * Таблица полосы пропускания, общая для всех процессов сервера: файл bandwidth.table, отображённый в память.
+ * В заголовке лимиты, дальше по записи на пару процесс-клиент с числом передач и сроком аренды.
+ * Процесс продлевает свои записи при каждом обновлении; записи упавшего процесса истекают через LEASE_MS.
+ * Запись и обход таблицы - под блокировкой файла, лимиты читаются без неё.
+ */
+final class SharedBandwidth {
+    static final long LEASE_MS = 1000;
+    private static final int MAGIC = 0x42574454;
+    private static final int HEADER_SIZE = 64;
+    private static final int GLOBAL_RATE = 8;
+    private static final int CLIENT_RATE = 16;
+    private static final int TRANSFER_RATE = 24;
+    // pid, срок аренды, число передач, адрес клиента в виде IPv6
+    private static final int SLOT_SIZE = 40;
+    private static final int SLOTS = 4096;
+    private static final int ADDRESS_OFFSET = 20;
+
+    record Snapshot(int totalTransfers, Map<InetAddress, Integer> clientTransfers) {
+    }
+
+    private final long pid = ProcessHandle.current().pid();
+    private final FileChannel channel;
+    private final MappedByteBuffer table;
+    private final Map<InetAddress, Integer> ownSlots = new HashMap<>();
+
+    private SharedBandwidth(FileChannel channel) throws IOException {
+        this.channel = channel;
+        this.table = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE + (long) SLOT_SIZE * SLOTS);
+    }
+
+    // owner - слушатель: его лимиты заменяют оставшиеся от прошлого запуска
+    static SharedBandwidth open(Path directory, long globalRate, long clientRate, long transferRate, boolean owner)
+            throws IOException {
+        Files.createDirectories(directory);
+        var channel = FileChannel.open(directory.resolve("bandwidth.table"),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            var shared = new SharedBandwidth(channel);
+            try (var _ = channel.lock()) {
+                if (owner || shared.table.getInt(0) != MAGIC) {
+                    shared.writeRates(globalRate, clientRate, transferRate);
+                    shared.table.putInt(0, MAGIC);
+                }
+            }
+            return shared;
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    long globalRate() {
+        return table.getLong(GLOBAL_RATE);
+    }
+
+    long clientRate() {
+        return table.getLong(CLIENT_RATE);
+    }
+
+    long transferRate() {
+        return table.getLong(TRANSFER_RATE);
+    }
+
+    synchronized void setRates(long globalRate, long clientRate, long transferRate) throws IOException {
+        try (var _ = channel.lock()) {
+            writeRates(globalRate, clientRate, transferRate);
+        }
+    }
+
+    private void writeRates(long globalRate, long clientRate, long transferRate) {
+        table.putLong(GLOBAL_RATE, globalRate);
+        table.putLong(CLIENT_RATE, clientRate);
+        table.putLong(TRANSFER_RATE, transferRate);
+    }
+
+    // Публикует передачи этого процесса по клиентам и возвращает живые передачи всех процессов
+    synchronized Snapshot update(Map<InetAddress, Integer> local) throws IOException {
+        long now = System.currentTimeMillis();
+        try (FileLock _ = channel.lock()) {
+            for (var iterator = ownSlots.entrySet().iterator(); iterator.hasNext(); ) {
+                var slot = iterator.next();
+                // Запись могли занять после истечения аренды, если процесс надолго замер
+                boolean own = isOwn(slot.getValue(), slot.getKey());
+                if (own && local.getOrDefault(slot.getKey(), 0) > 0) {
+                    continue;
+                }
+                if (own) {
+                    table.putLong(offset(slot.getValue()), 0);
+                }
+                iterator.remove();
+            }
+            for (var entry : local.entrySet()) {
+                if (entry.getValue() <= 0) {
+                    continue;
+                }
+                Integer slot = ownSlots.get(entry.getKey());
+                if (slot == null && (slot = freeSlot(now)) != null) {
+                    ownSlots.put(entry.getKey(), slot);
+                    table.putLong(offset(slot), pid);
+                    table.put(offset(slot) + ADDRESS_OFFSET, encode(entry.getKey()));
+                }
+                if (slot != null) {
+                    table.putLong(offset(slot) + 8, now + LEASE_MS);
+                    table.putInt(offset(slot) + 16, entry.getValue());
+                }
+            }
+            return scan(local.keySet(), now);
+        }
+    }
+
+    // Живые передачи всех процессов, без своих записей
+    synchronized int totalTransfers() throws IOException {
+        try (FileLock _ = channel.lock()) {
+            return scan(Set.of(), System.currentTimeMillis()).totalTransfers();
+        }
+    }
+
+    private Snapshot scan(Set<InetAddress> local, long now) {
+        Map<InetAddress, byte[]> encoded = new HashMap<>();
+        local.forEach(client -> encoded.put(client, encode(client)));
+        int total = 0;
+        Map<InetAddress, Integer> clients = new HashMap<>();
+        byte[] address = new byte[16];
+        for (int slot = 0; slot < SLOTS; slot++) {
+            int offset = offset(slot);
+            if (table.getLong(offset) == 0 || table.getLong(offset + 8) < now) {
+                continue;
+            }
+            int transfers = table.getInt(offset + 16);
+            total += transfers;
+            table.get(offset + ADDRESS_OFFSET, address);
+            encoded.forEach((client, bytes) -> {
+                if (Arrays.equals(address, bytes)) {
+                    clients.merge(client, transfers, Integer::sum);
+                }
+            });
+        }
+        return new Snapshot(total, clients);
+    }
+
+    private boolean isOwn(int slot, InetAddress client) {
+        byte[] address = new byte[16];
+        table.get(offset(slot) + ADDRESS_OFFSET, address);
+        return table.getLong(offset(slot)) == pid && Arrays.equals(address, encode(client));
+    }
+
+    private Integer freeSlot(long now) {
+        for (int slot = 0; slot < SLOTS; slot++) {
+            boolean expired = table.getLong(offset(slot)) == 0 || table.getLong(offset(slot) + 8) < now;
+            if (expired && !ownSlots.containsValue(slot)) {
+                return slot;
+            }
+        }
+        return null;
+    }
+
+    private static int offset(int slot) {
+        return HEADER_SIZE + slot * SLOT_SIZE;
+    }
+
+    private static byte[] encode(InetAddress address) {
+        byte[] raw = address.getAddress();
+        if (address instanceof Inet4Address) {
+            byte[] mapped = new byte[16];
+            mapped[10] = (byte) 0xff;
+            mapped[11] = (byte) 0xff;
+            System.arraycopy(raw, 0, mapped, 12, 4);
+            return mapped;
+        }
+        return raw;
+    }
+}
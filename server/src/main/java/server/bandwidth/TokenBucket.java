@@ -0,0 +1,64 @@
+package server.bandwidth;
+
+public final class TokenBucket {
+    private static final long MIN_CAPACITY = 64 * 1024;
+
+    private long rate;
+    private long capacity;
+    private double tokens;
+    private long lastRefill;
+
+    public TokenBucket(long rate) {
+        setRate(rate);
+    }
+
+    // rate в байтах в секунду, 0 - без ограничения
+    // Накопленные токены сохраняются: доля процесса пересчитывается на ходу
+    public synchronized void setRate(long rate) {
+        rate = Math.max(rate, 0);
+        if (rate == this.rate && lastRefill != 0) {
+            return;
+        }
+        if (this.rate > 0) {
+            refill();
+        }
+        this.rate = rate;
+        this.capacity = Math.max(this.rate, MIN_CAPACITY);
+        this.tokens = Math.min(tokens, capacity);
+        this.lastRefill = System.nanoTime();
+    }
+
+    public synchronized long getRate() {
+        return rate;
+    }
+
+    public synchronized boolean isLimited() {
+        return rate > 0;
+    }
+
+    synchronized long delayNanos(int bytes) {
+        if (rate <= 0) {
+            return 0;
+        }
+        refill();
+        long needed = Math.min(bytes, capacity);
+        if (tokens >= needed) {
+            return 0;
+        }
+        return (long) Math.ceil((needed - tokens) * 1_000_000_000d / rate);
+    }
+
+    synchronized void consume(int bytes) {
+        if (rate <= 0) {
+            return;
+        }
+        refill();
+        tokens -= bytes;
+    }
+
+    private void refill() {
+        long now = System.nanoTime();
+        tokens = Math.min(capacity, tokens + (now - lastRefill) * rate / 1_000_000_000d);
+        lastRefill = now;
+    }
+}
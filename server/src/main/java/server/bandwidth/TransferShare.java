@@ -0,0 +1,47 @@
+package server.bandwidth;
+
+import java.io.InterruptedIOException;
+import java.net.InetAddress;
+
+public class TransferShare implements AutoCloseable {
+    private final BandwidthScheduler scheduler;
+    private final InetAddress clientAddress;
+    private final TokenBucket bucket;
+    // Состояние в очереди DRR, под блокировкой планировщика
+    long deficit;
+    boolean queued;
+    boolean granted;
+    boolean waiting;
+    long lastGrant = System.nanoTime();
+
+    TransferShare(BandwidthScheduler scheduler, InetAddress clientAddress, long rate) {
+        this.scheduler = scheduler;
+        this.clientAddress = clientAddress;
+        this.bucket = new TokenBucket(rate);
+    }
+
+    public void acquire(int bytes) throws InterruptedIOException {
+        scheduler.acquire(this, bytes);
+    }
+
+    public void setRate(long rate) {
+        bucket.setRate(rate);
+    }
+
+    public long getRate() {
+        return bucket.getRate();
+    }
+
+    InetAddress getClientAddress() {
+        return clientAddress;
+    }
+
+    TokenBucket getBucket() {
+        return bucket;
+    }
+
+    @Override
+    public void close() {
+        scheduler.close(this);
+    }
+}
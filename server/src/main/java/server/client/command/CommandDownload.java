@@ -1,6 +1,7 @@
 package server.client.command;
 
 import server.client.manager.ClientManager;
+import server.downloader.TransferOptions;
 import server.status.Status;
 
 import java.net.InetAddress;
@@ -20,11 +21,21 @@ public class CommandDownload extends ClientManager.Command {
     @Override
     protected final void execute() {
         var args = line.split(" ");
-        boolean cont = args.length > 3 && args[3].equalsIgnoreCase("continue");
         super.writeEndMessage();
         if (args.length < 2) {
             writeMessage(Status.ERROR.code(), "DOWNLOAD: Нет имени файла");
         }
-        downloadFile("download/" + args[1], clientAddress, cont);
+        if (args.length > 2 && args[1].equals("-r")) {
+            downloadDirectory("download/" + args[2], clientAddress);
+            return;
+        }
+        TransferOptions options;
+        try {
+            options = TransferOptions.parse(args, 3);
+        } catch (IllegalArgumentException e) {
+            writeMessage(Status.ERROR.code(), e.getMessage());
+            return;
+        }
+        downloadFile("download/" + args[1], clientAddress, options);
     }
 }
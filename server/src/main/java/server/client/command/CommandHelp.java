@@ -0,0 +1,38 @@
+package server.client.command;
+
+import server.client.manager.ClientManager;
+import server.status.Status;
+
+public class CommandHelp extends ClientManager.Command {
+
+    public CommandHelp(ClientManager clientManager) {
+        clientManager.super();
+    }
+
+    @Override
+    protected void execute() {
+        String message =
+                """
+                        HELP:
+                        \t> CLOSE - закрыть соедингение и покинуть сервер
+                        \t> DOWNLOAD:
+                        \t\t- file_name1 file_name2 - скачать с сервера файл №1 под именем №2
+                        \t\t- file_name1 file_name2 -continue - продолжить загрузку
+                        \t\t- -r dir_name1 dir_name2 - скачать каталог целиком одним архивом
+                        \t\t- file_name1 file_name2 offset=N [token=T] - скачать за один обмен, с байта N
+                        \t\t- ... offset=N inline=M - файл не больше M байт придёт одним ответом 200 INLINE
+                        \t> ECHO string - вернуть строку
+                        \t> TIME - показать строку
+                        \t> UPLOAD:
+                        \t\t- file_name1 file_name2 - загрузить на сервер файл №1 под именем №2
+                        \t\t- file_name1 file_name2 -continue - продолжить загрузку
+                        \t\t- -r dir_name1 dir_name2 - загрузить каталог целиком одним архивом
+                        \t\t- file_name1 file_name2 size=N [offset=M] - данные сразу за командой, без ожидания ответа
+                        \t\t- ... size=N offset=S length=L block=B - диапазон параллельной загрузки по нескольким
+                        \t\t  соединениям, ответ 200 RANGE done=k/n missing=<блоки>, последнему - 200 STORED
+                        \t> Для DOWNLOAD и UPLOAD: priority=high|normal|low deadline=<мс> - очерёдность и срок ожидания
+                        \t\t  при перегрузке, ответ 503 BUSY retry=<сек> - повторить позже""";
+        writeMessage(Status.SUCCESS.code(), message);
+        super.writeEndMessage();
+    }
+}
@@ -1,6 +1,7 @@
 package server.client.command;
 
 import server.client.manager.ClientManager;
+import server.downloader.TransferOptions;
 import server.status.Status;
 
 import java.net.InetAddress;
@@ -23,8 +24,20 @@ public class CommandUpload extends ClientManager.Command {
         if (args.length < 2) {
             writeMessage(Status.ERROR.code(), "Нет имени файла");
         }
-        boolean cont = args.length > 3 && args[3].equalsIgnoreCase("continue");
-        uploadFile("upload/" + args[2], clientAddress, cont);
+        if (args.length > 3 && args[1].equals("-r")) {
+            uploadDirectory("upload/" + args[3], clientAddress);
+            return;
+        }
+        TransferOptions options;
+        try {
+            options = TransferOptions.parse(args, 3);
+        } catch (IllegalArgumentException e) {
+            // Данные могли уже пойти следом за командой, разобрать поток дальше нельзя
+            writeMessage(Status.ERROR.code(), e.getMessage());
+            closeConnection();
+            return;
+        }
+        uploadFile("upload/" + args[2], clientAddress, options);
     }
 
 }
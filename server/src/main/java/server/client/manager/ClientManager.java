@@ -0,0 +1,327 @@
+package server.client.manager;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import server.admission.AdmissionController;
+import server.admission.BusyException;
+import server.admission.TransferPriority;
+import server.connector.Connector;
+import server.client.command.*;
+import server.downloader.ChecksumMismatchException;
+import server.downloader.Downloader;
+import server.downloader.TransferOptions;
+import server.heartbeat.HeartbeatListener;
+import server.heartbeat.HeartbeatScheduler;
+import server.heartbeat.IdleSession;
+import server.jfr.CommandExecutionEvent;
+import server.metrics.Histogram;
+import server.metrics.Labels;
+import server.metrics.MetricsRegistry;
+import server.status.Heartbeat;
+import server.status.Status;
+
+import java.io.*;
+import java.net.InetAddress;
+import java.net.SocketTimeoutException;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public abstract class ClientManager {
+    protected static final Logger logger = LoggerFactory.getLogger(ClientManager.class);
+    public static final String HEARTBEAT_REQUEST = Heartbeat.REQUEST;
+    public static final String HEARTBEAT_RESPONSE = Heartbeat.RESPONSE;
+    private static final AtomicInteger activeSessions = new AtomicInteger();
+
+    static {
+        MetricsRegistry.getInstance().gauge("server_active_sessions",
+                "Client sessions currently served", Labels.EMPTY, activeSessions::get);
+    }
+
+    private volatile boolean isConnected = false;
+
+    private final Downloader downloader;
+    private final AdmissionController admission = AdmissionController.getInstance();
+    private IdleSession session;
+    private Thread serveThread;
+    long startTime;
+    InetAddress clientAddress;
+
+    public ClientManager(Downloader downloader) {
+        this.downloader = downloader;
+    }
+
+    public abstract class Command {
+        protected int COMMAND_LENGTH;
+
+        protected abstract void execute();
+
+        protected void writeMessage(int code, String message) {
+            ClientManager.this.writeMessage(code, message);
+        }
+
+        protected void writeEndMessage() {
+            ClientManager.this.writeEndMessage();
+        }
+
+        protected void writeHeartbeatResponse() {
+            ClientManager.this.writeHeartbeatResponse();
+        }
+
+        protected void closeConnection() {
+            logger.info("Closing connection");
+            isConnected = false;
+        }
+
+        protected void downloadFile(String fileName, InetAddress address, TransferOptions options) {
+            try (var _ = admission.acquire(address, options.priority(), options.deadline())) {
+                downloader.downloadFile(fileName, address, options);
+            } catch (BusyException e) {
+                writeBusy(e);
+            } catch (FileNotFoundException e) {
+                logger.error("Файл {} не найден", fileName);
+                writeMessage(Status.ERROR.code(), "Файл " + fileName + " не найден");
+            } catch (IOException e) {
+                logger.error(e.getMessage());
+                closeConnection();
+            }
+        }
+
+        protected void downloadDirectory(String dirName, InetAddress address) {
+            try (var _ = admission.acquire(address, TransferPriority.NORMAL, 0)) {
+                downloader.downloadDirectory(dirName, address);
+            } catch (BusyException e) {
+                writeBusy(e);
+            } catch (FileNotFoundException e) {
+                logger.error("Каталог {} не найден", dirName);
+                writeMessage(Status.ERROR.code(), "Каталог " + dirName + " не найден");
+            } catch (IOException e) {
+                logger.error(e.getMessage());
+                closeConnection();
+            }
+        }
+
+        protected void uploadDirectory(String dirName, InetAddress address) {
+            try (var _ = admission.acquire(address, TransferPriority.NORMAL, 0)) {
+                downloader.uploadDirectory(dirName, address);
+            } catch (BusyException e) {
+                writeBusy(e);
+            } catch (ChecksumMismatchException e) {
+                logger.error(e.getMessage());
+                writeMessage(Status.ERROR.code(), "Часть файлов каталога " + dirName + " повреждена при передаче, загрузите заново");
+            } catch (IOException e) {
+                logger.error(e.getMessage());
+                closeConnection();
+            }
+        }
+
+        protected void uploadFile(String fileName, InetAddress address, TransferOptions options) {
+            try (var _ = admission.acquire(address, options.priority(), options.deadline())) {
+                downloader.uploadFile(fileName, address, options);
+            } catch (BusyException e) {
+                try {
+                    downloader.discardUpload(options);
+                    writeBusy(e);
+                } catch (IOException discardError) {
+                    logger.error(discardError.getMessage());
+                    closeConnection();
+                }
+            } catch (ChecksumMismatchException e) {
+                logger.error(e.getMessage());
+                writeMessage(Status.ERROR.code(), "Файл " + fileName + " повреждён при передаче, загрузите заново");
+            } catch (IOException e) {
+                logger.error(e.getMessage());
+                closeConnection();
+            }
+        }
+
+        // Передача не допущена - клиент может повторить её через retry секунд
+        private void writeBusy(BusyException e) {
+            logger.info("Передача отклонена: {}", e.getMessage());
+            writeMessage(Status.BUSY.code(), "BUSY retry=" + e.getRetryAfterSeconds());
+        }
+    }
+
+    public void communicate() throws IOException {
+        startTime = System.currentTimeMillis();
+        isConnected = true;
+        activeSessions.incrementAndGet();
+        serveThread = Thread.currentThread();
+        try (IdleSession idleSession = HeartbeatScheduler.getInstance()
+                .register(new Listener(), Connector.TIMEOUT, Connector.HEARTBEAT_LIMIT)) {
+            session = idleSession;
+            serve();
+        } finally {
+            activeSessions.decrementAndGet();
+            Thread.interrupted(); // Флаг от expire не должен достаться закрытию сокета
+        }
+        logger.info("Connection with client {} closed", clientAddress);
+    }
+
+    // Простой клиента отслеживает HeartbeatScheduler, таймаут чтения лишь будит цикл
+    private void serve() throws IOException {
+        while (checkChannel() && isConnected) {
+            try {
+                String line = readLine();
+                if (line == null) {
+                    continue;
+                }
+                session.touch();
+                if (line.trim().equals(HEARTBEAT_RESPONSE)) {
+                    continue;
+                }
+                startTime = System.currentTimeMillis();
+                session.begin();
+                try {
+                    dispatch(line);
+                } finally {
+                    session.end();
+                }
+            } catch (SocketTimeoutException e) {
+                logger.trace("Нет команд от клиента {}", clientAddress);
+            } catch (IOException e) {
+                if (isConnected) {
+                    throw e;
+                }
+            }
+        }
+    }
+
+    private class Listener implements HeartbeatListener {
+        @Override
+        public void sendHeartbeat() {
+            logger.debug("Нет ответа от клиента {}, отправляю heartbeat message", clientAddress);
+            writeHeartbeatRequest();
+        }
+
+        @Override
+        public void expire() {
+            isConnected = false;
+            serveThread.interrupt();
+            closeChannel();
+        }
+    }
+
+    void dispatch(String line) {
+        String trimmedLine = line.trim();
+        String[] commandArray = trimmedLine.split(" ", 2);
+        getCommand(commandArray[0], trimmedLine).ifPresentOrElse(
+                this::execute,
+                () -> {
+                    writeMessage(Status.SUCCESS.code(), "Нет такой команды: " + commandArray[0]);
+                    writeEndMessage();
+                });
+    }
+
+    private void execute(Command command) {
+        var event = new CommandExecutionEvent();
+        long start = System.nanoTime();
+        event.begin();
+        try {
+            command.execute();
+        } finally {
+            event.end();
+            String name = commandName(command);
+            commandLatency(name).observeNanos(System.nanoTime() - start);
+            if (event.shouldCommit()) {
+                event.command = name;
+                event.client = clientAddress == null ? null : clientAddress.getHostAddress();
+                event.commit();
+            }
+        }
+    }
+
+    private static String commandName(Command command) {
+        return command.getClass().getSimpleName().replaceFirst("^Command", "").toLowerCase();
+    }
+
+    private static Histogram commandLatency(String name) {
+        return MetricsRegistry.getInstance().histogram("server_command_duration_seconds",
+                "Command execution time", Labels.of("command", name), Histogram.LATENCY_BUCKETS);
+    }
+
+    // Разбор и выполнение команд без сети и без метрик, чтобы JIT скомпилировал их заранее
+    public static void warmUp(int iterations) {
+        var manager = new ClientManager(new Downloader() {
+            @Override
+            public void downloadFile(String fileName, InetAddress clientAddress, TransferOptions options) {
+            }
+
+            @Override
+            public void uploadFile(String fileName, InetAddress clientAddress, TransferOptions options) {
+            }
+
+            @Override
+            public void downloadDirectory(String dirName, InetAddress clientAddress) {
+            }
+
+            @Override
+            public void uploadDirectory(String dirName, InetAddress clientAddress) {
+            }
+
+            @Override
+            public void discardUpload(TransferOptions options) {
+            }
+        }) {
+            @Override
+            public boolean checkChannel() {
+                return true;
+            }
+
+            @Override
+            protected void writeMessage(int code, String message) {
+            }
+
+            @Override
+            protected void writeEndMessage() {
+            }
+
+            @Override
+            protected void writeHeartbeatResponse() {
+            }
+
+            @Override
+            protected void writeHeartbeatRequest() {
+            }
+
+            @Override
+            protected String readLine() {
+                return null;
+            }
+        };
+        String[] lines = {"echo warm-up", "time", "help", HEARTBEAT_REQUEST, "unknown"};
+        for (int i = 0; i < iterations; i++) {
+            String line = lines[i % lines.length];
+            manager.getCommand(line.split(" ", 2)[0], line).ifPresent(Command::execute);
+        }
+    }
+
+    public abstract boolean checkChannel();
+
+    // Разбудить поток, заблокированный в readLine, если прерывания для этого недостаточно
+    protected void closeChannel() {
+    }
+
+    Optional<Command> getCommand(String command, String line) {
+        if (command.equals(HEARTBEAT_REQUEST)) {
+            return Optional.of(new CommandPing(this));
+        }
+        return switch (command.toLowerCase()) {
+            case "echo" -> Optional.of(new CommandEcho(this, line));
+            case "close" -> Optional.of(new CommandClose(this));
+            case "time" -> Optional.of(new CommandTime(this));
+            case "help" -> Optional.of(new CommandHelp(this));
+            case "list" -> Optional.of(new CommandList(this));
+            case "download" -> Optional.of(new CommandDownload(this, line, clientAddress));
+            case "upload" -> Optional.of(new CommandUpload(this, line, clientAddress));
+            default -> Optional.empty();
+        };
+    }
+
+    protected abstract void writeMessage(int code, String message);
+
+    protected abstract void writeEndMessage();
+
+    protected abstract void writeHeartbeatResponse();
+    protected abstract void writeHeartbeatRequest();
+    protected abstract String readLine() throws IOException;
+}
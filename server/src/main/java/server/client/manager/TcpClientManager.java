@@ -3,19 +3,23 @@ package server.client.manager;
 import server.downloader.TcpDownloader;
 import server.status.Status;
 
-import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.PrintWriter;
 import java.net.Socket;
+import java.nio.charset.StandardCharsets;
 
 public class TcpClientManager extends ClientManager {
     private final PrintWriter writer;
-    private final BufferedReader reader;
+    private final InputStream input;
+    // Начало строки, прочитанное до таймаута, сохраняется до следующего вызова
+    private final ByteArrayOutputStream pending = new ByteArrayOutputStream();
     private final Socket socket;
-    public TcpClientManager(TcpDownloader tcpDownloader, PrintWriter writer, BufferedReader reader, Socket socket) {
+    public TcpClientManager(TcpDownloader tcpDownloader, PrintWriter writer, InputStream input, Socket socket) {
         super(tcpDownloader);
         this.writer = writer;
-        this.reader = reader;
+        this.input = input;
         this.socket = socket;
         this.clientAddress = socket.getInetAddress();
     }
@@ -52,8 +56,30 @@ public class TcpClientManager extends ClientManager {
         }
     }
 
+    @Override
+    protected void closeChannel() {
+        try {
+            socket.close();
+        } catch (IOException e) {
+            logger.error(e.getMessage());
+        }
+    }
+
     @Override
     protected String readLine() throws IOException {
-        return reader.readLine();
+        int b;
+        while ((b = input.read()) != -1) {
+            if (b == '\n') {
+                return takePending();
+            }
+            pending.write(b);
+        }
+        return pending.size() > 0 ? takePending() : null;
+    }
+
+    private String takePending() {
+        String line = pending.toString(StandardCharsets.UTF_8);
+        pending.reset();
+        return line.endsWith("\r") ? line.substring(0, line.length() - 1) : line;
     }
 }
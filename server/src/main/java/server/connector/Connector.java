@@ -0,0 +1,109 @@
+package server.connector;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import server.Main;
+import server.bandwidth.BandwidthScheduler;
+import server.client.manager.ClientManager;
+import server.metrics.MetricsEndpoint;
+import server.runtime.RuntimeDirectory;
+import server.socket.ReliableUdpSocket;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+public abstract class Connector {
+    private static final Logger logger = LoggerFactory.getLogger(Connector.class);
+    public static int HEARTBEAT_LIMIT = 3;
+    public static int TIMEOUT = 60_000;
+    public static int WORKER_POOL_SIZE = Integer.getInteger("server.worker.pool", 0);
+    static final String POOLED_PROPERTY = "server.worker.pooled";
+    static final String READY_MARKER = "WORKER READY";
+    private static volatile boolean clientAccepted = false;
+
+    public abstract void start();
+    public abstract void connect();
+
+    protected static boolean isPooledWorker() {
+        return Boolean.getBoolean(POOLED_PROPERTY);
+    }
+
+    // Слушатель: общий каталог сервера выбирается до запуска процессов, лимиты скорости
+    // управляются через его MBean, а передачи идут в дочерних процессах
+    protected static void prepareListener(String protocol, int port) {
+        RuntimeDirectory.initListener(protocol, port);
+        BandwidthScheduler.registerControl();
+    }
+
+    // Дочерний процесс из пула: прогрев JIT и завершение вместе с родителем, пока нет клиента
+    public static void prepareWorker() {
+        if (!isPooledWorker()) {
+            return;
+        }
+        ProcessHandle.current().parent().ifPresent(parent -> parent.onExit().thenRun(() -> {
+            if (!clientAccepted) {
+                System.exit(0);
+            }
+        }));
+        int iterations = Integer.getInteger("server.worker.warmupIterations", 20_000);
+        long start = System.nanoTime();
+        ReliableUdpSocket.warmUp(iterations);
+        ClientManager.warmUp(iterations);
+        logger.debug("Прогрев занял {} мс", (System.nanoTime() - start) / 1_000_000);
+    }
+
+    // Порт занят, пул может отдавать этот процесс клиенту
+    protected static void signalReady(int port) {
+        if (isPooledWorker()) {
+            System.out.println(READY_MARKER + " " + port);
+            System.out.flush();
+        }
+    }
+
+    protected static void clientAccepted() {
+        clientAccepted = true;
+    }
+
+    protected static int findFreePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    protected static void establishConnection(String protocol, int port) throws IOException {
+        startWorker(protocol, port, false);
+    }
+
+    static Process startWorker(String protocol, int port, boolean pooled) throws IOException {
+        String jarPath = Main.class.getProtectionDomain().getCodeSource().getLocation().getPath();
+        jarPath = java.net.URLDecoder.decode(jarPath, StandardCharsets.UTF_8);
+
+        // Формируем аргументы для нового процесса
+        List<String> cmdArgs = new ArrayList<>(List.of("java"));
+        cmdArgs.addAll(forwardedProperties());
+        if (pooled) {
+            cmdArgs.add("-D" + POOLED_PROPERTY + "=true");
+        }
+        cmdArgs.addAll(List.of("-jar", jarPath, protocol, String.valueOf(port)));
+
+        // Запускаем процесс
+        ProcessBuilder pb = new ProcessBuilder(cmdArgs);
+        pb.redirectOutput(pooled ? ProcessBuilder.Redirect.PIPE : ProcessBuilder.Redirect.INHERIT);
+        pb.redirectError(ProcessBuilder.Redirect.INHERIT);
+        return pb.start();
+    }
+
+    // Настройки server.* передаются дочернему процессу, метрики он отдаёт на свободном порту,
+    // который публикует в общем каталоге сервера: слушатель собирает их в своём /metrics
+    private static List<String> forwardedProperties() {
+        List<String> properties = new ArrayList<>();
+        System.getProperties().stringPropertyNames().stream()
+                .filter(name -> name.startsWith("server.") && !POOLED_PROPERTY.equals(name))
+                .forEach(name -> properties.add("-D" + name + "=" + (MetricsEndpoint.PORT_PROPERTY.equals(name)
+                        ? "0" : System.getProperty(name))));
+        return properties;
+    }
+}
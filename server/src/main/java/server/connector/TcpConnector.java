@@ -21,14 +21,14 @@ public class TcpConnector extends Connector {
     @Override
     public void start() {
         logger.info("Starting TCP Connector");
-        try (ServerSocket serverSocket = new ServerSocket(port)) {
+        prepareListener("TCP", port);
+        try (ServerSocket serverSocket = new ServerSocket(port);
+             var pool = new WorkerPool("TCP", WORKER_POOL_SIZE)) {
             while (true) {
                 try (Socket clientSocket = serverSocket.accept();
                      var writer = new PrintWriter(clientSocket.getOutputStream(), true)
                 ) {
-                    int freePort = findFreePort();
-                    writer.println(freePort);
-                    establishConnection("TCP", freePort);
+                    writer.println(pool.take());
                 } catch (Exception e) {
                     logger.error("Превышено время ожидания, автоматическое отключение {} HOST", e.getMessage());
                 }
@@ -42,15 +42,20 @@ public class TcpConnector extends Connector {
     public void connect() {
         try (ServerSocket serverSocket = new ServerSocket(port)) {
             TcpDownloader tcpDownloader = new TcpDownloader();
+            signalReady(port);
             try (Socket clientSocket = serverSocket.accept();
-                 var reader = new BufferedReader(new InputStreamReader(clientSocket.getInputStream()));
+                 // Команды и данные читаются из одного буфера: данные могут идти сразу за строкой команды
+                 var input = new BufferedInputStream(clientSocket.getInputStream());
                  var writer = new PrintWriter(clientSocket.getOutputStream(), true)
             ) {
-                tcpDownloader.setIn(clientSocket.getInputStream());
+                clientAccepted();
+                tcpDownloader.setIn(input);
                 tcpDownloader.setOut(clientSocket.getOutputStream());
-                ClientManager manager = new TcpClientManager(tcpDownloader, writer, reader, clientSocket);
+                ClientManager manager = new TcpClientManager(tcpDownloader, writer, input, clientSocket);
                 logger.info("Подключился клиент {}", clientSocket.getRemoteSocketAddress());
                 clientSocket.setKeepAlive(true);
+                // Ответ идёт несколькими короткими записями, Nagle задерживал бы каждую до ACK клиента
+                clientSocket.setTcpNoDelay(true);
                 clientSocket.setSoTimeout(TIMEOUT);
                 manager.communicate();
                 logger.info("Отключился от клиента {}", clientSocket.getRemoteSocketAddress());
@@ -0,0 +1,158 @@
+package server.connector;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import server.client.manager.ClientManager;
+import server.client.manager.UdpClientManager;
+import server.downloader.UdpDownloader;
+import server.metrics.Counter;
+import server.metrics.Labels;
+import server.metrics.MetricsRegistry;
+import server.socket.Message;
+import server.socket.ReliableUdpSocket;
+import server.status.Status;
+
+import java.io.IOException;
+import java.net.*;
+import java.util.ArrayList;
+import java.util.List;
+
+/*
+ * Приём подключений UDP. Сокет на основном порту обслуживает одно рукопожатие за раз и отдаёт клиенту
+ * порт отдельного процесса. При server.udp.shards=N > 1 на порт вешается N сокетов с SO_REUSEPORT,
+ * каждый со своим потоком приёма: ядро раскладывает клиентов по ним, и рукопожатия идут параллельно.
+ */
+public class UdpConnector extends Connector {
+    private static final Logger logger = LoggerFactory.getLogger(UdpConnector.class);
+    private final int port;
+    private static final String CONNECT_MESSAGE = Status.CONNECT.code() + " CONNECT";
+    private static final int SEND_TIMEOUT = Integer.getInteger("server.udp.sendTimeout", 180_000);
+    private static final int SHARDS = Math.max(Integer.getInteger("server.udp.shards", 1), 1);
+    private static final long SHARD_RESTART_DELAY_MS = 1000;
+
+    public UdpConnector(int port) {
+        this.port = port;
+    }
+
+    @Override
+    public void start() {
+        logger.info("Starting UDP server");
+        prepareListener("UDP", port);
+        List<ReliableUdpSocket> sockets = new ArrayList<>();
+        try (var pool = new WorkerPool("UDP", WORKER_POOL_SIZE)) {
+            openShards(sockets);
+            if (sockets.size() == 1) {
+                serve(sockets.getFirst(), pool, 0);
+                return;
+            }
+            List<Thread> threads = new ArrayList<>();
+            for (int i = 0; i < sockets.size(); i++) {
+                var socket = sockets.get(i);
+                int shard = i;
+                threads.add(Thread.ofPlatform().name("udp-shard-" + shard).start(() -> runShard(socket, pool, shard)));
+            }
+            for (var thread : threads) {
+                thread.join();
+            }
+        } catch (Exception e) {
+            logger.error(e.getMessage());
+        } finally {
+            sockets.forEach(ReliableUdpSocket::close);
+        }
+    }
+
+    // Без поддержки SO_REUSEPORT - один сокет, как раньше
+    private void openShards(List<ReliableUdpSocket> sockets) throws IOException {
+        if (SHARDS > 1 && ReliableUdpSocket.isReusePortSupported()) {
+            for (int i = 0; i < SHARDS; i++) {
+                sockets.add(ReliableUdpSocket.shard(port, i));
+            }
+            logger.info("UDP port {} is served by {} SO_REUSEPORT shards", port, SHARDS);
+            return;
+        }
+        if (SHARDS > 1) {
+            logger.warn("SO_REUSEPORT is not supported, UDP port {} is served by a single socket", port);
+        }
+        sockets.add(new ReliableUdpSocket(port));
+    }
+
+    /*
+     * Упавший шард закрывает свой сокет, иначе ядро продолжит отдавать ему клиентов, которых некому
+     * обслужить, и открывает новый. Если порт не удалось занять снова, клиенты шарда переходят к остальным.
+     */
+    private void runShard(ReliableUdpSocket first, WorkerPool pool, int shard) {
+        var socket = first;
+        while (socket != null) {
+            serve(socket, pool, shard);
+            socket = null;
+            try {
+                Thread.sleep(SHARD_RESTART_DELAY_MS);
+                socket = ReliableUdpSocket.shard(port, shard);
+                logger.info("Shard {} restarted", shard);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (IOException e) {
+                logger.error("Shard {} is not restarted: {}", shard, e.getMessage());
+            }
+        }
+    }
+
+    // Возвращается только после ошибки, сокет к этому моменту закрыт
+    private void serve(ReliableUdpSocket socket, WorkerPool pool, int shard) {
+        Counter handshakes = MetricsRegistry.getInstance().counter("server_udp_handshakes_total",
+                "UDP handshakes accepted on the listening port", Labels.of("shard", Integer.toString(shard)));
+        socket.setSoTimeout(Connector.TIMEOUT);
+        socket.setExclusivePeer(true);
+        socket.startServices();
+        try {
+            while (true) {
+                try {
+                    var message = accept(socket);
+                    socket.send(Integer.toString(pool.take()), message.address(), message.port());
+                    handshakes.increment();
+                } catch (SocketTimeoutException _) {
+                    logger.debug("No clients connected (timeout) host");
+                } finally {
+                    socket.resetSession();
+                }
+            }
+        } catch (Exception e) {
+            logger.error("Shard {}: {}", shard, e.getMessage());
+        } finally {
+            socket.close();
+        }
+    }
+
+    private Message accept(ReliableUdpSocket socket) throws IOException {
+        var message = socket.receive();
+        logger.info("Received message: {}", message.text());
+        if (CONNECT_MESSAGE.equals(message.text())) {
+            socket.send(Status.SUCCESS.code() + " ACCEPT", message.address(), message.port());
+        }
+        return message;
+    }
+
+    @Override
+    public void connect() {
+        logger.info("free port {}", port);
+        try (var socket = new ReliableUdpSocket(port, true)) {
+            // Процесс из пула ждёт клиента сколько угодно, обычный - не дольше TIMEOUT
+            socket.setSoTimeout(isPooledWorker() ? 0 : Connector.TIMEOUT);
+            signalReady(port);
+            try {
+                logger.info("socket port {}", socket.getPort());
+                var message = accept(socket);
+                clientAccepted();
+                socket.setSoTimeout(Connector.TIMEOUT);
+                logger.info("UDP connection established with client: {}", message.address());
+                var udpDownloader = new UdpDownloader(socket, message.port(), socket.getPayloadSize(), SEND_TIMEOUT);
+                ClientManager udpClientManager = new UdpClientManager(udpDownloader, socket, message.address(), message.port());
+                udpClientManager.communicate();
+            } catch (SocketTimeoutException _) {
+                logger.debug("No clients connected (timeout) port {}", this.port);
+            }
+        } catch (Exception e) {
+            logger.error(e.getMessage());
+        }
+    }
+}
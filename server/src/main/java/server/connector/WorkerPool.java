@@ -0,0 +1,130 @@
+package server.connector;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.*;
+
+/*
+ * Пул заранее запущенных дочерних процессов. Каждый уже занял свой порт и прогрет,
+ * клиент получает готовый процесс сразу, а замена запускается в фоне.
+ */
+public class WorkerPool implements AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(WorkerPool.class);
+    private static final long RESTART_DELAY_MS = 1000;
+    private static final long WAIT_FOR_WORKER_MS = 30_000;
+
+    private record Worker(int port, Process process) {
+    }
+
+    private final String protocol;
+    private final int size;
+    private final BlockingQueue<Worker> ready = new LinkedBlockingQueue<>();
+    private final ExecutorService spawner = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "worker-pool");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private volatile boolean closed = false;
+
+    public WorkerPool(String protocol, int size) {
+        this.protocol = protocol;
+        this.size = Math.max(size, 0);
+        for (int i = 0; i < this.size; i++) {
+            replenish();
+        }
+        if (this.size > 0) {
+            logger.info("Пул из {} процессов {} запускается", this.size, protocol);
+        }
+    }
+
+    // Порт процесса, который обслужит нового клиента
+    public int take() throws IOException {
+        Worker worker;
+        while ((worker = poll()) != null) {
+            replenish();
+            if (worker.process().isAlive()) {
+                return worker.port();
+            }
+        }
+        // Пул выключен или не успел поднять процесс - холодный старт, как раньше
+        int port = Connector.findFreePort();
+        Connector.establishConnection(protocol, port);
+        return port;
+    }
+
+    // Если пул включён, ждём процесс, который уже запускается: это не дольше холодного старта
+    private Worker poll() {
+        if (size == 0) {
+            return null;
+        }
+        try {
+            return ready.poll(WAIT_FOR_WORKER_MS, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+    }
+
+    private void replenish() {
+        if (size > 0 && !closed) {
+            spawner.execute(this::spawn);
+        }
+    }
+
+    private void spawn() {
+        Process process;
+        int port;
+        try {
+            port = Connector.findFreePort();
+            process = Connector.startWorker(protocol, port, true);
+        } catch (IOException e) {
+            logger.error("Не удалось запустить процесс для пула: {}", e.getMessage());
+            retryLater();
+            return;
+        }
+        boolean announced = false;
+        try (var reader = new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (!announced && line.equals(Connector.READY_MARKER + " " + port)) {
+                    announced = true;
+                    if (closed) {
+                        process.destroy();
+                    } else {
+                        ready.add(new Worker(port, process));
+                    }
+                } else {
+                    System.out.println(line);
+                }
+            }
+        } catch (IOException e) {
+            logger.debug("Вывод процесса {} закрыт: {}", process.pid(), e.getMessage());
+        }
+        if (!announced) {
+            logger.error("Процесс пула {} завершился, не успев занять порт {}", process.pid(), port);
+            retryLater();
+        }
+    }
+
+    private void retryLater() {
+        if (!closed) {
+            CompletableFuture.delayedExecutor(RESTART_DELAY_MS, TimeUnit.MILLISECONDS, spawner)
+                    .execute(this::spawn);
+        }
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        Worker worker;
+        while ((worker = ready.poll()) != null) {
+            worker.process().destroy();
+        }
+        spawner.shutdownNow();
+    }
+}
@@ -0,0 +1,104 @@
+package server.downloader;
+
+import server.bandwidth.TransferShare;
+import server.progress.TransferProgress;
+
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.CRC32C;
+
+// Приём архива ArchiveWriter: каждый файл фиксируется атомарно через StagedUpload, пачками
+public class ArchiveReader {
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final DataInputStream in;
+    private final TransferShare share;
+    private final TransferProgress progress;
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+
+    public ArchiveReader(InputStream in, TransferShare share, TransferProgress progress) {
+        this.in = new DataInputStream(in);
+        this.share = share;
+        this.progress = progress;
+    }
+
+    /*
+     * Возвращает число принятых файлов; повреждённые записи пропускаются, архив дочитывается до конца.
+     * Проверенные файлы фиксируются пачками через CommitBatch, а не по одному: иначе каждый мелкий файл
+     * платит за два fsync. Если архив оборвался, принятые до обрыва файлы всё равно фиксируются.
+     */
+    public int readTree(Path root) throws IOException {
+        Path base = root.toAbsolutePath().normalize();
+        int files = 0;
+        ChecksumMismatchException failure = null;
+        var batch = new CommitBatch();
+        try {
+            while (in.readUnsignedByte() == ArchiveWriter.ENTRY) {
+                String name = in.readUTF();
+                long size = in.readLong();
+                Path target = base.resolve(name).normalize();
+                if (!target.startsWith(base) || target.equals(base)) {
+                    throw new IOException("Недопустимый путь в архиве: " + name);
+                }
+                Files.createDirectories(target.getParent());
+                var upload = new StagedUpload(target, false);
+                long actual;
+                long expected;
+                try {
+                    actual = copy(upload.channel(), size);
+                    expected = Integer.toUnsignedLong(in.readInt());
+                } catch (IOException | RuntimeException e) {
+                    upload.discard();
+                    throw e;
+                }
+                if (actual != expected) {
+                    upload.discard();
+                    if (failure == null) {
+                        failure = new ChecksumMismatchException(name, expected, actual);
+                    }
+                    continue;
+                }
+                batch.add(upload);
+                files++;
+            }
+        } catch (IOException | RuntimeException e) {
+            try {
+                batch.commit();
+            } catch (IOException suppressed) {
+                e.addSuppressed(suppressed);
+            }
+            throw e;
+        }
+        batch.commit();
+        if (failure != null) {
+            throw failure;
+        }
+        return files;
+    }
+
+    private long copy(FileChannel channel, long size) throws IOException {
+        var digest = new CRC32C();
+        long remaining = size;
+        while (remaining > 0) {
+            int read = in.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+            if (read == -1) {
+                throw new EOFException("Архив оборвался, не хватает " + remaining + " байт");
+            }
+            share.acquire(read);
+            digest.update(buffer, 0, read);
+            ByteBuffer chunk = ByteBuffer.wrap(buffer, 0, read);
+            while (chunk.hasRemaining()) {
+                channel.write(chunk);
+            }
+            remaining -= read;
+            progress.add(read);
+        }
+        return digest.getValue();
+    }
+}
@@ -0,0 +1,82 @@
+package server.downloader;
+
+import server.bandwidth.TransferShare;
+import server.progress.TransferProgress;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+/*
+ * Потоковый архив для download -r / upload -r. Записи идут подряд без ожидания ответа:
+ *   1 (byte), относительный путь (writeUTF, разделитель '/'), размер (long), данные, CRC32C данных (int)
+ * Архив завершается байтом 0. Пустые каталоги и символические ссылки не передаются.
+ */
+public class ArchiveWriter {
+    static final int ENTRY = 1;
+    static final int END = 0;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final DataOutputStream out;
+    private final TransferShare share;
+    private final TransferProgress progress;
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+
+    public ArchiveWriter(OutputStream out, TransferShare share, TransferProgress progress) {
+        this.out = new DataOutputStream(out);
+        this.share = share;
+        this.progress = progress;
+    }
+
+    public static List<Path> listFiles(Path root) throws IOException {
+        try (Stream<Path> files = Files.walk(root)) {
+            return files.filter(Files::isRegularFile).sorted().toList();
+        }
+    }
+
+    public static long totalSize(List<Path> files) throws IOException {
+        long total = 0;
+        for (Path file : files) {
+            total += Files.size(file);
+        }
+        return total;
+    }
+
+    public void writeTree(Path root, List<Path> files) throws IOException {
+        for (Path file : files) {
+            writeEntry(root.relativize(file).toString().replace(file.getFileSystem().getSeparator(), "/"), file);
+        }
+        out.writeByte(END);
+        out.flush();
+    }
+
+    private void writeEntry(String name, Path file) throws IOException {
+        try (InputStream input = Files.newInputStream(file)) {
+            long size = Files.size(file);
+            out.writeByte(ENTRY);
+            out.writeUTF(name);
+            out.writeLong(size);
+            var digest = new CRC32C();
+            long remaining = size;
+            // Файл мог измениться после подсчёта размера: передаём ровно объявленное число байт
+            while (remaining > 0) {
+                int read = input.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+                if (read == -1) {
+                    throw new IOException("Файл " + file + " укоротился во время передачи");
+                }
+                share.acquire(read);
+                out.write(buffer, 0, read);
+                digest.update(buffer, 0, read);
+                remaining -= read;
+                progress.add(read);
+            }
+            out.writeInt((int) digest.getValue());
+        }
+    }
+}
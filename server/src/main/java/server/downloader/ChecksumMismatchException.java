@@ -0,0 +1,15 @@
+package server.downloader;
+
+import java.io.IOException;
+import java.io.Serial;
+
+// Контрольная сумма принятого файла не совпала с присланной: файл не фиксируется, соединение остаётся
+public class ChecksumMismatchException extends IOException {
+    @Serial
+    private static final long serialVersionUID = 1L;
+
+    public ChecksumMismatchException(String fileName, long expected, long actual) {
+        super(String.format("Контрольная сумма %s не совпала: ожидалась %08x, получена %08x",
+                fileName, expected, actual));
+    }
+}
@@ -0,0 +1,99 @@
+package server.downloader;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/*
+ * Фиксация нескольких загрузок одной пачкой, для архивов из множества мелких файлов.
+ * Файлы сбрасываются параллельно, чтобы файловая система объединила их в одну запись журнала,
+ * затем все переименовываются, и каждый каталог сбрасывается один раз на пачку.
+ * Открытых файлов в пачке не больше MAX_FILES, дальше она фиксируется досрочно.
+ */
+class CommitBatch {
+    private static final Logger logger = LoggerFactory.getLogger(CommitBatch.class);
+    private static final int MAX_FILES = Math.max(Integer.getInteger("server.upload.commitBatch", 256), 1);
+
+    private final List<StagedUpload> uploads = new ArrayList<>();
+
+    // Загрузка уже целиком записана и проверена
+    void add(StagedUpload upload) throws IOException {
+        uploads.add(upload);
+        if (uploads.size() >= MAX_FILES) {
+            commit();
+        }
+    }
+
+    // При ошибке незафиксированные загрузки пачки откатываются
+    void commit() throws IOException {
+        if (uploads.isEmpty()) {
+            return;
+        }
+        long start = System.nanoTime();
+        List<StagedUpload> batch = List.copyOf(uploads);
+        uploads.clear();
+        try {
+            flushAll(batch);
+            Map<Path, Path> directories = new LinkedHashMap<>();
+            for (StagedUpload upload : batch) {
+                upload.publish();
+                directories.putIfAbsent(upload.target().getParent(), upload.target());
+            }
+            for (Path target : directories.values()) {
+                StagedUpload.forceParent(target);
+            }
+            long elapsed = System.nanoTime() - start;
+            batch.forEach(_ -> StagedUpload.observeCommit(elapsed));
+            logger.debug("Зафиксировано {} загрузок в {} каталогах", batch.size(), directories.size());
+        } catch (IOException | RuntimeException e) {
+            for (StagedUpload upload : batch) {
+                try {
+                    upload.discard();
+                } catch (IOException suppressed) {
+                    e.addSuppressed(suppressed);
+                }
+            }
+            throw e;
+        }
+    }
+
+    private static void flushAll(List<StagedUpload> batch) throws IOException {
+        List<Future<Void>> flushes = new ArrayList<>();
+        try (var executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (StagedUpload upload : batch) {
+                flushes.add(executor.submit(() -> {
+                    upload.flush();
+                    return null;
+                }));
+            }
+        }
+        IOException failure = null;
+        for (Future<Void> flush : flushes) {
+            try {
+                flush.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Сброс пачки прерван", e);
+            } catch (ExecutionException e) {
+                IOException cause = e.getCause() instanceof IOException io ? io : new IOException(e.getCause());
+                if (failure == null) {
+                    failure = cause;
+                } else {
+                    failure.addSuppressed(cause);
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+}
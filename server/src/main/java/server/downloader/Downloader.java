@@ -0,0 +1,14 @@
+package server.downloader;
+
+import java.io.IOException;
+import java.net.InetAddress;
+
+public interface Downloader {
+    void downloadFile(String fileName, InetAddress clientAddress, TransferOptions options) throws IOException;
+    void uploadFile(String fileName, InetAddress clientAddress, TransferOptions options) throws IOException;
+    // Каталог целиком одним потоковым архивом, см. ArchiveWriter
+    void downloadDirectory(String dirName, InetAddress clientAddress) throws IOException;
+    void uploadDirectory(String dirName, InetAddress clientAddress) throws IOException;
+    // Загрузка за один обмен отклонена, а её данные уже идут следом за командой - вычитать их
+    void discardUpload(TransferOptions options) throws IOException;
+}
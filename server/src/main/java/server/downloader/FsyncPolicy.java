@@ -0,0 +1,36 @@
+package server.downloader;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Locale;
+
+/*
+ * Когда принятый файл сбрасывается на диск перед переименованием в итоговый.
+ * Группового fsync между загрузками нет: каждого клиента обслуживает свой процесс, а его загрузки
+ * идут по очереди, так что собирать в пачку нечего - ожидание пачки только добавляло задержку
+ * к тем же двум fsync на файл. Пачками фиксируются файлы одного архива (CommitBatch).
+ */
+public enum FsyncPolicy {
+    NEVER,
+    FILE;
+
+    private static final Logger logger = LoggerFactory.getLogger(FsyncPolicy.class);
+
+    public static FsyncPolicy fromProperty() {
+        String value = System.getProperty("server.upload.fsync", "file");
+        if ("group".equalsIgnoreCase(value.trim())) {
+            logger.warn("server.upload.fsync=group больше не поддерживается, используется file");
+            return FILE;
+        }
+        try {
+            return valueOf(value.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Неизвестная политика fsync: " + value + " (never, file)");
+        }
+    }
+
+    public String label() {
+        return name().toLowerCase(Locale.ROOT);
+    }
+}
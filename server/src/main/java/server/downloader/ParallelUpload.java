@@ -0,0 +1,209 @@
+package server.downloader;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/*
+ * Загрузка несколькими потоками. Клиент делит файл на блоки по block байт и шлёт непересекающиеся
+ * диапазоны блоков по разным соединениям, каждое обслуживает свой процесс.
+ * <имя>.mpart сразу выделяется на полный размер, диапазоны пишутся по своим позициям,
+ * а в <имя>.mpart.map по байту на блок отмечаются принятые - по карте продолжается прерванная загрузка.
+ * Соединение, принявшее последний блок, атомарно переименовывает файл в итоговый.
+ */
+public class ParallelUpload implements AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(ParallelUpload.class);
+    private static final String SUFFIX = ".mpart";
+    private static final String MAP_SUFFIX = ".mpart.map";
+    // Заголовок карты: размер файла и размер блока, дальше по байту на блок
+    private static final int HEADER = 2 * Long.BYTES;
+    // Блокировка файла не защищает от других потоков того же процесса, для них - монитор на путь
+    private static final ConcurrentHashMap<Path, Object> monitors = new ConcurrentHashMap<>();
+
+    private final Path target;
+    private final Path data;
+    private final Path map;
+    private final long size;
+    private final long block;
+    private final int blocks;
+    private final RandomAccessFile file;
+    private final FileChannel mapChannel;
+
+    private ParallelUpload(Path target, long size, long block) throws IOException {
+        this.target = target;
+        this.data = target.resolveSibling(target.getFileName() + SUFFIX);
+        this.map = target.resolveSibling(target.getFileName() + MAP_SUFFIX);
+        this.size = size;
+        this.block = block;
+        this.blocks = (int) ((size + block - 1) / block);
+        this.mapChannel = FileChannel.open(map, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        this.file = new RandomAccessFile(data.toFile(), "rw");
+    }
+
+    // Открывает загрузку target или начинает новую, если прежняя была другого размера или с другими блоками
+    public static ParallelUpload open(Path target, long size, long block) throws IOException {
+        if (size < 0 || block <= 0 || (size + block - 1) / block > Integer.MAX_VALUE) {
+            throw new IOException("Некорректные размер " + size + " или блок " + block + " параллельной загрузки");
+        }
+        var upload = new ParallelUpload(target, size, block);
+        try {
+            upload.locked(upload::prepare);
+        } catch (IOException e) {
+            upload.close();
+            throw e;
+        }
+        return upload;
+    }
+
+    private interface Action {
+        void run() throws IOException;
+    }
+
+    private void locked(Action action) throws IOException {
+        synchronized (monitors.computeIfAbsent(map, _ -> new Object())) {
+            try (FileLock _ = mapChannel.lock()) {
+                action.run();
+            }
+        }
+    }
+
+    private void prepare() throws IOException {
+        var header = ByteBuffer.allocate(HEADER);
+        boolean same = mapChannel.size() == HEADER + blocks
+                && mapChannel.read(header, 0) == HEADER
+                && header.getLong(0) == size
+                && header.getLong(Long.BYTES) == block
+                && file.length() == size;
+        if (same) {
+            return;
+        }
+        logger.debug("Новая параллельная загрузка {}: {} байт, {} блоков", target, size, blocks);
+        mapChannel.truncate(0);
+        mapChannel.write(ByteBuffer.allocate(HEADER).putLong(size).putLong(block).flip(), 0);
+        mapChannel.write(ByteBuffer.allocate(blocks), HEADER);
+        file.setLength(0);
+        file.setLength(size);
+    }
+
+    public FileChannel channel() {
+        return file.getChannel();
+    }
+
+    public long block() {
+        return block;
+    }
+
+    // Диапазон начинается на границе блока и кончается на границе блока или в конце файла
+    public boolean isAligned(long start, long length) {
+        long end = start + length;
+        return start >= 0 && length >= 0 && end <= size && start % block == 0 && (end == size || end % block == 0);
+    }
+
+    // Данные диапазона сбрасываются на диск до отметки в карте, иначе после сбоя карта соврёт
+    public void complete(long start, long length) throws IOException {
+        if (length == 0) {
+            return;
+        }
+        StagedUpload.force(file.getChannel());
+        int first = (int) (start / block);
+        int last = (int) ((start + length + block - 1) / block);
+        byte[] done = new byte[last - first];
+        Arrays.fill(done, (byte) 1);
+        locked(() -> {
+            mapChannel.write(ByteBuffer.wrap(done), HEADER + first);
+            StagedUpload.force(mapChannel);
+        });
+    }
+
+    // Недостающие блоки в виде "0-3,7", пустая строка - все приняты
+    public String missing() throws IOException {
+        byte[] marks = marks();
+        var result = new StringBuilder();
+        int i = 0;
+        while (i < marks.length) {
+            if (marks[i] != 0) {
+                i++;
+                continue;
+            }
+            int from = i;
+            while (i < marks.length && marks[i] == 0) {
+                i++;
+            }
+            if (!result.isEmpty()) {
+                result.append(',');
+            }
+            result.append(from).append(i - 1 == from ? "" : "-" + (i - 1));
+        }
+        return result.toString();
+    }
+
+    public int doneBlocks() throws IOException {
+        int done = 0;
+        for (byte mark : marks()) {
+            done += mark != 0 ? 1 : 0;
+        }
+        return done;
+    }
+
+    public int blocks() {
+        return blocks;
+    }
+
+    private byte[] marks() throws IOException {
+        var marks = ByteBuffer.allocate(blocks);
+        while (marks.hasRemaining()) {
+            if (mapChannel.read(marks, HEADER + marks.position()) < 0) {
+                break;
+            }
+        }
+        return marks.array();
+    }
+
+    // true - все блоки приняты и файл уже на месте (переименован этим или другим соединением)
+    public boolean commitIfComplete() throws IOException {
+        boolean[] committed = {false};
+        locked(() -> {
+            if (!Files.exists(data)) {
+                committed[0] = !Files.exists(map) || mapChannel.size() == 0;
+                return;
+            }
+            if (doneBlocks() < blocks) {
+                return;
+            }
+            long start = System.nanoTime();
+            StagedUpload.force(file.getChannel());
+            Files.move(data, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            StagedUpload.forceParent(target);
+            // Пустая карта - признак для соединений, ждущих ту же блокировку, что файл уже зафиксирован
+            mapChannel.truncate(0);
+            Files.deleteIfExists(map);
+            StagedUpload.observeCommit(System.nanoTime() - start);
+            committed[0] = true;
+        });
+        if (committed[0]) {
+            logger.debug("Параллельная загрузка {} зафиксирована", target);
+        }
+        return committed[0];
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            file.close();
+        } finally {
+            mapChannel.close();
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package server.downloader;
+
+import server.metrics.Counter;
+import server.metrics.Labels;
+import server.metrics.MetricsRegistry;
+import server.status.Status;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.CRC32C;
+
+/*
+ * Содержимое мелких файлов для ответа на download одним сообщением INLINE, без FileInputStream и прогресса.
+ * Запись действительна, пока у файла не изменились время модификации и размер;
+ * при переполнении вытесняются давно не запрошенные файлы.
+ */
+public final class SmallFileCache {
+    public static final int THRESHOLD = Integer.getInteger("server.download.inlineThreshold", 32 * 1024);
+    private static final long CAPACITY = Long.getLong("server.download.cacheBytes", 64L << 20);
+    private static final SmallFileCache INSTANCE = new SmallFileCache(CAPACITY);
+
+    public record Entry(byte[] data, String token, long crc) {
+    }
+
+    private final long capacity;
+    private final LinkedHashMap<Path, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long bytes = 0;
+    private final Counter hits;
+    private final Counter misses;
+
+    public SmallFileCache(long capacity) {
+        this.capacity = capacity;
+        var registry = MetricsRegistry.getInstance();
+        hits = registry.counter("server_small_file_cache_total", "Small-file cache lookups",
+                Labels.of("result", "hit"));
+        misses = registry.counter("server_small_file_cache_total", "Small-file cache lookups",
+                Labels.of("result", "miss"));
+        registry.gauge("server_small_file_cache_bytes", "Bytes held by the small-file cache",
+                Labels.EMPTY, this::size);
+    }
+
+    public static SmallFileCache getInstance() {
+        return INSTANCE;
+    }
+
+    // null - файл больше limit, и его нужно передавать обычным способом
+    public Entry get(Path path, int limit) throws IOException {
+        Path key = path.toAbsolutePath().normalize();
+        BasicFileAttributes attributes;
+        try {
+            attributes = Files.readAttributes(key, BasicFileAttributes.class);
+        } catch (NoSuchFileException e) {
+            throw new FileNotFoundException(path.toString());
+        }
+        if (!attributes.isRegularFile() || attributes.size() > Math.min(limit, THRESHOLD)) {
+            return null;
+        }
+        String token = TransferOptions.tokenOf(attributes);
+        synchronized (this) {
+            Entry entry = entries.get(key);
+            if (entry != null && entry.token().equals(token)) {
+                hits.increment();
+                return entry;
+            }
+        }
+        misses.increment();
+        byte[] data = Files.readAllBytes(key);
+        if (data.length != attributes.size()) {
+            return null; // Файл меняется прямо сейчас
+        }
+        var crc = new CRC32C();
+        crc.update(data, 0, data.length);
+        var entry = new Entry(data, token, crc.getValue());
+        put(key, entry);
+        return entry;
+    }
+
+    // "200 INLINE size=<n> offset=<n> token=<t> crc=<c>\n" и данные с offset - одним сообщением
+    public static byte[] inlineResponse(Entry entry, long offset) {
+        byte[] data = entry.data();
+        int from = (int) offset;
+        long crc = entry.crc();
+        if (from > 0) {
+            var digest = new CRC32C();
+            digest.update(data, from, data.length - from);
+            crc = digest.getValue();
+        }
+        byte[] header = (Status.SUCCESS.code() + " INLINE size=" + (data.length - from) + " offset=" + from
+                + " token=" + entry.token() + " crc=" + crc + "\n").getBytes(StandardCharsets.US_ASCII);
+        byte[] response = Arrays.copyOf(header, header.length + data.length - from);
+        System.arraycopy(data, from, response, header.length, data.length - from);
+        return response;
+    }
+
+    private synchronized void put(Path key, Entry entry) {
+        if (entry.data().length > capacity) {
+            return;
+        }
+        Entry previous = entries.put(key, entry);
+        bytes += entry.data().length - (previous == null ? 0 : previous.data().length);
+        Iterator<Map.Entry<Path, Entry>> eldest = entries.entrySet().iterator();
+        while (bytes > capacity && eldest.hasNext()) {
+            bytes -= eldest.next().getValue().data().length;
+            eldest.remove();
+        }
+    }
+
+    public synchronized long size() {
+        return bytes;
+    }
+}
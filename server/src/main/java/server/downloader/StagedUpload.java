@@ -0,0 +1,141 @@
+package server.downloader;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import server.metrics.Histogram;
+import server.metrics.Labels;
+import server.metrics.MetricsRegistry;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+
+/*
+ * Загрузка пишется во временный файл <имя>.part рядом с итоговым, сбрасывается на диск
+ * согласно FsyncPolicy и атомарно переименовывается. Читатели видят либо старый файл, либо новый целиком.
+ * Незавершённый .part остаётся для продолжения загрузки.
+ */
+public class StagedUpload implements AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(StagedUpload.class);
+    private static final String SUFFIX = ".part";
+    private static final boolean STAGED = Boolean.parseBoolean(System.getProperty("server.upload.staged", "true"));
+    private static final FsyncPolicy POLICY = FsyncPolicy.fromProperty();
+    private static final Histogram commitDuration = MetricsRegistry.getInstance().histogram(
+            "server_upload_commit_seconds", "Time to make an upload durable and visible",
+            Labels.of("fsync", POLICY.label()), Histogram.LATENCY_BUCKETS);
+
+    private final Path target;
+    private final Path staging;
+    private final FileOutputStream output;
+    private final FileChannel channel;
+    // Длина файла до этой загрузки: без .part откат не должен задеть то, что было записано раньше
+    private final long initialSize;
+    private boolean committed = false;
+
+    public StagedUpload(Path target, boolean append) throws IOException {
+        this.target = target;
+        this.staging = stagingPath(target);
+        this.output = new FileOutputStream(staging.toFile(), append);
+        this.channel = output.getChannel();
+        this.initialSize = channel.size();
+    }
+
+    public static Path stagingPath(Path target) {
+        return STAGED ? target.resolveSibling(target.getFileName() + SUFFIX) : target;
+    }
+
+    // Удаляет незавершённую загрузку, итоговый файл не трогается; без .part удалять нечего
+    public static void discard(Path target) throws IOException {
+        if (STAGED) {
+            Files.deleteIfExists(stagingPath(target));
+        }
+    }
+
+    // Откатывает эту загрузку: .part удаляется, а при записи прямо в файл отрезается дописанное ею
+    public void discard() throws IOException {
+        if (committed) {
+            return;
+        }
+        if (!STAGED && channel.isOpen()) {
+            channel.truncate(initialSize);
+        }
+        close();
+        discard(target);
+    }
+
+    public FileChannel channel() {
+        return channel;
+    }
+
+    // Сколько байт уже принято, для продолжения загрузки
+    public long size() throws IOException {
+        return channel.size();
+    }
+
+    public void commit() throws IOException {
+        long start = System.nanoTime();
+        flush();
+        publish();
+        if (STAGED) {
+            forceParent(target);
+        }
+        observeCommit(System.nanoTime() - start);
+        logger.debug("Загрузка {} зафиксирована (fsync: {})", target, POLICY.label());
+    }
+
+    // Первая половина commit для CommitBatch: данные сбрасываются по FsyncPolicy, файл закрывается
+    void flush() throws IOException {
+        force(channel);
+        channel.close();
+        output.close();
+    }
+
+    // Вторая половина: .part становится итоговым файлом, сброс каталога остаётся вызывающему
+    void publish() throws IOException {
+        if (STAGED) {
+            Files.move(staging, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        }
+        committed = true;
+    }
+
+    Path target() {
+        return target;
+    }
+
+    // Сброс данных и каталога по FsyncPolicy, общий для StagedUpload и ParallelUpload
+    static void force(FileChannel channel) throws IOException {
+        switch (POLICY) {
+            case FILE -> channel.force(true);
+            case NEVER -> { }
+        }
+    }
+
+    static void forceParent(Path target) throws IOException {
+        switch (POLICY) {
+            case FILE -> forceDirectory(target.getParent());
+            case NEVER -> { }
+        }
+    }
+
+    static void observeCommit(long nanos) {
+        commitDuration.observeNanos(nanos);
+    }
+
+    // Переименование становится надёжным только после сброса каталога; не везде каталог можно открыть
+    static void forceDirectory(Path directory) throws IOException {
+        try (FileChannel dir = FileChannel.open(directory, StandardOpenOption.READ)) {
+            dir.force(true);
+        } catch (AccessDeniedException | UnsupportedOperationException e) {
+            logger.debug("fsync каталога {} недоступен: {}", directory, e.getMessage());
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (!committed) {
+            channel.close();
+            output.close();
+        }
+    }
+}
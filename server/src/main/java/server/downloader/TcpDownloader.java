@@ -0,0 +1,455 @@
+package server.downloader;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import server.bandwidth.BandwidthScheduler;
+import server.bandwidth.TransferShare;
+import server.progress.Direction;
+import server.progress.TransferEventBus;
+import server.progress.TransferProgress;
+import server.socket.BdpEstimator;
+import server.status.Status;
+
+import java.io.*;
+import java.net.InetAddress;
+import java.net.SocketException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.*;
+import java.util.zip.CRC32C;
+
+public class TcpDownloader implements Downloader {
+    private static final Logger logger = LoggerFactory.getLogger(TcpDownloader.class);
+    private DownloadRequest lastDownloadRequest = null;
+    private UploadRequest lastUploadRequest = null;
+    private OutputStream out;
+    private InputStream in;
+    // Блок растёт с измеренной скоростью: примерно CHUNK_INTERVAL передачи на одну запись
+    private static final int MIN_CHUNK = Integer.getInteger("server.tcp.minChunk", 8192);
+    private static final int MAX_CHUNK = Math.max(Integer.getInteger("server.tcp.maxChunk", 1024 * 1024), MIN_CHUNK);
+    private static final long CHUNK_INTERVAL_NANOS = 2_000_000;
+    private final BdpEstimator throughput = new BdpEstimator();
+
+    public void setOut(OutputStream out) {
+        this.out = out;
+    }
+
+    public void setIn(InputStream in) {
+        this.in = in;
+    }
+
+    public OutputStream getOut() {
+        return out;
+    }
+
+    public InputStream getIn() {
+        return in;
+    }
+
+    public TcpDownloader() {
+    }
+
+    public TcpDownloader(OutputStream out, InputStream in) {
+        this.out = out;
+        this.in = in;
+    }
+
+    public void downloadFile(String fileName, InetAddress clientAddress, TransferOptions options) throws IOException {
+        if (options.singleFlight()) {
+            downloadSingleFlight(fileName, clientAddress, options);
+            return;
+        }
+        boolean cont = options.cont();
+        var currentRequest = new DownloadRequest(clientAddress, fileName);
+        var dos = new DataOutputStream(out);
+        var dis = new DataInputStream(in);
+        try (var file = FileChannel.open(Paths.get(fileName))) {
+            if (!cont || !currentRequest.equals(lastDownloadRequest) || lastDownloadRequest.isSuccessful()) {
+                if(cont) {
+                    dos.write("Невозможно продолжить, нет подходящих данных сессии\n".getBytes(StandardCharsets.UTF_8));
+                    return;
+                }
+                lastDownloadRequest = currentRequest;
+                logger.debug("{} Accept", Status.SUCCESS);
+                accept();
+            } else {
+                accept();
+                currentRequest.addProgress(Long.reverseBytes(dis.readLong()));
+                logger.debug("Continue");
+                if (currentRequest.getProgress() > file.size()) {
+                    currentRequest.success();
+                }
+            }
+            // Размер и позиция - long из FileChannel: файлы больше 2 ГБ передаются целиком
+            long length = file.size();
+            long position = Math.min(currentRequest.getProgress(), length);
+            long total = length - position;
+            logger.debug("Нужно передать: {} байт", total);
+            dis.read(); // Синхронизация канала
+            dos.writeLong(Long.reverseBytes(total));
+            dos.flush();
+            long startProgress = currentRequest.getProgress();
+            byte[] buffer = new byte[chunkSize()];
+            var digest = new CRC32C();
+            throughput.restartInterval();
+
+            try (TransferProgress progress = TransferEventBus.getInstance()
+                    .start(fileName, "tcp", Direction.DOWNLOAD, total + startProgress, startProgress);
+                TransferShare share = BandwidthScheduler.getInstance().open(clientAddress)) {
+                int bytesRead;
+                while (position < length && (bytesRead = file.read(ByteBuffer.wrap(buffer), position)) != -1) {
+                    position += bytesRead;
+                    share.acquire(bytesRead);
+                    digest.update(buffer, 0, bytesRead);
+                    writeChunk(dos, buffer, bytesRead);
+                    buffer = retune(buffer, bytesRead);
+                    currentRequest.addProgress(bytesRead);
+                    progress.add(bytesRead);
+                }
+                // После данных - CRC32C переданной части файла, клиент сверяет её с принятым
+                dos.writeLong(Long.reverseBytes(digest.getValue()));
+                progress.complete();
+            }
+            logger.debug("Передача завершена");
+            currentRequest.success();
+            lastDownloadRequest = currentRequest;
+
+        } catch (NoSuchFileException e) {
+            throw new FileNotFoundException(fileName);
+        } catch (IOException e){
+            logger.error("Ошибка передачи: {}", e.getMessage());
+            throw e;
+        }finally {
+            dos.flush();
+        }
+    }
+
+    /*
+     * Передача за один обмен: смещение и токен пришли в команде, в ответ сразу идут
+     * "200 ACCEPT size=<n> offset=<n> token=<t>", данные и CRC32C - без байта синхронизации.
+     */
+    private void downloadSingleFlight(String fileName, InetAddress clientAddress, TransferOptions options)
+            throws IOException {
+        Path path = Paths.get(fileName);
+        if (options.inline() > 0 && downloadInline(path, clientAddress, options, options.inline())) {
+            return;
+        }
+        try (var input = new FileInputStream(fileName)) {
+            long length = input.getChannel().size();
+            String token = TransferOptions.tokenOf(path);
+            long offset = options.resumeOffset(token, length);
+            input.getChannel().position(offset);
+            long total = length - offset;
+            writeLine(Status.SUCCESS.code() + " ACCEPT size=" + total + " offset=" + offset + " token=" + token);
+
+            var dos = new DataOutputStream(out);
+            byte[] buffer = new byte[chunkSize()];
+            var digest = new CRC32C();
+            throughput.restartInterval();
+            try (TransferProgress progress = TransferEventBus.getInstance()
+                    .start(fileName, "tcp", Direction.DOWNLOAD, length, offset);
+                 TransferShare share = BandwidthScheduler.getInstance().open(clientAddress)) {
+                long remaining = total;
+                while (remaining > 0) {
+                    int bytesRead = input.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+                    if (bytesRead == -1) {
+                        throw new IOException("Файл " + fileName + " укоротился во время передачи");
+                    }
+                    share.acquire(bytesRead);
+                    digest.update(buffer, 0, bytesRead);
+                    writeChunk(dos, buffer, bytesRead);
+                    buffer = retune(buffer, bytesRead);
+                    remaining -= bytesRead;
+                    progress.add(bytesRead);
+                }
+                dos.writeLong(Long.reverseBytes(digest.getValue()));
+                dos.flush();
+                progress.complete();
+            }
+        }
+    }
+
+    // Мелкий файл целиком одной записью в сокет: false - файл крупнее limit, передавать обычным способом
+    private boolean downloadInline(Path path, InetAddress clientAddress, TransferOptions options, int limit)
+            throws IOException {
+        var entry = SmallFileCache.getInstance().get(path, limit);
+        if (entry == null) {
+            return false;
+        }
+        long offset = options.resumeOffset(entry.token(), entry.data().length);
+        try (TransferShare share = BandwidthScheduler.getInstance().open(clientAddress)) {
+            share.acquire(entry.data().length - (int) offset);
+        }
+        out.write(SmallFileCache.inlineResponse(entry, offset));
+        out.flush();
+        return true;
+    }
+
+    private int chunkSize() {
+        return throughput.chunkSize(CHUNK_INTERVAL_NANOS, MIN_CHUNK, MAX_CHUNK);
+    }
+
+    // Новый буфер, если после замера скорости изменился размер блока
+    private byte[] retune(byte[] buffer, int transferred) {
+        if (!throughput.onDelivered(transferred)) {
+            return buffer;
+        }
+        int chunk = chunkSize();
+        return chunk == buffer.length ? buffer : new byte[chunk];
+    }
+
+    private void writeChunk(DataOutputStream dos, byte[] buffer, int length) throws IOException {
+        CompletableFuture<Void> writeFuture = CompletableFuture.runAsync(() -> {
+            try {
+                dos.write(buffer, 0, length);
+            } catch (IOException e) {
+                throw new CompletionException(e);
+            }
+        });
+        try {
+            writeFuture.get(120_000, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            writeFuture.cancel(true);
+            throw new SocketException("Таймаут записи блока данных");
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof IOException io ? io : new IOException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Запись блока данных прервана");
+        }
+    }
+
+    public void uploadFile(String fileName, InetAddress clientAddress, TransferOptions options) throws IOException {
+        if (options.singleFlight()) {
+            uploadSingleFlight(fileName, clientAddress, options);
+            return;
+        }
+        boolean cont = options.cont();
+        var currentRequest = new UploadRequest(clientAddress, fileName);
+        Path path = Paths.get(fileName).toAbsolutePath();
+        Files.createDirectories(path.getParent());
+        long existingSize = 0;
+        var dis = new DataInputStream(in);
+        var dos = new DataOutputStream(out);
+        var toStartFromZero = !currentRequest.equals(lastUploadRequest) || !cont || lastUploadRequest.isSuccessful();
+        if(toStartFromZero) {
+            if (lastUploadRequest != null && !lastUploadRequest.isSuccessful()) {
+                StagedUpload.discard(path);
+            }
+            lastUploadRequest = currentRequest;
+        } else {
+            currentRequest.addProgress(lastUploadRequest.getProgress());
+            System.out.println("Continue");
+        }
+        try (var upload = new StagedUpload(path, !toStartFromZero)) {
+            FileChannel channel = upload.channel();
+
+            accept();
+            dis.read();
+            long currentSize = upload.size();
+            if(cont) {
+                dos.writeLong(Long.reverseBytes(currentSize));
+                dos.flush();
+            }
+            long extraSize = Long.reverseBytes(dis.readLong());
+
+            try (TransferProgress progress = TransferEventBus.getInstance()
+                    .start(fileName, "tcp", Direction.UPLOAD, extraSize, existingSize);
+                 TransferShare share = BandwidthScheduler.getInstance().open(clientAddress)) {
+
+                var digest = new CRC32C();
+                if (existingSize < extraSize) {
+                    transferFileWithProgress(channel, extraSize, existingSize, progress, share, digest);
+                }
+                long expected = Long.reverseBytes(dis.readLong());
+                if (expected != digest.getValue()) {
+                    upload.discard();
+                    throw new ChecksumMismatchException(fileName, expected, digest.getValue());
+                }
+                upload.commit();
+                progress.complete();
+                currentRequest.success();
+                lastUploadRequest = currentRequest;
+
+            }
+            logger.debug(
+                    "Файл {} скачан)",
+                    path
+            );
+        }
+    }
+
+    @Override
+    public void downloadDirectory(String dirName, InetAddress clientAddress) throws IOException {
+        Path root = Paths.get(dirName);
+        if (!Files.isDirectory(root)) {
+            throw new FileNotFoundException(dirName);
+        }
+        var files = ArchiveWriter.listFiles(root);
+        long total = ArchiveWriter.totalSize(files);
+        var dos = new DataOutputStream(new BufferedOutputStream(out, 64 * 1024));
+        accept();
+        in.read(); // Синхронизация канала
+        dos.writeLong(Long.reverseBytes(total));
+        try (TransferProgress progress = TransferEventBus.getInstance()
+                .start(dirName, "tcp", Direction.DOWNLOAD, total, 0);
+             TransferShare share = BandwidthScheduler.getInstance().open(clientAddress)) {
+            new ArchiveWriter(dos, share, progress).writeTree(root, files);
+            progress.complete();
+        }
+        logger.debug("Каталог {} передан: {} файлов", dirName, files.size());
+    }
+
+    @Override
+    public void uploadDirectory(String dirName, InetAddress clientAddress) throws IOException {
+        Path root = Paths.get(dirName).toAbsolutePath();
+        Files.createDirectories(root);
+        // Без буферизации: после архива в том же потоке идут команды, их нельзя вычитать заранее
+        var dis = new DataInputStream(in);
+        accept();
+        dis.read();
+        long total = Long.reverseBytes(dis.readLong());
+        try (TransferProgress progress = TransferEventBus.getInstance()
+                .start(dirName, "tcp", Direction.UPLOAD, total, 0);
+             TransferShare share = BandwidthScheduler.getInstance().open(clientAddress)) {
+            int files = new ArchiveReader(dis, share, progress).readTree(root);
+            progress.complete();
+            logger.debug("Каталог {} принят: {} файлов", root, files);
+        }
+    }
+
+    /*
+     * Данные, size=<n> байт начиная с offset, и CRC32C идут сразу за командой.
+     * Если продолжить с offset нельзя, данные пропускаются и клиент получает "400 RESUME offset=<n>".
+     * По окончании - "200 STORED size=<n>".
+     */
+    private void uploadSingleFlight(String fileName, InetAddress clientAddress, TransferOptions options)
+            throws IOException {
+        if (options.size() < 0) {
+            throw new IOException("Не указан размер загружаемого файла (size=)");
+        }
+        if (options.parallel()) {
+            uploadRange(fileName, clientAddress, options);
+            return;
+        }
+        Path path = Paths.get(fileName).toAbsolutePath();
+        Files.createDirectories(path.getParent());
+        var dis = new DataInputStream(in);
+        long offset = options.offset();
+        Path staging = StagedUpload.stagingPath(path);
+        long existing = Files.exists(staging) ? Files.size(staging) : 0;
+        if (offset > existing || offset > options.size()) {
+            discardUpload(options);
+            writeLine(Status.ERROR.code() + " RESUME offset=" + existing);
+            return;
+        }
+        try (var upload = new StagedUpload(path, offset > 0)) {
+            upload.channel().truncate(offset);
+            try (TransferProgress progress = TransferEventBus.getInstance()
+                    .start(fileName, "tcp", Direction.UPLOAD, options.size(), offset);
+                 TransferShare share = BandwidthScheduler.getInstance().open(clientAddress)) {
+                var digest = new CRC32C();
+                transferFileWithProgress(upload.channel(), options.size(), offset, progress, share, digest);
+                long expected = Long.reverseBytes(dis.readLong());
+                if (expected != digest.getValue()) {
+                    upload.discard();
+                    throw new ChecksumMismatchException(fileName, expected, digest.getValue());
+                }
+                upload.commit();
+                progress.complete();
+            }
+        }
+        writeLine(Status.SUCCESS.code() + " STORED size=" + options.size());
+    }
+
+    /*
+     * Один диапазон параллельной загрузки: length=<n> байт с offset и CRC32C диапазона.
+     * Ответ "200 RANGE done=<k>/<n> missing=<блоки>", а соединению с последним блоком - "200 STORED size=<n>".
+     * Невыровненный по блокам диапазон пропускается с ответом "400 RANGE missing=<блоки>".
+     */
+    private void uploadRange(String fileName, InetAddress clientAddress, TransferOptions options)
+            throws IOException {
+        Path path = Paths.get(fileName).toAbsolutePath();
+        Files.createDirectories(path.getParent());
+        long start = options.offset();
+        long length = options.payloadLength();
+        try (var upload = ParallelUpload.open(path, options.size(), options.block())) {
+            if (!upload.isAligned(start, length)) {
+                discardUpload(options);
+                writeLine(Status.ERROR.code() + " RANGE missing=" + upload.missing());
+                return;
+            }
+            try (TransferProgress progress = TransferEventBus.getInstance()
+                    .start(fileName, "tcp", Direction.UPLOAD, start + length, start);
+                 TransferShare share = BandwidthScheduler.getInstance().open(clientAddress)) {
+                var digest = new CRC32C();
+                transferFileWithProgress(upload.channel(), start + length, start, progress, share, digest);
+                long expected = Long.reverseBytes(new DataInputStream(in).readLong());
+                if (expected != digest.getValue()) {
+                    // Блоки диапазона остаются неотмеченными, клиент пошлёт их заново
+                    throw new ChecksumMismatchException(fileName, expected, digest.getValue());
+                }
+                upload.complete(start, length);
+                progress.complete();
+            }
+            if (upload.commitIfComplete()) {
+                writeLine(Status.SUCCESS.code() + " STORED size=" + options.size());
+            } else {
+                writeLine(Status.SUCCESS.code() + " RANGE done=" + upload.doneBlocks() + "/" + upload.blocks()
+                        + " missing=" + upload.missing());
+            }
+        }
+    }
+
+    @Override
+    public void discardUpload(TransferOptions options) throws IOException {
+        if (options.singleFlight() && options.size() >= 0) {
+            new DataInputStream(in).skipNBytes(options.payloadLength() + Long.BYTES);
+        }
+    }
+
+    private void writeLine(String line) throws IOException {
+        out.write((line + "\n").getBytes(StandardCharsets.UTF_8));
+        out.flush();
+    }
+
+    private void accept() throws IOException {
+        out.write((Status.SUCCESS.code() + " ACCEPT\n").getBytes(StandardCharsets.UTF_8));
+        out.flush();
+    }
+
+    private void transferFileWithProgress(
+            FileChannel channel,
+            long fileSize,
+            long offset,
+            TransferProgress progress,
+            TransferShare share,
+            CRC32C digest
+    ) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(chunkSize());
+        long transferred = offset;
+        throughput.restartInterval();
+
+        while (transferred < fileSize) {
+            int read = in.read(buffer.array(), 0, (int) Math.min(buffer.capacity(), fileSize - transferred));
+            if (read == -1) break;
+            share.acquire(read);
+            digest.update(buffer.array(), 0, read);
+
+            buffer.limit(read);
+            channel.write(buffer, transferred);
+            buffer.clear();
+            transferred += read;
+            if (throughput.onDelivered(read) && chunkSize() != buffer.capacity()) {
+                buffer = ByteBuffer.allocate(chunkSize());
+            }
+
+            progress.add(read);
+        }
+    }
+}
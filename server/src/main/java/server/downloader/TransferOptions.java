@@ -0,0 +1,100 @@
+package server.downloader;
+
+import server.admission.TransferPriority;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+
+/*
+ * Параметры передачи из строки команды.
+ * Старый вид: download <файл> <локальное имя> [continue] - согласование в несколько обменов.
+ * Новый вид, за один обмен: download <файл> <имя> offset=<n> [token=<t>],
+ *                            upload <имя> <файл> size=<n> [offset=<n>] - данные идут сразу за командой.
+ * inline=<n> в download: файл не больше n байт клиент готов принять целиком в одном ответе INLINE.
+ * priority=high|normal|low и deadline=<мс> - очерёдность и срок ожидания допуска, вид обмена не меняют.
+ * block=<n> в upload: параллельная загрузка, команда несёт только диапазон [offset, offset + length)
+ * из файла size=<n>, разбитого на блоки по n байт (см. ParallelUpload). length=0 - запрос состояния.
+ */
+public record TransferOptions(boolean cont, boolean singleFlight, long offset, long size, String token, int inline,
+                              TransferPriority priority, long deadline, long length, long block) {
+    public static final TransferOptions DEFAULT =
+            new TransferOptions(false, false, 0, -1, null, 0, TransferPriority.NORMAL, 0, -1, 0);
+
+    public static TransferOptions parse(String[] args, int from) {
+        boolean cont = false;
+        boolean singleFlight = false;
+        long offset = 0;
+        long size = -1;
+        String token = null;
+        int inline = 0;
+        TransferPriority priority = TransferPriority.NORMAL;
+        long deadline = 0;
+        long length = -1;
+        long block = 0;
+        for (int i = from; i < args.length; i++) {
+            String arg = args[i];
+            int separator = arg.indexOf('=');
+            if (separator < 0) {
+                cont |= arg.equalsIgnoreCase("continue");
+                continue;
+            }
+            String value = arg.substring(separator + 1);
+            try {
+                switch (arg.substring(0, separator).toLowerCase()) {
+                    case "offset" -> offset = Math.max(Long.parseLong(value), 0);
+                    case "size" -> size = Long.parseLong(value);
+                    case "token" -> token = value;
+                    case "inline" -> inline = Math.max(Integer.parseInt(value), 0);
+                    case "length" -> length = Math.max(Long.parseLong(value), 0);
+                    case "block" -> block = Math.max(Long.parseLong(value), 0);
+                    case "priority" -> {
+                        priority = TransferPriority.parse(value);
+                        continue;
+                    }
+                    case "deadline" -> {
+                        deadline = Long.parseLong(value);
+                        continue;
+                    }
+                    default -> {
+                        continue;
+                    }
+                }
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Некорректное значение " + arg);
+            }
+            singleFlight = true;
+        }
+        return new TransferOptions(cont, singleFlight, offset, size, token, inline, priority, deadline, length, block);
+    }
+
+    public boolean parallel() {
+        return block > 0;
+    }
+
+    // Сколько байт данных идёт за командой: диапазон параллельной загрузки или остаток файла с offset
+    public long payloadLength() {
+        if (parallel() && length >= 0) {
+            return length;
+        }
+        return Math.max(size - offset, 0);
+    }
+
+    // Токен версии файла: продолжение допустимо, только если файл с тех пор не менялся
+    public static String tokenOf(Path path) throws IOException {
+        return tokenOf(Files.readAttributes(path, BasicFileAttributes.class));
+    }
+
+    public static String tokenOf(BasicFileAttributes attributes) {
+        return Long.toHexString(attributes.lastModifiedTime().toMillis()) + "-" + Long.toHexString(attributes.size());
+    }
+
+    // Смещение, с которого реально начнётся передача файла длиной length с текущим токеном
+    public long resumeOffset(String currentToken, long length) {
+        if (offset > length || (token != null && !token.equals(currentToken))) {
+            return 0;
+        }
+        return offset;
+    }
+}
@@ -0,0 +1,383 @@
+package server.downloader;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import server.bandwidth.BandwidthScheduler;
+import server.bandwidth.TransferShare;
+import server.progress.Direction;
+import server.progress.TransferEventBus;
+import server.progress.TransferProgress;
+import server.socket.Message;
+import server.socket.ReliableUdpInputStream;
+import server.socket.ReliableUdpOutputStream;
+import server.socket.ReliableUdpSocket;
+import server.status.Status;
+
+import java.io.*;
+import java.net.InetAddress;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.zip.CRC32C;
+
+public class UdpDownloader implements Downloader {
+    private static final Logger logger = LoggerFactory.getLogger(UdpDownloader.class);
+    private static final int INLINE_HEADER_RESERVE = 128;
+    private DownloadRequest lastDownloadRequest = null;
+    private UploadRequest lastUploadRequest = null;
+    private final ReliableUdpSocket socket;
+    private final int bufferSize;
+    private final int port;
+    private final int sendTimeout;
+
+    public UdpDownloader(ReliableUdpSocket socket, int port, int bufferSize, int sendTimeout) {
+        this.socket = socket;
+        this.port = port;
+        this.bufferSize = bufferSize;
+        this.sendTimeout = sendTimeout;
+    }
+
+    @Override
+    public void downloadFile(String fileName, InetAddress clientAddress, TransferOptions options) throws IOException {
+        if (options.singleFlight()) {
+            downloadSingleFlight(fileName, clientAddress, options);
+            return;
+        }
+        boolean cont = options.cont();
+        var currentRequest = new DownloadRequest(clientAddress, fileName);
+        try (var file = FileChannel.open(Paths.get(fileName))) {
+            if (!cont || !currentRequest.equals(lastDownloadRequest) || lastDownloadRequest.isSuccessful()) {
+                if (cont) {
+                    socket.send("Невозможно продолжить, нет подходящих данных сессии", clientAddress, port);
+                    return;
+                }
+                lastDownloadRequest = currentRequest;
+                logger.debug("{} Accept", Status.SUCCESS);
+                accept(clientAddress);
+            } else {
+                accept(clientAddress);
+                currentRequest.addProgress(readLong());
+                logger.debug("Continue");
+                if (currentRequest.getProgress() > file.size()) {
+                    currentRequest.success();
+                }
+            }
+            // Размер и позиция - long из FileChannel: файлы больше 2 ГБ передаются целиком
+            long length = file.size();
+            long position = Math.min(currentRequest.getProgress(), length);
+            long total = length - position;
+            logger.debug("Нужно передать: {} байт", total);
+            logger.trace("Принял {}", socket.receive().text()); // Синхронизация канала
+            writeLong(total, clientAddress);
+            long startProgress = currentRequest.getProgress();
+            byte[] buffer = new byte[bufferSize];
+            var digest = new CRC32C();
+
+            try (TransferProgress progress = TransferEventBus.getInstance()
+                    .start(fileName, "udp", Direction.DOWNLOAD, total + startProgress, startProgress);
+                 TransferShare share = BandwidthScheduler.getInstance().open(clientAddress)) {
+                int bytesRead;
+                while (position < length && (bytesRead = file.read(ByteBuffer.wrap(buffer), position)) != -1) {
+                    position += bytesRead;
+                    share.acquire(bytesRead);
+                    digest.update(buffer, 0, bytesRead);
+                    socket.send(Arrays.copyOf(buffer, bytesRead), clientAddress, port, sendTimeout);
+                    currentRequest.addProgress(bytesRead);
+                    progress.add(bytesRead);
+                }
+                // После данных - CRC32C переданной части файла, клиент сверяет её с принятым
+                writeLong(digest.getValue(), clientAddress);
+                progress.complete();
+            }
+            logger.debug("Передача завершена");
+            currentRequest.success();
+            lastDownloadRequest = currentRequest;
+
+        } catch (NoSuchFileException e) {
+            throw new FileNotFoundException(fileName);
+        } catch (IOException e) {
+            logger.error("Ошибка передачи: {}", e.getMessage());
+            throw e;
+        }
+    }
+
+    public void uploadFile(String fileName, InetAddress clientAddress, TransferOptions options) throws IOException {
+        if (options.singleFlight()) {
+            uploadSingleFlight(fileName, clientAddress, options);
+            return;
+        }
+        boolean cont = options.cont();
+        var currentRequest = new UploadRequest(clientAddress, fileName);
+        Path path = Paths.get(fileName).toAbsolutePath();
+        Files.createDirectories(path.getParent());
+        long existingSize = 0;
+        var toStartFromZero = !currentRequest.equals(lastUploadRequest) || !cont || lastUploadRequest.isSuccessful();
+        if(toStartFromZero) {
+            if (lastUploadRequest != null && !lastUploadRequest.isSuccessful()) {
+                StagedUpload.discard(path);
+            }
+            lastUploadRequest = currentRequest;
+        } else {
+            currentRequest.addProgress(lastUploadRequest.getProgress());
+            logger.debug("Continue");
+        }
+        try (var upload = new StagedUpload(path, !toStartFromZero)) {
+            FileChannel channel = upload.channel();
+
+            accept(clientAddress);
+            socket.receive();
+            long currentSize = upload.size();
+            if(cont) {
+                writeLong(currentSize, clientAddress);
+            }
+            long extraSize = readLong();
+
+            try (TransferProgress progress = TransferEventBus.getInstance()
+                    .start(fileName, "udp", Direction.UPLOAD, extraSize, existingSize);
+                 TransferShare share = BandwidthScheduler.getInstance().open(clientAddress)) {
+
+                var digest = new CRC32C();
+                if (existingSize < extraSize) {
+                    transferFileWithProgress(channel, extraSize, existingSize, progress, share, digest);
+                }
+                long expected = readLong();
+                if (expected != digest.getValue()) {
+                    upload.discard();
+                    throw new ChecksumMismatchException(fileName, expected, digest.getValue());
+                }
+                upload.commit();
+                progress.complete();
+                currentRequest.success();
+                lastUploadRequest = currentRequest;
+
+            }
+            logger.debug(
+                    "Файл {} скачан)",
+                    path
+            );
+        }
+    }
+
+    private void transferFileWithProgress(
+            FileChannel channel,
+            long fileSize,
+            long offset,
+            TransferProgress progress,
+            TransferShare share,
+            CRC32C digest
+    ) throws IOException {
+        Message buffer;
+        long transferred = offset;
+        // Запись на диск вынесена в отдельный поток, чтобы задержки диска не задерживали подтверждения
+        try (var writer = new WriteBehindWriter(channel, offset)) {
+            while (transferred < fileSize) {
+                buffer = socket.receive(120_000);
+                share.acquire(buffer.length());
+                digest.update(buffer.data(), 0, buffer.length());
+
+                writer.write(buffer.data());
+                transferred += buffer.length();
+
+                progress.add(buffer.length());
+            }
+        }
+    }
+
+    @Override
+    public void downloadDirectory(String dirName, InetAddress clientAddress) throws IOException {
+        Path root = Paths.get(dirName);
+        if (!Files.isDirectory(root)) {
+            throw new FileNotFoundException(dirName);
+        }
+        var files = ArchiveWriter.listFiles(root);
+        long total = ArchiveWriter.totalSize(files);
+        accept(clientAddress);
+        socket.receive(); // Синхронизация канала
+        writeLong(total, clientAddress);
+        try (TransferProgress progress = TransferEventBus.getInstance()
+                .start(dirName, "udp", Direction.DOWNLOAD, total, 0);
+             TransferShare share = BandwidthScheduler.getInstance().open(clientAddress)) {
+            var output = new ReliableUdpOutputStream(socket, clientAddress, port, sendTimeout);
+            new ArchiveWriter(output, share, progress).writeTree(root, files);
+            progress.complete();
+        }
+        logger.debug("Каталог {} передан: {} файлов", dirName, files.size());
+    }
+
+    @Override
+    public void uploadDirectory(String dirName, InetAddress clientAddress) throws IOException {
+        Path root = Paths.get(dirName).toAbsolutePath();
+        Files.createDirectories(root);
+        accept(clientAddress);
+        socket.receive();
+        long total = readLong();
+        try (TransferProgress progress = TransferEventBus.getInstance()
+                .start(dirName, "udp", Direction.UPLOAD, total, 0);
+             TransferShare share = BandwidthScheduler.getInstance().open(clientAddress)) {
+            var input = new ReliableUdpInputStream(socket, 120_000);
+            int files = new ArchiveReader(input, share, progress).readTree(root);
+            progress.complete();
+            logger.debug("Каталог {} принят: {} файлов", root, files);
+        }
+    }
+
+    // Передача за один обмен, формат ответов как у TcpDownloader.downloadSingleFlight
+    private void downloadSingleFlight(String fileName, InetAddress clientAddress, TransferOptions options)
+            throws IOException {
+        Path path = Paths.get(fileName);
+        // Ответ INLINE должен уместиться в одну датаграмму вместе со строкой заголовка
+        int limit = Math.min(options.inline(), socket.getPayloadSize() - INLINE_HEADER_RESERVE);
+        if (limit > 0 && downloadInline(path, clientAddress, options, limit)) {
+            return;
+        }
+        try (var input = new FileInputStream(fileName)) {
+            long length = input.getChannel().size();
+            String token = TransferOptions.tokenOf(path);
+            long offset = options.resumeOffset(token, length);
+            input.getChannel().position(offset);
+            long total = length - offset;
+            socket.send(Status.SUCCESS.code() + " ACCEPT size=" + total + " offset=" + offset + " token=" + token,
+                    clientAddress, port);
+
+            byte[] buffer = new byte[bufferSize];
+            var digest = new CRC32C();
+            try (TransferProgress progress = TransferEventBus.getInstance()
+                    .start(fileName, "udp", Direction.DOWNLOAD, length, offset);
+                 TransferShare share = BandwidthScheduler.getInstance().open(clientAddress)) {
+                long remaining = total;
+                while (remaining > 0) {
+                    int bytesRead = input.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+                    if (bytesRead == -1) {
+                        throw new IOException("Файл " + fileName + " укоротился во время передачи");
+                    }
+                    share.acquire(bytesRead);
+                    digest.update(buffer, 0, bytesRead);
+                    socket.send(Arrays.copyOf(buffer, bytesRead), clientAddress, port, sendTimeout);
+                    remaining -= bytesRead;
+                    progress.add(bytesRead);
+                }
+                writeLong(digest.getValue(), clientAddress);
+                progress.complete();
+            }
+        }
+    }
+
+    private boolean downloadInline(Path path, InetAddress clientAddress, TransferOptions options, int limit)
+            throws IOException {
+        var entry = SmallFileCache.getInstance().get(path, limit);
+        if (entry == null) {
+            return false;
+        }
+        long offset = options.resumeOffset(entry.token(), entry.data().length);
+        try (TransferShare share = BandwidthScheduler.getInstance().open(clientAddress)) {
+            share.acquire(entry.data().length - (int) offset);
+        }
+        socket.send(SmallFileCache.inlineResponse(entry, offset), clientAddress, port, sendTimeout);
+        return true;
+    }
+
+    // Формат как у TcpDownloader.uploadSingleFlight: данные и CRC32C приходят сразу следом за командой
+    private void uploadSingleFlight(String fileName, InetAddress clientAddress, TransferOptions options)
+            throws IOException {
+        if (options.size() < 0) {
+            throw new IOException("Не указан размер загружаемого файла (size=)");
+        }
+        if (options.parallel()) {
+            uploadRange(fileName, clientAddress, options);
+            return;
+        }
+        Path path = Paths.get(fileName).toAbsolutePath();
+        Files.createDirectories(path.getParent());
+        long offset = options.offset();
+        Path staging = StagedUpload.stagingPath(path);
+        long existing = Files.exists(staging) ? Files.size(staging) : 0;
+        if (offset > existing || offset > options.size()) {
+            discardUpload(options);
+            socket.send(Status.ERROR.code() + " RESUME offset=" + existing, clientAddress, port);
+            return;
+        }
+        try (var upload = new StagedUpload(path, offset > 0)) {
+            upload.channel().truncate(offset);
+            try (TransferProgress progress = TransferEventBus.getInstance()
+                    .start(fileName, "udp", Direction.UPLOAD, options.size(), offset);
+                 TransferShare share = BandwidthScheduler.getInstance().open(clientAddress)) {
+                var digest = new CRC32C();
+                transferFileWithProgress(upload.channel(), options.size(), offset, progress, share, digest);
+                long expected = readLong();
+                if (expected != digest.getValue()) {
+                    upload.discard();
+                    throw new ChecksumMismatchException(fileName, expected, digest.getValue());
+                }
+                upload.commit();
+                progress.complete();
+            }
+        }
+        socket.send(Status.SUCCESS.code() + " STORED size=" + options.size(), clientAddress, port);
+    }
+
+    // Формат и ответы как у TcpDownloader.uploadRange
+    private void uploadRange(String fileName, InetAddress clientAddress, TransferOptions options)
+            throws IOException {
+        Path path = Paths.get(fileName).toAbsolutePath();
+        Files.createDirectories(path.getParent());
+        long start = options.offset();
+        long length = options.payloadLength();
+        try (var upload = ParallelUpload.open(path, options.size(), options.block())) {
+            if (!upload.isAligned(start, length)) {
+                discardUpload(options);
+                socket.send(Status.ERROR.code() + " RANGE missing=" + upload.missing(), clientAddress, port);
+                return;
+            }
+            try (TransferProgress progress = TransferEventBus.getInstance()
+                    .start(fileName, "udp", Direction.UPLOAD, start + length, start);
+                 TransferShare share = BandwidthScheduler.getInstance().open(clientAddress)) {
+                var digest = new CRC32C();
+                transferFileWithProgress(upload.channel(), start + length, start, progress, share, digest);
+                long expected = readLong();
+                if (expected != digest.getValue()) {
+                    throw new ChecksumMismatchException(fileName, expected, digest.getValue());
+                }
+                upload.complete(start, length);
+                progress.complete();
+            }
+            String reply = upload.commitIfComplete()
+                    ? Status.SUCCESS.code() + " STORED size=" + options.size()
+                    : Status.SUCCESS.code() + " RANGE done=" + upload.doneBlocks() + "/" + upload.blocks()
+                            + " missing=" + upload.missing();
+            socket.send(reply, clientAddress, port);
+        }
+    }
+
+    @Override
+    public void discardUpload(TransferOptions options) throws IOException {
+        if (!options.singleFlight() || options.size() < 0) {
+            return;
+        }
+        long skipped = 0;
+        while (skipped < options.payloadLength()) {
+            skipped += socket.receive(120_000).length();
+        }
+        readLong();
+    }
+
+    private void accept(InetAddress address) throws IOException {
+        socket.send(Status.SUCCESS.code() + " ACCEPT", address, port);
+    }
+
+    private long readLong() throws IOException {
+        return ByteBuffer.wrap(socket.receive().data())
+                .order(ByteOrder.BIG_ENDIAN)
+                .getLong();
+    }
+
+    private void writeLong(long value, InetAddress address) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(Long.BYTES).order(ByteOrder.BIG_ENDIAN); // 8 байт
+        buffer.putLong(value).order(ByteOrder.BIG_ENDIAN);
+        socket.send(buffer.array(), address, port);
+    }
+}
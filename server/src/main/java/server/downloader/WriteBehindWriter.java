@@ -0,0 +1,130 @@
+package server.downloader;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Отложенная запись принятых данных: поток приёма только кладёт блоки в ограниченную очередь,
+ * отдельный поток склеивает подряд идущие блоки и пишет их на диск крупными выровненными кусками.
+ * Переполненная очередь тормозит приём, и получатель сам уменьшает объявленное окно.
+ */
+public class WriteBehindWriter implements AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(WriteBehindWriter.class);
+    private static final int QUEUE_CAPACITY = Math.max(Integer.getInteger("server.upload.writeQueue", 64), 1);
+    private static final int COALESCE_BYTES = Math.max(Integer.getInteger("server.upload.coalesceBytes", 1 << 20), 4096);
+    private static final long IDLE_FLUSH_MS = 100;
+    private static final byte[] END = new byte[0];
+
+    private final FileChannel channel;
+    private final BlockingQueue<byte[]> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(COALESCE_BYTES);
+    private final Thread thread;
+    private long position;
+    private volatile IOException failure;
+    private boolean closed = false;
+
+    public WriteBehindWriter(FileChannel channel, long position) {
+        this.channel = channel;
+        this.position = position;
+        limitToBoundary();
+        this.thread = Thread.ofPlatform().daemon().name("upload-writer").start(this::run);
+    }
+
+    // data передаётся во владение писателю, вызывающий не должен его изменять
+    public void write(byte[] data) throws IOException {
+        checkFailure();
+        try {
+            while (!queue.offer(data, IDLE_FLUSH_MS, TimeUnit.MILLISECONDS)) {
+                checkFailure();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Запись прервана");
+        }
+    }
+
+    private void run() {
+        try {
+            while (true) {
+                byte[] data = queue.poll(IDLE_FLUSH_MS, TimeUnit.MILLISECONDS);
+                if (data == null) {
+                    flush();
+                    continue;
+                }
+                if (data == END) {
+                    flush();
+                    return;
+                }
+                append(data);
+            }
+        } catch (IOException e) {
+            failure = e;
+            queue.clear();
+        } catch (InterruptedException e) {
+            failure = new InterruptedIOException("Поток записи прерван");
+        }
+    }
+
+    private void append(byte[] data) throws IOException {
+        int offset = 0;
+        while (offset < data.length) {
+            int length = Math.min(buffer.remaining(), data.length - offset);
+            buffer.put(data, offset, length);
+            offset += length;
+            if (!buffer.hasRemaining()) {
+                flush();
+            }
+        }
+    }
+
+    private void flush() throws IOException {
+        if (buffer.position() == 0) {
+            return;
+        }
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+        buffer.clear();
+        limitToBoundary();
+    }
+
+    // Первая запись доводит позицию до границы COALESCE_BYTES, дальше все записи выровнены
+    private void limitToBoundary() {
+        buffer.limit(COALESCE_BYTES - (int) (position % COALESCE_BYTES));
+    }
+
+    private void checkFailure() throws IOException {
+        if (failure != null) {
+            throw new IOException("Ошибка записи на диск: " + failure.getMessage(), failure);
+        }
+    }
+
+    // Дожидается записи всех принятых данных
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            while (thread.isAlive() && !queue.offer(END, IDLE_FLUSH_MS, TimeUnit.MILLISECONDS)) {
+                logger.trace("Очередь записи заполнена, ждём");
+            }
+            thread.join();
+        } catch (InterruptedException e) {
+            thread.interrupt();
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Ожидание записи прервано");
+        }
+        checkFailure();
+    }
+}
@@ -0,0 +1,9 @@
+package server.heartbeat;
+
+public interface HeartbeatListener {
+    // Вызывается в отдельном виртуальном потоке, пока сессия не выполняет команду
+    void sendHeartbeat();
+
+    // Клиент не ответил на HEARTBEAT_LIMIT запросов - закрыть канал, чтобы разбудить поток команд
+    void expire();
+}
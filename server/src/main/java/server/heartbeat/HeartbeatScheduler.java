@@ -0,0 +1,140 @@
+package server.heartbeat;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import server.metrics.Counter;
+import server.metrics.Labels;
+import server.metrics.MetricsRegistry;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/*
+ * Heartbeat и отключение простаивающих сессий колесом таймеров.
+ * Один поток на процесс раз в тик разбирает одну ячейку колеса; в ячейке лежат сессии,
+ * чей срок выпадает на этот тик (или на тот же тик одного из следующих оборотов).
+ * Сессия, которая была активна, просто перекладывается в ячейку нового срока,
+ * поэтому тысячи простаивающих сессий стоят одной проверки раз в TIMEOUT.
+ */
+public class HeartbeatScheduler {
+    private static final Logger logger = LoggerFactory.getLogger(HeartbeatScheduler.class);
+    private static final long TICK_MS = Math.max(Long.getLong("server.heartbeat.tickMs", 500), 1);
+    private static final int WHEEL_SIZE = 512;
+    private static final HeartbeatScheduler INSTANCE = new HeartbeatScheduler(TICK_MS, WHEEL_SIZE);
+
+    private final long tickMs;
+    private final ConcurrentLinkedQueue<IdleSession>[] wheel;
+    private final long startMs = System.currentTimeMillis();
+    // Грубые часы: обновляются колесом, чтобы touch() не вызывал currentTimeMillis
+    private volatile long now = 0;
+    private volatile long currentTick = 0;
+    private final AtomicInteger sessions = new AtomicInteger();
+    private final Counter heartbeats;
+    private final Counter expired;
+    private Thread thread;
+
+    @SuppressWarnings("unchecked")
+    public HeartbeatScheduler(long tickMs, int wheelSize) {
+        this.tickMs = tickMs;
+        this.wheel = (ConcurrentLinkedQueue<IdleSession>[]) new ConcurrentLinkedQueue<?>[wheelSize];
+        for (int i = 0; i < wheelSize; i++) {
+            wheel[i] = new ConcurrentLinkedQueue<>();
+        }
+        var registry = MetricsRegistry.getInstance();
+        heartbeats = registry.counter("server_heartbeat_requests_total",
+                "Heartbeat requests sent to idle clients", Labels.EMPTY);
+        expired = registry.counter("server_heartbeat_expired_total",
+                "Sessions closed after unanswered heartbeats", Labels.EMPTY);
+        registry.gauge("server_heartbeat_sessions", "Sessions tracked by the heartbeat wheel",
+                Labels.EMPTY, sessions::get);
+    }
+
+    public static HeartbeatScheduler getInstance() {
+        return INSTANCE;
+    }
+
+    public IdleSession register(HeartbeatListener listener, long timeoutMs, int limit) {
+        var session = new IdleSession(this, listener, timeoutMs, limit);
+        sessions.incrementAndGet();
+        synchronized (this) {
+            if (thread == null) {
+                thread = Thread.ofPlatform().daemon().name("heartbeat-wheel").start(this::run);
+            }
+        }
+        schedule(session, session.lastActivity() + timeoutMs);
+        return session;
+    }
+
+    long now() {
+        return now;
+    }
+
+    private void schedule(IdleSession session, long deadlineMs) {
+        // Не раньше следующего тика: текущую ячейку колесо, возможно, уже разобрало
+        long tick = Math.max((deadlineMs + tickMs - 1) / tickMs, currentTick + 1);
+        session.deadlineTick = tick;
+        wheel[(int) (tick % wheel.length)].add(session);
+    }
+
+    private void run() {
+        var due = new ArrayDeque<IdleSession>();
+        while (true) {
+            try {
+                Thread.sleep(tickMs);
+            } catch (InterruptedException e) {
+                return;
+            }
+            now = System.currentTimeMillis() - startMs;
+            long target = now / tickMs;
+            // Если поток проспал несколько тиков, догоняем их по порядку
+            while (currentTick < target) {
+                long tick = ++currentTick;
+                var slot = wheel[(int) (tick % wheel.length)];
+                for (int i = slot.size(); i > 0; i--) {
+                    var session = slot.poll();
+                    if (session == null) {
+                        break;
+                    }
+                    due.add(session);
+                }
+                IdleSession session;
+                while ((session = due.poll()) != null) {
+                    if (session.deadlineTick > tick) {
+                        slot.add(session); // Срок на одном из следующих оборотов
+                    } else {
+                        check(session);
+                    }
+                }
+            }
+        }
+    }
+
+    private void check(IdleSession session) {
+        if (session.isClosed()) {
+            sessions.decrementAndGet();
+            return;
+        }
+        long idle = now - session.lastActivity();
+        if (session.lastActivity() >= session.pingedAt) {
+            // Heartbeat отправляется только после TIMEOUT простоя, так что равенство грубых меток - уже ответ
+            session.missed = 0;
+        }
+        if (idle < session.timeoutMs) {
+            schedule(session, session.lastActivity() + session.timeoutMs);
+        } else if (session.isBusy()) {
+            schedule(session, now + session.timeoutMs);
+        } else if (session.missed >= session.limit) {
+            logger.error("Превышен порог ожидания, отключаюсь");
+            expired.increment();
+            sessions.decrementAndGet();
+            Thread.ofVirtual().start(session::expire);
+        } else {
+            session.missed++;
+            session.pingedAt = now;
+            heartbeats.increment();
+            Thread.ofVirtual().start(session::heartbeat);
+            schedule(session, now + session.timeoutMs);
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package server.heartbeat;
+
+import java.util.concurrent.locks.ReentrantLock;
+
+/*
+ * Сессия под наблюдением HeartbeatScheduler. touch() - одна запись volatile-метки,
+ * колесо таймеров смотрит на неё только когда наступает срок сессии.
+ * Пока поток команд держит begin()/end(), запросы heartbeat не пишутся в канал
+ * посреди ответа или передачи, а сессия не считается простаивающей.
+ */
+public class IdleSession implements AutoCloseable {
+    private final HeartbeatScheduler scheduler;
+    private final HeartbeatListener listener;
+    final long timeoutMs;
+    final int limit;
+    private final ReentrantLock busy = new ReentrantLock();
+    private volatile long lastActivity;
+    private volatile boolean closed = false;
+    // Поля ниже меняет только поток колеса
+    long deadlineTick;
+    int missed = 0;
+    long pingedAt = -1;
+
+    IdleSession(HeartbeatScheduler scheduler, HeartbeatListener listener, long timeoutMs, int limit) {
+        this.scheduler = scheduler;
+        this.listener = listener;
+        this.timeoutMs = timeoutMs;
+        this.limit = limit;
+        this.lastActivity = scheduler.now();
+    }
+
+    public void touch() {
+        lastActivity = scheduler.now();
+    }
+
+    public void begin() {
+        busy.lock();
+    }
+
+    public void end() {
+        touch();
+        busy.unlock();
+    }
+
+    long lastActivity() {
+        return lastActivity;
+    }
+
+    boolean isBusy() {
+        return busy.isLocked();
+    }
+
+    boolean isClosed() {
+        return closed;
+    }
+
+    void heartbeat() {
+        // Команда могла начаться после решения колеса - тогда запрос не нужен
+        if (!busy.tryLock()) {
+            return;
+        }
+        try {
+            if (!closed) {
+                listener.sendHeartbeat();
+            }
+        } finally {
+            busy.unlock();
+        }
+    }
+
+    void expire() {
+        closed = true;
+        listener.expire();
+    }
+
+    @Override
+    public void close() {
+        closed = true; // Из колеса сессия уберётся сама, когда наступит её срок
+    }
+}
@@ -0,0 +1,16 @@
+package server.jfr;
+
+import jdk.jfr.*;
+
+@Name("server.CommandExecution")
+@Label("Command Execution")
+@Category({"File Server", "Commands"})
+@Threshold("1 ms")
+@StackTrace(false)
+public class CommandExecutionEvent extends Event {
+    @Label("Command")
+    public String command;
+
+    @Label("Client")
+    public String client;
+}
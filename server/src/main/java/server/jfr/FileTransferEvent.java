@@ -0,0 +1,29 @@
+package server.jfr;
+
+import jdk.jfr.*;
+
+@Name("server.FileTransfer")
+@Label("File Transfer")
+@Category({"File Server", "Transfers"})
+@StackTrace(false)
+public class FileTransferEvent extends Event {
+    @Label("File")
+    public String fileName;
+
+    @Label("Transport")
+    public String transport;
+
+    @Label("Direction")
+    public String direction;
+
+    @Label("Transferred")
+    @DataAmount
+    public long transferred;
+
+    @Label("Total")
+    @DataAmount
+    public long total;
+
+    @Label("Completed")
+    public boolean completed;
+}
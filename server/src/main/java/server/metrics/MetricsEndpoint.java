@@ -0,0 +1,76 @@
+package server.metrics;
+
+import com.sun.net.httpserver.HttpServer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+
+/*
+ * HTTP endpoint /metrics в текстовом формате Prometheus. Дочерний процесс отдаёт свои метрики
+ * на свободном порту и публикует его, слушатель отдаёт свои вместе с метриками всех живых процессов.
+ */
+public class MetricsEndpoint implements AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(MetricsEndpoint.class);
+    public static final String PORT_PROPERTY = "server.metrics.port";
+
+    private final HttpServer server;
+    private final boolean worker;
+
+    public MetricsEndpoint(int port, boolean worker) throws IOException {
+        this.worker = worker;
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        server.createContext("/metrics", exchange -> {
+            try (exchange) {
+                if (!"GET".equals(exchange.getRequestMethod())) {
+                    exchange.sendResponseHeaders(405, -1);
+                    return;
+                }
+                exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+                exchange.sendResponseHeaders(200, 0);
+                var writer = new PrintWriter(new OutputStreamWriter(exchange.getResponseBody(), StandardCharsets.UTF_8));
+                if (worker) {
+                    MetricsRegistry.getInstance().writePrometheus(writer);
+                } else {
+                    WorkerMetrics.writeAggregated(MetricsRegistry.getInstance(), writer);
+                }
+            }
+        });
+        server.start();
+        if (worker) {
+            WorkerMetrics.publish(server.getAddress().getPort());
+        }
+        logger.info("Метрики доступны на http://{}/metrics", server.getAddress());
+    }
+
+    // Поднимает endpoint, если задан порт в server.metrics.port
+    public static MetricsEndpoint startIfConfigured(boolean worker) {
+        Integer port = Integer.getInteger(PORT_PROPERTY);
+        if (port == null || port < 0) {
+            return null;
+        }
+        try {
+            return new MetricsEndpoint(port, worker);
+        } catch (IOException e) {
+            logger.error("Не удалось запустить endpoint метрик на порту {}: {}", port, e.getMessage());
+            return null;
+        }
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    @Override
+    public void close() {
+        if (worker) {
+            WorkerMetrics.unpublish();
+        }
+        server.stop(0);
+    }
+}
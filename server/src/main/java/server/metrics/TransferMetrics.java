@@ -0,0 +1,33 @@
+package server.metrics;
+
+public class TransferMetrics {
+    private final Counter bytes;
+    private final Counter transfers;
+    private final Histogram throughput;
+
+    private TransferMetrics(String transport, String direction) {
+        var registry = MetricsRegistry.getInstance();
+        var labels = Labels.of("transport", transport, "direction", direction);
+        this.bytes = registry.counter("server_transfer_bytes_total",
+                "Bytes moved by file transfers", labels);
+        this.transfers = registry.counter("server_transfers_total",
+                "Completed file transfers", labels);
+        this.throughput = registry.histogram("server_transfer_throughput_bytes_per_second",
+                "Average throughput of completed transfers", labels, Histogram.THROUGHPUT_BUCKETS);
+    }
+
+    public static TransferMetrics of(String transport, String direction) {
+        return new TransferMetrics(transport, direction);
+    }
+
+    public void addBytes(long count) {
+        bytes.add(count);
+    }
+
+    public void completed(long transferred, long elapsedNanos) {
+        transfers.increment();
+        if (elapsedNanos > 0) {
+            throughput.observe(transferred * 1_000_000_000d / elapsedNanos);
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package server.metrics;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import server.runtime.RuntimeDirectory;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Stream;
+
+/*
+ * Метрики дочерних процессов в /metrics слушателя. Процесс записывает порт своего endpoint
+ * в metrics/<pid>.port общего каталога сервера. Слушатель при каждом запросе опрашивает живые процессы
+ * и добавляет их серии с меткой worker="<pid>"; серии одного семейства идут подряд под одними HELP и TYPE,
+ * как требует текстовый формат Prometheus.
+ */
+final class WorkerMetrics {
+    private static final Logger logger = LoggerFactory.getLogger(WorkerMetrics.class);
+    private static final Duration TIMEOUT = Duration.ofSeconds(2);
+    private static final HttpClient client = HttpClient.newBuilder().connectTimeout(TIMEOUT).build();
+
+    private record Family(List<String> header, List<String> samples) {
+    }
+
+    private WorkerMetrics() {
+    }
+
+    private static Path directory() {
+        return RuntimeDirectory.get().resolve("metrics");
+    }
+
+    private static Path portFile(long pid) {
+        return directory().resolve(pid + ".port");
+    }
+
+    static void publish(int port) {
+        try {
+            Files.createDirectories(directory());
+            Files.writeString(portFile(ProcessHandle.current().pid()), Integer.toString(port));
+        } catch (IOException e) {
+            logger.warn("Не удалось опубликовать порт метрик: {}", e.getMessage());
+        }
+    }
+
+    static void unpublish() {
+        try {
+            Files.deleteIfExists(portFile(ProcessHandle.current().pid()));
+        } catch (IOException e) {
+            logger.debug("Не удалось удалить файл порта метрик: {}", e.getMessage());
+        }
+    }
+
+    static void writeAggregated(MetricsRegistry registry, PrintWriter writer) {
+        Map<String, Family> families = new LinkedHashMap<>();
+        var own = new StringWriter();
+        registry.writePrometheus(new PrintWriter(own));
+        merge(families, own.toString(), null);
+        Map<Long, CompletableFuture<String>> scrapes = new LinkedHashMap<>();
+        workers().forEach((pid, port) -> scrapes.put(pid, scrape(port)));
+        scrapes.forEach((pid, scrape) -> {
+            try {
+                merge(families, scrape.join(), Long.toString(pid));
+            } catch (RuntimeException e) {
+                // Процесс мог завершиться между чтением каталога и запросом
+                logger.debug("Метрики процесса {} недоступны: {}", pid, e.getMessage());
+            }
+        });
+        families.values().forEach(family -> {
+            family.header().forEach(line -> writer.print(line + "\n"));
+            family.samples().forEach(line -> writer.print(line + "\n"));
+        });
+        writer.flush();
+    }
+
+    // Порты живых процессов; файлы завершившихся удаляются
+    private static Map<Long, Integer> workers() {
+        Map<Long, Integer> workers = new LinkedHashMap<>();
+        if (!Files.isDirectory(directory())) {
+            return workers;
+        }
+        try (Stream<Path> files = Files.list(directory())) {
+            for (Path file : files.filter(path -> path.toString().endsWith(".port")).toList()) {
+                String name = file.getFileName().toString();
+                long pid = Long.parseLong(name.substring(0, name.length() - ".port".length()));
+                if (pid == ProcessHandle.current().pid()) {
+                    continue;
+                }
+                if (ProcessHandle.of(pid).map(ProcessHandle::isAlive).orElse(false)) {
+                    workers.put(pid, Integer.parseInt(Files.readString(file).trim()));
+                } else {
+                    Files.deleteIfExists(file);
+                }
+            }
+        } catch (IOException | NumberFormatException e) {
+            logger.warn("Не удалось прочитать порты метрик процессов: {}", e.getMessage());
+        }
+        return workers;
+    }
+
+    private static CompletableFuture<String> scrape(int port) {
+        var request = HttpRequest.newBuilder(URI.create("http://127.0.0.1:" + port + "/metrics"))
+                .timeout(TIMEOUT).GET().build();
+        return client.sendAsync(request, HttpResponse.BodyHandlers.ofString(StandardCharsets.UTF_8))
+                .thenApply(HttpResponse::body);
+    }
+
+    private static void merge(Map<String, Family> families, String text, String worker) {
+        Family current = null;
+        for (String line : text.split("\n")) {
+            if (line.startsWith("# HELP ") || line.startsWith("# TYPE ")) {
+                String name = line.split(" ", 4)[2];
+                current = families.computeIfAbsent(name, _ -> new Family(new ArrayList<>(), new ArrayList<>()));
+                String kind = line.substring(0, 7);
+                if (current.header().stream().noneMatch(existing -> existing.startsWith(kind))) {
+                    current.header().add(line);
+                }
+            } else if (!line.isBlank() && !line.startsWith("#") && current != null) {
+                current.samples().add(worker == null ? line : withWorker(line, worker));
+            }
+        }
+    }
+
+    private static String withWorker(String sample, String worker) {
+        int end = 0;
+        while (end < sample.length() && sample.charAt(end) != '{' && sample.charAt(end) != ' ') {
+            end++;
+        }
+        String label = "worker=\"" + worker + "\"";
+        if (end < sample.length() && sample.charAt(end) == '{') {
+            return sample.substring(0, end + 1) + label + "," + sample.substring(end + 1);
+        }
+        return sample.substring(0, end) + "{" + label + "}" + sample.substring(end);
+    }
+}
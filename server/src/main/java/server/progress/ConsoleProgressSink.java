@@ -0,0 +1,37 @@
+package server.progress;
+
+import me.tongfei.progressbar.ProgressBar;
+
+import java.util.HashMap;
+import java.util.Map;
+
+// Все вызовы приходят из потока шины, поэтому синхронизация не нужна
+public class ConsoleProgressSink implements TransferSink {
+    private final Map<Long, ProgressBar> bars = new HashMap<>();
+
+    @Override
+    public void onEvent(TransferEvent event) {
+        switch (event.type()) {
+            case STARTED -> {
+                String task = (event.direction() == Direction.DOWNLOAD ? "Передача " : "Скачивание ")
+                        + event.fileName();
+                var bar = new ProgressBar(task, event.total());
+                bar.stepTo(event.transferred());
+                bars.put(event.transferId(), bar);
+            }
+            case PROGRESS -> {
+                var bar = bars.get(event.transferId());
+                if (bar != null) {
+                    bar.stepTo(event.transferred());
+                }
+            }
+            case COMPLETED, FAILED -> {
+                var bar = bars.remove(event.transferId());
+                if (bar != null) {
+                    bar.stepTo(event.transferred());
+                    bar.close();
+                }
+            }
+        }
+    }
+}
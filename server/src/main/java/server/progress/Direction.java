@@ -0,0 +1,10 @@
+package server.progress;
+
+public enum Direction {
+    DOWNLOAD,
+    UPLOAD;
+
+    public String label() {
+        return name().toLowerCase();
+    }
+}
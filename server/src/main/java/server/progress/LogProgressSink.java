@@ -0,0 +1,23 @@
+package server.progress;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+public class LogProgressSink implements TransferSink {
+    private static final Logger logger = LoggerFactory.getLogger(LogProgressSink.class);
+
+    @Override
+    public void onEvent(TransferEvent event) {
+        switch (event.type()) {
+            case STARTED -> logger.info("Начата передача #{} {} ({}, {}), {} байт",
+                    event.transferId(), event.fileName(), event.transport(), event.direction().label(), event.total());
+            case PROGRESS -> logger.debug("Передача #{}: {}/{} байт, {} байт/с",
+                    event.transferId(), event.transferred(), event.total(), (long) event.bytesPerSecond());
+            case COMPLETED -> logger.info("Передача #{} {} завершена: {} байт за {} мс, {} байт/с",
+                    event.transferId(), event.fileName(), event.transferred(), event.elapsedNanos() / 1_000_000,
+                    (long) event.bytesPerSecond());
+            case FAILED -> logger.warn("Передача #{} {} прервана на {}/{} байт",
+                    event.transferId(), event.fileName(), event.transferred(), event.total());
+        }
+    }
+}
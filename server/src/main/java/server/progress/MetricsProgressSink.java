@@ -0,0 +1,29 @@
+package server.progress;
+
+import server.metrics.TransferMetrics;
+
+import java.util.HashMap;
+import java.util.Map;
+
+public class MetricsProgressSink implements TransferSink {
+    private final Map<String, TransferMetrics> metrics = new HashMap<>();
+    private final Map<Long, Long> reported = new HashMap<>();
+
+    @Override
+    public void onEvent(TransferEvent event) {
+        var transferMetrics = metrics.computeIfAbsent(event.transport() + "/" + event.direction().label(),
+                _ -> TransferMetrics.of(event.transport(), event.direction().label()));
+        long previous = event.type() == TransferEvent.Type.STARTED
+                ? event.transferred()
+                : reported.getOrDefault(event.transferId(), event.resumedFrom());
+        transferMetrics.addBytes(event.transferred() - previous);
+        switch (event.type()) {
+            case STARTED, PROGRESS -> reported.put(event.transferId(), event.transferred());
+            case COMPLETED -> {
+                reported.remove(event.transferId());
+                transferMetrics.completed(event.transferred() - event.resumedFrom(), event.elapsedNanos());
+            }
+            case FAILED -> reported.remove(event.transferId());
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package server.progress;
+
+public record TransferEvent(
+        Type type,
+        long transferId,
+        String fileName,
+        String transport,
+        Direction direction,
+        long transferred,
+        long resumedFrom,
+        long total,
+        long elapsedNanos
+) {
+    public enum Type {
+        STARTED,
+        PROGRESS,
+        COMPLETED,
+        FAILED
+    }
+
+    public double bytesPerSecond() {
+        return elapsedNanos > 0 ? (transferred - resumedFrom) * 1_000_000_000d / elapsedNanos : 0;
+    }
+}
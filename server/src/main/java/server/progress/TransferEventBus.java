@@ -0,0 +1,98 @@
+package server.progress;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+ * Шина событий передач. Циклы передачи только увеличивают счётчик,
+ * снимки раз в server.progress.intervalMs и события начала/конца
+ * раздаются подписчикам из отдельного потока.
+ */
+public class TransferEventBus {
+    private static final Logger logger = LoggerFactory.getLogger(TransferEventBus.class);
+    private static final TransferEventBus INSTANCE = new TransferEventBus(
+            Long.getLong("server.progress.intervalMs", 1000));
+
+    static {
+        for (String sink : System.getProperty("server.progress.sinks", "log,metrics").split(",")) {
+            switch (sink.trim().toLowerCase()) {
+                case "console" -> INSTANCE.subscribe(new ConsoleProgressSink());
+                case "log" -> INSTANCE.subscribe(new LogProgressSink());
+                case "metrics" -> INSTANCE.subscribe(new MetricsProgressSink());
+                case "" -> {
+                }
+                default -> logger.warn("Неизвестный получатель событий передачи: {}", sink);
+            }
+        }
+    }
+
+    private final List<TransferSink> sinks = new CopyOnWriteArrayList<>();
+    private final Map<Long, TransferProgress> active = new ConcurrentHashMap<>();
+    private final AtomicLong nextId = new AtomicLong();
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "transfer-events");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public TransferEventBus(long intervalMillis) {
+        executor.scheduleAtFixedRate(this::sample, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    public static TransferEventBus getInstance() {
+        return INSTANCE;
+    }
+
+    public void subscribe(TransferSink sink) {
+        sinks.add(sink);
+    }
+
+    public void unsubscribe(TransferSink sink) {
+        sinks.remove(sink);
+    }
+
+    public TransferProgress start(String fileName, String transport, Direction direction, long total, long initial) {
+        var progress = new TransferProgress(this, nextId.incrementAndGet(), fileName, transport,
+                direction, total, initial);
+        publish(progress.event(TransferEvent.Type.STARTED));
+        active.put(progress.id(), progress);
+        return progress;
+    }
+
+    void finish(TransferProgress progress, TransferEvent.Type type) {
+        active.remove(progress.id());
+        publish(progress.event(type));
+    }
+
+    private void sample() {
+        if (sinks.isEmpty()) {
+            return;
+        }
+        active.values().forEach(progress -> deliver(progress.event(TransferEvent.Type.PROGRESS)));
+    }
+
+    private void publish(TransferEvent event) {
+        if (!sinks.isEmpty()) {
+            executor.execute(() -> deliver(event));
+        }
+    }
+
+    private void deliver(TransferEvent event) {
+        for (TransferSink sink : sinks) {
+            try {
+                sink.onEvent(event);
+            } catch (RuntimeException e) {
+                logger.warn("Ошибка обработчика событий передачи: {}", e.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package server.progress;
+
+import server.jfr.FileTransferEvent;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+// Счётчик одной передачи: пишет только поток передачи, читает поток шины событий
+public class TransferProgress implements AutoCloseable {
+    private final TransferEventBus bus;
+    private final long id;
+    private final String fileName;
+    private final String transport;
+    private final Direction direction;
+    private final long total;
+    private final long startNanos = System.nanoTime();
+    private final long initial;
+    private final AtomicLong transferred;
+    private final FileTransferEvent jfrEvent = new FileTransferEvent();
+    private volatile boolean finished = false;
+
+    TransferProgress(TransferEventBus bus, long id, String fileName, String transport,
+                     Direction direction, long total, long initial) {
+        this.bus = bus;
+        this.id = id;
+        this.fileName = fileName;
+        this.transport = transport;
+        this.direction = direction;
+        this.total = total;
+        this.initial = initial;
+        this.transferred = new AtomicLong(initial);
+        jfrEvent.begin();
+    }
+
+    public void add(long bytes) {
+        transferred.lazySet(transferred.get() + bytes);
+    }
+
+    public long transferred() {
+        return transferred.get();
+    }
+
+    public void complete() {
+        finish(TransferEvent.Type.COMPLETED);
+    }
+
+    @Override
+    public void close() {
+        finish(TransferEvent.Type.FAILED);
+    }
+
+    private void finish(TransferEvent.Type type) {
+        if (!finished) {
+            finished = true;
+            commitJfrEvent(type == TransferEvent.Type.COMPLETED);
+            bus.finish(this, type);
+        }
+    }
+
+    private void commitJfrEvent(boolean completed) {
+        jfrEvent.end();
+        if (jfrEvent.shouldCommit()) {
+            jfrEvent.fileName = fileName;
+            jfrEvent.transport = transport;
+            jfrEvent.direction = direction.label();
+            jfrEvent.transferred = transferred.get();
+            jfrEvent.total = total;
+            jfrEvent.completed = completed;
+            jfrEvent.commit();
+        }
+    }
+
+    TransferEvent event(TransferEvent.Type type) {
+        return new TransferEvent(type, id, fileName, transport, direction,
+                transferred.get(), initial, total, System.nanoTime() - startNanos);
+    }
+
+    long id() {
+        return id;
+    }
+}
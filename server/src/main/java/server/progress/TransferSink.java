@@ -0,0 +1,5 @@
+package server.progress;
+
+public interface TransferSink {
+    void onEvent(TransferEvent event);
+}
@@ -0,0 +1,34 @@
+package server.runtime;
+
+import java.nio.file.Path;
+import java.util.Locale;
+
+/*
+ * Каталог состояния одного сервера, общий для слушателя и всех его дочерних процессов.
+ * Слушатель выбирает его по протоколу и порту и передаёт процессам в свойстве server.runtime.dir
+ * вместе с остальными server.*, поэтому два сервера на одной машине не делят лимиты.
+ */
+public final class RuntimeDirectory {
+    public static final String PROPERTY = "server.runtime.dir";
+
+    private RuntimeDirectory() {
+    }
+
+    // Вызывается слушателем до запуска первого процесса
+    public static void initListener(String protocol, int port) {
+        if (System.getProperty(PROPERTY) == null) {
+            System.setProperty(PROPERTY, temp("fileserver-" + protocol.toLowerCase(Locale.ROOT) + "-" + port)
+                    .toString());
+        }
+    }
+
+    // Процесс без слушателя (запущен вручную или внутри бенчмарка) получает каталог на себя одного
+    public static Path get() {
+        String directory = System.getProperty(PROPERTY);
+        return directory != null ? Path.of(directory) : temp("fileserver-" + ProcessHandle.current().pid());
+    }
+
+    private static Path temp(String name) {
+        return Path.of(System.getProperty("java.io.tmpdir"), name);
+    }
+}
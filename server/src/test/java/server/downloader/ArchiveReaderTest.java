@@ -0,0 +1,83 @@
+package server.downloader;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import server.bandwidth.BandwidthScheduler;
+import server.progress.Direction;
+import server.progress.TransferEventBus;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.CRC32C;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class ArchiveReaderTest {
+    private static final byte[] CONTENT = "content".getBytes(StandardCharsets.UTF_8);
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void readsTree() throws IOException {
+        Path root = dir.resolve("root");
+        assertEquals(2, read(archive("a.txt", "nested/b.txt"), root));
+        assertArrayEquals(CONTENT, Files.readAllBytes(root.resolve("a.txt")));
+        assertArrayEquals(CONTENT, Files.readAllBytes(root.resolve("nested/b.txt")));
+    }
+
+    @Test
+    void rejectsEntryOutsideRoot() throws IOException {
+        Path root = dir.resolve("root");
+        byte[] archive = archive("ok.txt", "../evil.txt");
+
+        assertThrows(IOException.class, () -> read(archive, root));
+        assertFalse(Files.exists(dir.resolve("evil.txt")));
+        // Принятые до плохой записи файлы фиксируются, недописанных .part не остаётся
+        assertArrayEquals(CONTENT, Files.readAllBytes(root.resolve("ok.txt")));
+        try (var files = Files.list(root)) {
+            assertEquals(1, files.count());
+        }
+    }
+
+    @Test
+    void rejectsEntryThatNormalizesOutsideRoot() {
+        Path root = dir.resolve("root");
+        assertThrows(IOException.class, () -> read(archive("nested/../../evil.txt"), root));
+        assertFalse(Files.exists(dir.resolve("evil.txt")));
+    }
+
+    private static int read(byte[] archive, Path root) throws IOException {
+        Files.createDirectories(root);
+        try (var share = BandwidthScheduler.getInstance().open(InetAddress.getLoopbackAddress());
+             var progress = TransferEventBus.getInstance().start("test", "tcp", Direction.UPLOAD, 0, 0)) {
+            return new ArchiveReader(new ByteArrayInputStream(archive), share, progress).readTree(root);
+        }
+    }
+
+    // Записи собираются вручную: ArchiveWriter не пишет пути вне каталога
+    private static byte[] archive(String... names) throws IOException {
+        var bytes = new ByteArrayOutputStream();
+        var out = new DataOutputStream(bytes);
+        var digest = new CRC32C();
+        digest.update(CONTENT);
+        for (String name : names) {
+            out.writeByte(ArchiveWriter.ENTRY);
+            out.writeUTF(name);
+            out.writeLong(CONTENT.length);
+            out.write(CONTENT);
+            out.writeInt((int) digest.getValue());
+        }
+        out.writeByte(ArchiveWriter.END);
+        return bytes.toByteArray();
+    }
+}
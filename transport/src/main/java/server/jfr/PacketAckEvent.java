@@ -0,0 +1,34 @@
+package server.jfr;
+
+import jdk.jfr.*;
+
+@Name("server.PacketAck")
+@Label("Packet Acknowledged")
+@Category({"File Server", "Reliable UDP"})
+@Enabled(false)
+@StackTrace(false)
+public class PacketAckEvent extends Event {
+    @Label("Local Port")
+    int localPort;
+
+    @Label("Acknowledged Sequence")
+    int ackNumber;
+
+    @Label("Released Packets")
+    int released;
+
+    @Label("Round-Trip Time")
+    @Timespan(Timespan.NANOSECONDS)
+    long rtt;
+
+    public static void emit(int localPort, int ackNumber, int released, long rttNanos) {
+        var event = new PacketAckEvent();
+        if (event.shouldCommit() && PacketSampling.sample()) {
+            event.localPort = localPort;
+            event.ackNumber = ackNumber;
+            event.released = released;
+            event.rtt = rttNanos;
+            event.commit();
+        }
+    }
+}
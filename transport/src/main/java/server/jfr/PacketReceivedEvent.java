@@ -0,0 +1,34 @@
+package server.jfr;
+
+import jdk.jfr.*;
+
+@Name("server.PacketReceived")
+@Label("Packet Received")
+@Category({"File Server", "Reliable UDP"})
+@Enabled(false)
+@StackTrace(false)
+public class PacketReceivedEvent extends Event {
+    @Label("Local Port")
+    int localPort;
+
+    @Label("Sequence Number")
+    int sequenceNumber;
+
+    @Label("Acknowledgement")
+    boolean ack;
+
+    @Label("Size")
+    @DataAmount
+    int size;
+
+    public static void emit(int localPort, int sequenceNumber, boolean ack, int size) {
+        var event = new PacketReceivedEvent();
+        if (event.shouldCommit() && PacketSampling.sample()) {
+            event.localPort = localPort;
+            event.sequenceNumber = sequenceNumber;
+            event.ack = ack;
+            event.size = size;
+            event.commit();
+        }
+    }
+}
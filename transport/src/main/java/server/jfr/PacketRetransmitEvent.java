@@ -0,0 +1,33 @@
+package server.jfr;
+
+import jdk.jfr.*;
+
+@Name("server.PacketRetransmit")
+@Label("Packet Retransmitted")
+@Category({"File Server", "Reliable UDP"})
+@StackTrace(false)
+public class PacketRetransmitEvent extends Event {
+    @Label("Local Port")
+    int localPort;
+
+    @Label("Sequence Number")
+    int sequenceNumber;
+
+    @Label("Retry")
+    int retry;
+
+    @Label("Size")
+    @DataAmount
+    int size;
+
+    public static void emit(int localPort, int sequenceNumber, int retry, int size) {
+        var event = new PacketRetransmitEvent();
+        if (event.shouldCommit()) {
+            event.localPort = localPort;
+            event.sequenceNumber = sequenceNumber;
+            event.retry = retry;
+            event.size = size;
+            event.commit();
+        }
+    }
+}
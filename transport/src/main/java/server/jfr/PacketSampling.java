@@ -0,0 +1,15 @@
+package server.jfr;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+// Пакетные события пишутся только для каждого N-го пакета (в среднем), N = server.jfr.packetSampling
+final class PacketSampling {
+    private static final int RATE = Math.max(1, Integer.getInteger("server.jfr.packetSampling", 1));
+
+    private PacketSampling() {
+    }
+
+    static boolean sample() {
+        return RATE == 1 || ThreadLocalRandom.current().nextInt(RATE) == 0;
+    }
+}
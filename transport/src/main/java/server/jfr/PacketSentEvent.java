@@ -0,0 +1,30 @@
+package server.jfr;
+
+import jdk.jfr.*;
+
+@Name("server.PacketSent")
+@Label("Packet Sent")
+@Category({"File Server", "Reliable UDP"})
+@Enabled(false)
+@StackTrace(false)
+public class PacketSentEvent extends Event {
+    @Label("Local Port")
+    int localPort;
+
+    @Label("Sequence Number")
+    int sequenceNumber;
+
+    @Label("Size")
+    @DataAmount
+    int size;
+
+    public static void emit(int localPort, int sequenceNumber, int size) {
+        var event = new PacketSentEvent();
+        if (event.shouldCommit() && PacketSampling.sample()) {
+            event.localPort = localPort;
+            event.sequenceNumber = sequenceNumber;
+            event.size = size;
+            event.commit();
+        }
+    }
+}
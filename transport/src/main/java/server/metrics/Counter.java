@@ -0,0 +1,43 @@
+package server.metrics;
+
+import java.io.PrintWriter;
+import java.util.concurrent.atomic.LongAdder;
+
+public class Counter implements Metric, CounterMXBean {
+    private final String name;
+    private final Labels labels;
+    private final LongAdder value = new LongAdder();
+
+    Counter(String name, Labels labels) {
+        this.name = name;
+        this.labels = labels;
+    }
+
+    public void increment() {
+        value.increment();
+    }
+
+    public void add(long delta) {
+        value.add(delta);
+    }
+
+    @Override
+    public long getValue() {
+        return value.sum();
+    }
+
+    @Override
+    public String name() {
+        return name;
+    }
+
+    @Override
+    public Labels labels() {
+        return labels;
+    }
+
+    @Override
+    public void writeSamples(PrintWriter writer) {
+        writer.print(name + labels.prometheus() + " " + getValue() + "\n");
+    }
+}
@@ -0,0 +1,36 @@
+package server.metrics;
+
+import java.io.PrintWriter;
+import java.util.function.LongSupplier;
+
+public class Gauge implements Metric, GaugeMXBean {
+    private final String name;
+    private final Labels labels;
+    private final LongSupplier supplier;
+
+    Gauge(String name, Labels labels, LongSupplier supplier) {
+        this.name = name;
+        this.labels = labels;
+        this.supplier = supplier;
+    }
+
+    @Override
+    public long getValue() {
+        return supplier.getAsLong();
+    }
+
+    @Override
+    public String name() {
+        return name;
+    }
+
+    @Override
+    public Labels labels() {
+        return labels;
+    }
+
+    @Override
+    public void writeSamples(PrintWriter writer) {
+        writer.print(name + labels.prometheus() + " " + getValue() + "\n");
+    }
+}
@@ -0,0 +1,5 @@
+package server.metrics;
+
+public interface GaugeMXBean {
+    long getValue();
+}
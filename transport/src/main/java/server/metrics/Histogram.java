@@ -0,0 +1,88 @@
+package server.metrics;
+
+import java.io.PrintWriter;
+import java.util.Arrays;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
+
+public class Histogram implements Metric, HistogramMXBean {
+    public static final double[] LATENCY_BUCKETS = {
+            0.0005, 0.001, 0.0025, 0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5, 5, 10, 30, 60
+    };
+    public static final double[] THROUGHPUT_BUCKETS = {
+            1e4, 1e5, 1e6, 1e7, 5e7, 1e8, 5e8, 1e9, 5e9
+    };
+
+    private final String name;
+    private final Labels labels;
+    private final double[] bounds;
+    private final LongAdder[] buckets;
+    private final LongAdder count = new LongAdder();
+    private final DoubleAdder sum = new DoubleAdder();
+
+    Histogram(String name, Labels labels, double[] bounds) {
+        this.name = name;
+        this.labels = labels;
+        this.bounds = bounds.clone();
+        this.buckets = new LongAdder[bounds.length];
+        for (int i = 0; i < buckets.length; i++) {
+            buckets[i] = new LongAdder();
+        }
+    }
+
+    public void observe(double value) {
+        int index = Arrays.binarySearch(bounds, value);
+        if (index < 0) {
+            index = -index - 1;
+        }
+        if (index < buckets.length) {
+            buckets[index].increment();
+        }
+        count.increment();
+        sum.add(value);
+    }
+
+    public void observeNanos(long nanos) {
+        observe(nanos / 1_000_000_000d);
+    }
+
+    @Override
+    public long getCount() {
+        return count.sum();
+    }
+
+    @Override
+    public double getSum() {
+        return sum.sum();
+    }
+
+    @Override
+    public double getMean() {
+        long n = getCount();
+        return n == 0 ? 0 : getSum() / n;
+    }
+
+    @Override
+    public String name() {
+        return name;
+    }
+
+    @Override
+    public Labels labels() {
+        return labels;
+    }
+
+    @Override
+    public void writeSamples(PrintWriter writer) {
+        long cumulative = 0;
+        for (int i = 0; i < bounds.length; i++) {
+            cumulative += buckets[i].sum();
+            writer.print(name + "_bucket" + labels.with("le", Double.toString(bounds[i])).prometheus()
+                    + " " + cumulative + "\n");
+        }
+        long total = getCount();
+        writer.print(name + "_bucket" + labels.with("le", "+Inf").prometheus() + " " + total + "\n");
+        writer.print(name + "_sum" + labels.prometheus() + " " + getSum() + "\n");
+        writer.print(name + "_count" + labels.prometheus() + " " + total + "\n");
+    }
+}
@@ -0,0 +1,9 @@
+package server.metrics;
+
+public interface HistogramMXBean {
+    long getCount();
+
+    double getSum();
+
+    double getMean();
+}
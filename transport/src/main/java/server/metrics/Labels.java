@@ -0,0 +1,66 @@
+package server.metrics;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+public final class Labels {
+    public static final Labels EMPTY = new Labels(List.of());
+
+    private final List<String> pairs;
+
+    private Labels(List<String> pairs) {
+        this.pairs = pairs;
+    }
+
+    public static Labels of(String... keyValues) {
+        if (keyValues.length % 2 != 0) {
+            throw new IllegalArgumentException("Labels must be key/value pairs");
+        }
+        return keyValues.length == 0 ? EMPTY : new Labels(List.of(keyValues));
+    }
+
+    public Labels with(String key, String value) {
+        var copy = new ArrayList<>(pairs);
+        copy.add(key);
+        copy.add(value);
+        return new Labels(List.copyOf(copy));
+    }
+
+    String prometheus() {
+        if (pairs.isEmpty()) {
+            return "";
+        }
+        var builder = new StringBuilder("{");
+        for (int i = 0; i < pairs.size(); i += 2) {
+            if (i > 0) {
+                builder.append(',');
+            }
+            builder.append(pairs.get(i)).append("=\"")
+                    .append(pairs.get(i + 1).replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n"))
+                    .append('"');
+        }
+        return builder.append('}').toString();
+    }
+
+    String objectNameSuffix() {
+        var builder = new StringBuilder();
+        for (int i = 0; i < pairs.size(); i += 2) {
+            builder.append(',').append(pairs.get(i)).append('=')
+                    .append(javax.management.ObjectName.quote(pairs.get(i + 1)));
+        }
+        return builder.toString();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        return pairs.equals(((Labels) o).pairs);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(pairs);
+    }
+}
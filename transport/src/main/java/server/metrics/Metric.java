@@ -0,0 +1,11 @@
+package server.metrics;
+
+import java.io.PrintWriter;
+
+public interface Metric {
+    String name();
+
+    Labels labels();
+
+    void writeSamples(PrintWriter writer);
+}
@@ -0,0 +1,87 @@
+package server.metrics;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+
+public class MetricsRegistry {
+    private static final Logger logger = LoggerFactory.getLogger(MetricsRegistry.class);
+    private static final MetricsRegistry INSTANCE = new MetricsRegistry();
+
+    private final Map<String, Family> families = new ConcurrentSkipListMap<>();
+    private final MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+
+    private record Family(String help, String type, Map<Labels, Metric> metrics) {
+    }
+
+    public static MetricsRegistry getInstance() {
+        return INSTANCE;
+    }
+
+    public Counter counter(String name, String help, Labels labels) {
+        return register(name, help, "counter", labels, l -> new Counter(name, l));
+    }
+
+    public Gauge gauge(String name, String help, Labels labels, LongSupplier supplier) {
+        return register(name, help, "gauge", labels, l -> new Gauge(name, l, supplier));
+    }
+
+    public Histogram histogram(String name, String help, Labels labels, double[] bounds) {
+        return register(name, help, "histogram", labels, l -> new Histogram(name, l, bounds));
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T extends Metric> T register(String name, String help, String type, Labels labels,
+                                          Function<Labels, T> factory) {
+        var family = families.computeIfAbsent(name, _ -> new Family(help, type, new ConcurrentHashMap<>()));
+        if (!family.type().equals(type)) {
+            throw new IllegalArgumentException("Metric " + name + " already registered as " + family.type());
+        }
+        return (T) family.metrics().computeIfAbsent(labels, l -> {
+            T metric = factory.apply(l);
+            registerMBean(metric);
+            return metric;
+        });
+    }
+
+    public void remove(Metric metric) {
+        var family = families.get(metric.name());
+        if (family != null && family.metrics().remove(metric.labels(), metric)) {
+            try {
+                mBeanServer.unregisterMBean(objectName(metric));
+            } catch (Exception e) {
+                logger.debug("Не удалось снять MBean метрики {}: {}", metric.name(), e.getMessage());
+            }
+        }
+    }
+
+    private void registerMBean(Metric metric) {
+        try {
+            mBeanServer.registerMBean(metric, objectName(metric));
+        } catch (Exception e) {
+            logger.debug("Не удалось зарегистрировать MBean метрики {}: {}", metric.name(), e.getMessage());
+        }
+    }
+
+    private static ObjectName objectName(Metric metric) throws Exception {
+        return new ObjectName("server.metrics:name=" + metric.name() + metric.labels().objectNameSuffix());
+    }
+
+    public void writePrometheus(PrintWriter writer) {
+        families.forEach((name, family) -> {
+            writer.print("# HELP " + name + " " + family.help() + "\n");
+            writer.print("# TYPE " + name + " " + family.type() + "\n");
+            family.metrics().values().forEach(metric -> metric.writeSamples(writer));
+        });
+        writer.flush();
+    }
+}
@@ -0,0 +1,88 @@
+package server.socket;
+
+import java.util.Arrays;
+
+/*
+ * Оценка произведения скорости на задержку (BDP) по ходу передачи.
+ * Скорость - максимум из последних замеров доставленных байт за интервал не короче RTT,
+ * задержка - минимальный RTT за последние 10 секунд, как в BBR.
+ */
+public class BdpEstimator {
+    private static final int RATE_SAMPLES = 8;
+    private static final long MIN_INTERVAL_NANOS = 1_000_000;
+    private static final long MIN_RTT_WINDOW_NANOS = 10_000_000_000L;
+
+    private final long[] rates = new long[RATE_SAMPLES];
+    private int nextSample = 0;
+    private long intervalStart = -1;
+    private long intervalBytes = 0;
+    private long minRttNanos = 0;
+    private long minRttStamp = 0;
+
+    public synchronized void onRtt(long rttNanos) {
+        long now = System.nanoTime();
+        if (minRttNanos == 0 || rttNanos <= minRttNanos || now - minRttStamp > MIN_RTT_WINDOW_NANOS) {
+            minRttNanos = rttNanos;
+            minRttStamp = now;
+        }
+    }
+
+    // true - появился новый замер скорости и размеры стоит пересчитать
+    public synchronized boolean onDelivered(long bytes) {
+        long now = System.nanoTime();
+        if (intervalStart < 0) {
+            intervalStart = now;
+            intervalBytes = 0;
+            return false;
+        }
+        intervalBytes += bytes;
+        long elapsed = now - intervalStart;
+        if (elapsed < Math.max(MIN_INTERVAL_NANOS, minRttNanos)) {
+            return false;
+        }
+        rates[nextSample++ % RATE_SAMPLES] = (long) (intervalBytes * 1_000_000_000d / elapsed);
+        intervalStart = now;
+        intervalBytes = 0;
+        return true;
+    }
+
+    // Новый интервал без учёта простоя между передачами
+    public synchronized void restartInterval() {
+        intervalStart = -1;
+    }
+
+    // Байт в секунду, 0 - замеров ещё нет
+    public synchronized long getRate() {
+        long max = 0;
+        for (long rate : rates) {
+            max = Math.max(max, rate);
+        }
+        return max;
+    }
+
+    public synchronized long getMinRttNanos() {
+        return minRttNanos;
+    }
+
+    public synchronized long getBdp() {
+        return (long) (getRate() * (minRttNanos / 1_000_000_000d));
+    }
+
+    // Блок, который при текущей скорости передаётся примерно за intervalNanos, степень двойки в [min, max]
+    public int chunkSize(long intervalNanos, int min, int max) {
+        long bytes = (long) (getRate() * (intervalNanos / 1_000_000_000d));
+        if (bytes <= min) {
+            return min;
+        }
+        return (int) Math.min(Long.highestOneBit(bytes), max);
+    }
+
+    public synchronized void reset() {
+        Arrays.fill(rates, 0);
+        nextSample = 0;
+        intervalStart = -1;
+        intervalBytes = 0;
+        minRttNanos = 0;
+        minRttStamp = 0;
+    }
+}
@@ -0,0 +1,110 @@
+package server.socket;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+
+class FecDecoder {
+    private final int maxGroupSize;
+    private final TreeMap<Integer, byte[]> recent = new TreeMap<>(Sequence.ORDER);
+    private final TreeMap<Integer, byte[]> parities = new TreeMap<>(Sequence.ORDER);
+    // Пока отправитель не прислал ни одного пакета чётности, полученные данные не запоминаются
+    private boolean active = false;
+
+    FecDecoder(int maxGroupSize) {
+        this.maxGroupSize = maxGroupSize;
+    }
+
+    // Запоминает пакет данных; возвращает восстановленный пакет, если он стал единственным недостающим в группе
+    synchronized ReliableUdpSocket.Packet onData(int seq, byte[] data, int expected) {
+        if (!active || Sequence.before(seq, expected - maxGroupSize) || recent.containsKey(seq)) {
+            return null;
+        }
+        recent.put(seq, data);
+        evict(expected);
+        var group = parities.floorEntry(seq);
+        if (group == null || !Sequence.before(seq, group.getKey() + groupSize(group.getValue()))) {
+            return null;
+        }
+        return tryRecover(group.getKey(), expected);
+    }
+
+    synchronized ReliableUdpSocket.Packet onParity(int start, byte[] parity, int expected) {
+        if (parity.length < FecEncoder.HEADER_SIZE) {
+            return null;
+        }
+        int size = groupSize(parity);
+        if (size < 2 || size > maxGroupSize) {
+            return null;
+        }
+        active = true;
+        if (!Sequence.after(start + size, expected)) {
+            return null;
+        }
+        parities.put(start, parity);
+        return tryRecover(start, expected);
+    }
+
+    private ReliableUdpSocket.Packet tryRecover(int start, int expected) {
+        byte[] parity = parities.get(start);
+        int size = groupSize(parity);
+        // Номера считаются от start смещением: группа может пересекать переход номеров через ноль
+        int missing = 0;
+        int missingCount = 0;
+        for (int i = 0; i < size; i++) {
+            if (!recent.containsKey(start + i)) {
+                missing = start + i;
+                if (++missingCount > 1) {
+                    return null;
+                }
+            }
+        }
+        parities.remove(start);
+        if (missingCount == 0 || Sequence.before(missing, expected)) {
+            return null;
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(parity);
+        buffer.getInt();
+        int length = buffer.getInt();
+        byte[] xor = new byte[buffer.remaining()];
+        buffer.get(xor);
+        for (int k = 0; k < size; k++) {
+            int seq = start + k;
+            if (seq == missing) {
+                continue;
+            }
+            byte[] data = recent.get(seq);
+            length ^= data.length;
+            for (int i = 0; i < data.length; i++) {
+                xor[i] ^= data[i];
+            }
+        }
+        if (length < 0 || length > xor.length) {
+            return null;
+        }
+        byte[] recovered = Arrays.copyOf(xor, length);
+        recent.put(missing, recovered);
+        return new ReliableUdpSocket.Packet(false, missing, recovered);
+    }
+
+    private void evict(int expected) {
+        recent.headMap(expected - maxGroupSize).clear();
+        for (Map.Entry<Integer, byte[]> entry = parities.firstEntry(); entry != null; entry = parities.firstEntry()) {
+            if (Sequence.after(entry.getKey() + groupSize(entry.getValue()), expected)) {
+                break;
+            }
+            parities.pollFirstEntry();
+        }
+    }
+
+    private static int groupSize(byte[] parity) {
+        return ByteBuffer.wrap(parity).getInt();
+    }
+
+    synchronized void reset() {
+        recent.clear();
+        parities.clear();
+        active = false;
+    }
+}
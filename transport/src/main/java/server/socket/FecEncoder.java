@@ -0,0 +1,78 @@
+package server.socket;
+
+import java.net.InetAddress;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+// XOR-чётность по группе из k подряд идущих пакетов данных: получатель восстанавливает одну потерю на группу
+class FecEncoder {
+    static final int HEADER_SIZE = 2 * Integer.BYTES;
+
+    private final byte[] parity;
+    private int groupStart;
+    private int count = 0;
+    private int groupSize;
+    private int maxLength = 0;
+    private int lengthXor = 0;
+    private long lastAddedNanos;
+    private InetAddress address;
+    private int port;
+
+    FecEncoder(int payloadSize) {
+        this.parity = new byte[payloadSize];
+    }
+
+    record Parity(ReliableUdpSocket.Packet packet, InetAddress address, int port) {
+    }
+
+    // Возвращает пакет чётности, если группа набрана
+    synchronized Parity add(int seq, byte[] data, InetAddress address, int port, int groupSize) {
+        if (data.length > parity.length) {
+            reset();
+            return null;
+        }
+        if (count > 0 && (seq != groupStart + count || !address.equals(this.address) || port != this.port)) {
+            reset();
+        }
+        if (count == 0) {
+            groupStart = seq;
+            this.groupSize = groupSize;
+            this.address = address;
+            this.port = port;
+        }
+        for (int i = 0; i < data.length; i++) {
+            parity[i] ^= data[i];
+        }
+        maxLength = Math.max(maxLength, data.length);
+        lengthXor ^= data.length;
+        count++;
+        lastAddedNanos = System.nanoTime();
+        return count >= this.groupSize ? build() : null;
+    }
+
+    // Неполная группа отправляется, если отправитель замолчал: иначе потеря в хвосте ждала бы повтора
+    synchronized Parity flushIfIdle(long idleNanos) {
+        if (count > 1 && System.nanoTime() - lastAddedNanos >= idleNanos) {
+            return build();
+        }
+        return null;
+    }
+
+    private Parity build() {
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + maxLength);
+        buffer.putInt(count);
+        buffer.putInt(lengthXor);
+        buffer.put(parity, 0, maxLength);
+        var result = new Parity(new ReliableUdpSocket.Packet(ReliableUdpSocket.Packet.PARITY, groupStart, buffer.array()),
+                address, port);
+        reset();
+        return result;
+    }
+
+    synchronized void reset() {
+        Arrays.fill(parity, 0, maxLength, (byte) 0);
+        count = 0;
+        maxLength = 0;
+        lengthXor = 0;
+    }
+}
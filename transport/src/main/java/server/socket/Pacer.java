@@ -0,0 +1,76 @@
+package server.socket;
+
+import java.io.InterruptedIOException;
+import java.util.concurrent.locks.LockSupport;
+
+/*
+ * Равномерная отправка дейтаграмм: окно растягивается на сглаженный RTT вместо одной пачки,
+ * чтобы не переполнять приёмный буфер ядра у получателя.
+ */
+class Pacer {
+    private static final double GAIN = 1.25;
+    // Паузы короче этого не выдерживаются: накапливаем небольшой кредит вместо лишних park
+    private static final long MIN_SLEEP_NANOS = 50_000;
+
+    private int window;
+    private final long fixedRate;
+    private long smoothedRttNanos = 0;
+    private long nextSendNanos = System.nanoTime();
+
+    // fixedRate в байтах в секунду, 0 - скорость выводится из окна и RTT
+    Pacer(int window, long fixedRate) {
+        this.window = window;
+        this.fixedRate = Math.max(fixedRate, 0);
+    }
+
+    synchronized void onRtt(long rttNanos) {
+        smoothedRttNanos = smoothedRttNanos == 0 ? rttNanos : (7 * smoothedRttNanos + rttNanos) / 8;
+    }
+
+    // Окно отправки меняется вместе с оценкой BDP, темп растягивает его на RTT
+    synchronized void setWindow(int window) {
+        this.window = window;
+    }
+
+    synchronized long getSmoothedRttNanos() {
+        return smoothedRttNanos;
+    }
+
+    // Текущая скорость в байтах в секунду для пакетов заданного размера, 0 - без ограничения
+    synchronized long getRate(int packetBytes) {
+        if (fixedRate > 0) {
+            return fixedRate;
+        }
+        if (smoothedRttNanos == 0) {
+            return 0;
+        }
+        return (long) (GAIN * window * packetBytes * 1_000_000_000d / smoothedRttNanos);
+    }
+
+    void pace(int bytes) throws InterruptedIOException {
+        long wait;
+        synchronized (this) {
+            long rate = getRate(bytes);
+            long now = System.nanoTime();
+            if (rate == 0) {
+                nextSendNanos = now;
+                return;
+            }
+            long start = Math.max(nextSendNanos, now - MIN_SLEEP_NANOS);
+            nextSendNanos = start + (long) (bytes * 1_000_000_000d / rate);
+            wait = start - now;
+        }
+        if (wait >= MIN_SLEEP_NANOS) {
+            LockSupport.parkNanos(wait);
+            if (Thread.interrupted()) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Pacing interrupted");
+            }
+        }
+    }
+
+    synchronized void reset() {
+        smoothedRttNanos = 0;
+        nextSendNanos = System.nanoTime();
+    }
+}
@@ -0,0 +1,48 @@
+package server.socket;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+// Чтение последовательности дейтаграмм ReliableUdpSocket как непрерывного потока байт
+public class ReliableUdpInputStream extends InputStream {
+    private final ReliableUdpSocket socket;
+    private final int timeout;
+    private byte[] current = new byte[0];
+    private int position = 0;
+
+    public ReliableUdpInputStream(ReliableUdpSocket socket, int timeout) {
+        this.socket = socket;
+        this.timeout = timeout;
+    }
+
+    @Override
+    public int read() throws IOException {
+        fill();
+        return current[position++] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] data, int offset, int length) throws IOException {
+        if (length == 0) {
+            return 0;
+        }
+        fill();
+        int chunk = Math.min(length, current.length - position);
+        System.arraycopy(current, position, data, offset, chunk);
+        position += chunk;
+        return chunk;
+    }
+
+    @Override
+    public int available() {
+        return current.length - position;
+    }
+
+    // Конца потока нет: не дождались данных - SocketTimeoutException
+    private void fill() throws IOException {
+        while (position == current.length) {
+            current = socket.receive(timeout).data();
+            position = 0;
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package server.socket;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.util.Arrays;
+
+// Поток поверх ReliableUdpSocket: мелкие записи копятся и уходят дейтаграммами полного размера
+public class ReliableUdpOutputStream extends OutputStream {
+    private final ReliableUdpSocket socket;
+    private final InetAddress address;
+    private final int port;
+    private final int timeout;
+    private final byte[] buffer;
+    private int count = 0;
+
+    public ReliableUdpOutputStream(ReliableUdpSocket socket, InetAddress address, int port, int timeout) {
+        this.socket = socket;
+        this.address = address;
+        this.port = port;
+        this.timeout = timeout;
+        this.buffer = new byte[socket.getPayloadSize()];
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        if (count == buffer.length) {
+            flush();
+        }
+        buffer[count++] = (byte) b;
+    }
+
+    @Override
+    public void write(byte[] data, int offset, int length) throws IOException {
+        while (length > 0) {
+            if (count == buffer.length) {
+                flush();
+            }
+            int chunk = Math.min(length, buffer.length - count);
+            System.arraycopy(data, offset, buffer, count, chunk);
+            count += chunk;
+            offset += chunk;
+            length -= chunk;
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        if (count > 0) {
+            socket.send(Arrays.copyOf(buffer, count), address, port, timeout);
+            count = 0;
+        }
+    }
+}
@@ -0,0 +1,909 @@
+package server.socket;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import server.metrics.Counter;
+import server.metrics.Histogram;
+import server.metrics.Labels;
+import server.metrics.Metric;
+import server.metrics.MetricsRegistry;
+import server.jfr.PacketAckEvent;
+import server.jfr.PacketReceivedEvent;
+import server.jfr.PacketRetransmitEvent;
+import server.jfr.PacketSentEvent;
+
+import java.io.*;
+import java.net.*;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32C;
+
+public final class ReliableUdpSocket implements AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(ReliableUdpSocket.class);
+    private static final int BASE_RETRY_TIMEOUT_MS = 1000;
+    // Начальное и минимальное окно отправки, дальше оно растёт по оценке BDP до MAX_WINDOW
+    private static final int WINDOW_SIZE = 5;
+    private static final int MAX_WINDOW = Math.max(Integer.getInteger("server.udp.maxWindow", 64), WINDOW_SIZE);
+    private static final int MAX_BUFFER_SIZE = Integer.getInteger("server.udp.maxBuffer", 16 * 1024 * 1024);
+    private static final double BDP_GAIN = 2;
+    private static final boolean FEC_ENABLED = Boolean.getBoolean("server.udp.fec");
+    private static final long FEC_FLUSH_NANOS = TimeUnit.MILLISECONDS.toNanos(20);
+    private static final int SEND_BUFFER_SIZE = Integer.getInteger("server.udp.sndbuf", 4 * 1024 * 1024);
+    private static final int RECEIVE_BUFFER_SIZE = Integer.getInteger("server.udp.rcvbuf", 4 * 1024 * 1024);
+    // Сколько дейтаграмм получатель держит в буфере упорядочивания и очереди вместе
+    private static final int RECEIVE_WINDOW = Math.max(Integer.getInteger("server.udp.receiveWindow", 64), 1);
+    // Урезанные ядром буферы одинаковы для всех сокетов процесса, предупреждаем один раз
+    private static final AtomicBoolean bufferCapReported = new AtomicBoolean();
+    private static final AtomicBoolean windowCapReported = new AtomicBoolean();
+    private static final boolean PACING_ENABLED =
+            Boolean.parseBoolean(System.getProperty("server.udp.pacing", "true"));
+
+    private final DatagramSocket socket;
+    private volatile boolean isRunning = false;
+    private ScheduledExecutorService scheduler;
+    private final Lock controlLock = new ReentrantLock();
+    private final Map<Integer, PacketInfo> pendingPackets = new ConcurrentHashMap<>();
+    private final BlockingQueue<Message> receivedQueue = new LinkedBlockingQueue<>(RECEIVE_WINDOW);
+    private final TreeMap<Integer, Message> orderedBuffer = new TreeMap<>(Sequence.ORDER);
+    private final AtomicInteger windowAvailable = new AtomicInteger(MAX_WINDOW);
+    private volatile int sendWindow = WINDOW_SIZE;
+    private int sendBufferSize;
+
+    private final Lock windowLock = new ReentrantLock();
+    private final Condition windowNotFull = windowLock.newCondition();
+
+    private int soTimeout = 0;
+    private int packetSize = 65507;
+    private final AtomicInteger nextSeqNumber = new AtomicInteger(0);
+    private final AtomicInteger lastAcked = new AtomicInteger(-1);
+    private final AtomicInteger expectedSeqNumber = new AtomicInteger(0);
+    // После перехода номеров через ноль expectedSeqNumber > 0 больше не значит "что-то уже принято"
+    private volatile boolean anyDelivered = false;
+    // Окно, объявленное удалённой стороной в последнем подтверждении
+    private volatile int peerWindow = WINDOW_SIZE;
+    private volatile int advertisedWindow = RECEIVE_WINDOW;
+    private volatile InetAddress peerAddress;
+    private volatile int peerPort;
+    // Сокет приёма подключений: до сброса состояния принимаются пакеты только первого отправителя
+    private volatile boolean exclusivePeer = false;
+    private volatile SocketAddress boundPeer;
+
+    private final List<Metric> metrics = new ArrayList<>();
+    private Counter retransmits;
+    private Histogram rtt;
+    private Counter paritySent;
+    private Counter recovered;
+    private Counter corrupted;
+
+    private final FecEncoder fecEncoder;
+    private final FecDecoder fecDecoder = new FecDecoder(WINDOW_SIZE);
+    private volatile int fecGroupSize = WINDOW_SIZE;
+    private double lossRate = 0;
+    private int lastLossReached = 0;
+    private int lastLossCount = 0;
+    // Потери на стороне получателя: сколько номеров данных он миновал и сколько из них не пришло
+    // с первой отправки. Свои считает поток приёма, счётчики отправителя приходят в подтверждениях
+    private int highestSeen = -1;
+    private volatile int lossReached = 0;
+    private volatile int lossCount = 0;
+    private volatile int peerLossReached = 0;
+    private volatile int peerLossCount = 0;
+    private final Pacer pacer = new Pacer(WINDOW_SIZE, Long.getLong("server.udp.paceRate", 0));
+    private final BdpEstimator bdp = new BdpEstimator();
+
+    // При включённой избыточности в дейтаграмме остаётся место под заголовок пакета чётности
+    public int getPayloadSize() {
+        return packetSize - Packet.headerSize() - (FEC_ENABLED ? FecEncoder.HEADER_SIZE : 0);
+    }
+
+    private static class PacketInfo {
+        final byte[] data;
+        final InetAddress address;
+        final int port;
+        final long firstSentNanos;
+        int retries;
+        long lastSentTime;
+
+        PacketInfo(byte[] data, InetAddress address, int port) {
+            this.data = data;
+            this.address = address;
+            this.port = port;
+            this.retries = 0;
+            this.lastSentTime = System.currentTimeMillis();
+            this.firstSentNanos = System.nanoTime();
+        }
+    }
+
+    record Packet(byte type, int sequenceNumber, byte[] data) {
+        static final byte DATA = 0;
+        static final byte ACK = 1;
+        static final byte PARITY = 2;
+
+        Packet(boolean isAck, int sequenceNumber, byte[] data) {
+            this(isAck ? ACK : DATA, sequenceNumber, data);
+        }
+
+        boolean isAck() {
+            return type == ACK;
+        }
+
+        boolean isParity() {
+            return type == PARITY;
+        }
+
+        // seq, тип, длина данных и CRC32C заголовка вместе с данными
+        public static int headerSize() {
+            return 3*Integer.BYTES + 1;
+        }
+    }
+
+    public ReliableUdpSocket(int port, int packetSize) throws SocketException {
+        this(port, packetSize, false);
+    }
+
+    public ReliableUdpSocket(int port, int packetSize, boolean toStart) throws SocketException {
+        this(checkPacketSize(packetSize), new DatagramSocket(port), null, toStart);
+    }
+
+    public ReliableUdpSocket(int port, boolean toStart) throws SocketException {
+        this(65507, new DatagramSocket(port), null, toStart);
+    }
+
+    // Сокет уже открыт: при любой ошибке дальнейшей настройки он закрывается, а не остаётся занятым
+    private ReliableUdpSocket(int packetSize, DatagramSocket socket, Labels labels, boolean toStart)
+            throws SocketException {
+        this.packetSize = packetSize;
+        this.socket = socket;
+        try {
+            this.fecEncoder = new FecEncoder(getPayloadSize());
+            configureBuffers();
+            registerMetrics(labels != null ? labels : Labels.of("port", Integer.toString(getPort())));
+            if (toStart) {
+                startServices();
+            }
+        } catch (SocketException | RuntimeException e) {
+            if (isRunning) {
+                stopServices();
+            }
+            socket.close();
+            metrics.forEach(MetricsRegistry.getInstance()::remove);
+            throw e;
+        }
+    }
+
+    private static int checkPacketSize(int packetSize) {
+        if (packetSize <= Packet.headerSize() || packetSize > 65507) {
+            throw new IllegalArgumentException("Invalid packet size");
+        }
+        return packetSize;
+    }
+
+    /*
+     * Один из нескольких сокетов на общем порту. С SO_REUSEPORT ядро Linux распределяет дейтаграммы
+     * по сокетам по хешу адресов отправителя и получателя, так что все пакеты одного клиента
+     * приходят в один и тот же сокет, а у каждого сокета свой поток приёма.
+     */
+    public static ReliableUdpSocket shard(int port, int shard) throws IOException {
+        var socket = new DatagramSocket(null);
+        try {
+            socket.setOption(StandardSocketOptions.SO_REUSEPORT, true);
+            socket.bind(new InetSocketAddress(port));
+            return new ReliableUdpSocket(65507, socket, Labels.of("port", Integer.toString(socket.getLocalPort()),
+                    "shard", Integer.toString(shard)), false);
+        } catch (IOException | RuntimeException e) {
+            socket.close();
+            throw e;
+        }
+    }
+
+    public static boolean isReusePortSupported() {
+        try (var socket = new DatagramSocket(null)) {
+            return socket.supportedOptions().contains(StandardSocketOptions.SO_REUSEPORT);
+        } catch (SocketException e) {
+            return false;
+        }
+    }
+
+    public ReliableUdpSocket(boolean toStart) throws SocketException {
+        this(65507, toStart);
+    }
+
+    public ReliableUdpSocket() throws SocketException {
+        this(65507, false);
+    }
+
+    public ReliableUdpSocket(int port) throws SocketException {
+        this(port, 65507);
+    }
+
+    public int getPort() {
+        return socket.getLocalPort();
+    }
+
+    // Прогон сериализации, упорядочивания и подтверждений без сети, чтобы JIT скомпилировал их заранее
+    public static void warmUp(int iterations) {
+        try (var warmSocket = new ReliableUdpSocket(0, false)) {
+            var address = InetAddress.getLoopbackAddress();
+            byte[] payload = new byte[1024];
+            for (int i = 0; i < iterations; i++) {
+                byte[] bytes = warmSocket.serialize(new Packet(false, i, payload));
+                warmSocket.bufferAndOrderPackets(warmSocket.deserialize(bytes), address, 0);
+                warmSocket.receivedQueue.poll();
+                warmSocket.registerPending(i, bytes, address, 0);
+                warmSocket.handleAck(i);
+            }
+        } catch (IOException e) {
+            logger.warn("Прогрев не выполнен: {}", e.getMessage());
+        }
+    }
+
+    // Ядро может урезать запрошенный размер (net.core.rmem_max / wmem_max), проверяем фактический
+    private void configureBuffers() throws SocketException {
+        socket.setSendBufferSize(SEND_BUFFER_SIZE);
+        socket.setReceiveBufferSize(RECEIVE_BUFFER_SIZE);
+        int send = socket.getSendBufferSize();
+        sendBufferSize = send;
+        int receive = socket.getReceiveBufferSize();
+        if ((send < SEND_BUFFER_SIZE || receive < RECEIVE_BUFFER_SIZE) && !bufferCapReported.getAndSet(true)) {
+            logger.warn("OS capped UDP socket buffers: SO_SNDBUF {} of {}, SO_RCVBUF {} of {} requested;"
+                    + " raise net.core.wmem_max / net.core.rmem_max", send, SEND_BUFFER_SIZE, receive,
+                    RECEIVE_BUFFER_SIZE);
+        } else {
+            logger.debug("UDP socket buffers: SO_SNDBUF {}, SO_RCVBUF {}", send, receive);
+        }
+    }
+
+    private void registerMetrics(Labels labels) {
+        var registry = MetricsRegistry.getInstance();
+        retransmits = registry.counter("server_udp_retransmits_total", "Retransmitted datagrams", labels);
+        rtt = registry.histogram("server_udp_rtt_seconds", "Round-trip time of acknowledged datagrams",
+                labels, Histogram.LATENCY_BUCKETS);
+        paritySent = registry.counter("server_udp_fec_parity_sent_total", "Parity datagrams sent", labels);
+        recovered = registry.counter("server_udp_fec_recovered_total",
+                "Lost datagrams rebuilt from parity", labels);
+        metrics.add(retransmits);
+        metrics.add(rtt);
+        corrupted = registry.counter("server_udp_corrupt_packets_total",
+                "Datagrams dropped on CRC32C mismatch", labels);
+        metrics.add(paritySent);
+        metrics.add(recovered);
+        metrics.add(corrupted);
+        metrics.add(registry.gauge("server_udp_pacing_rate_bytes", "Current pacing rate in bytes per second",
+                labels, () -> pacer.getRate(packetSize)));
+        metrics.add(registry.gauge("server_udp_srtt_microseconds", "Smoothed round-trip time",
+                labels, () -> pacer.getSmoothedRttNanos() / 1000));
+        metrics.add(registry.gauge("server_udp_window_in_flight", "Datagrams sent and not yet acknowledged",
+                labels, () -> MAX_WINDOW - windowAvailable.get()));
+        metrics.add(registry.gauge("server_udp_send_window", "Send window tuned to the bandwidth-delay product",
+                labels, () -> sendWindow));
+        metrics.add(registry.gauge("server_udp_bdp_bytes", "Estimated bandwidth-delay product",
+                labels, bdp::getBdp));
+        metrics.add(registry.gauge("server_udp_pending_packets", "Datagrams awaiting acknowledgement",
+                labels, pendingPackets::size));
+        metrics.add(registry.gauge("server_udp_reorder_buffer_depth", "Out-of-order datagrams buffered",
+                labels, orderedBuffer::size));
+        metrics.add(registry.gauge("server_udp_receive_queue_size", "Ordered messages not yet consumed",
+                labels, receivedQueue::size));
+        metrics.add(registry.gauge("server_udp_peer_window", "Receive window advertised by the peer",
+                labels, () -> peerWindow));
+    }
+
+    public void startServices() {
+        controlLock.lock();
+        resetState();
+        try {
+            if (!isRunning) {
+                isRunning = true;
+                scheduler = Executors.newScheduledThreadPool(3);
+
+                startReceiverThread();
+                startRetryChecker();
+                logger.info("Services started");
+            }
+        } finally {
+            controlLock.unlock();
+        }
+    }
+
+    private void startReceiverThread() {
+        if (scheduler != null && !scheduler.isShutdown()) {
+            scheduler.execute(() -> {
+                byte[] buffer = new byte[packetSize];
+                DatagramPacket packet = new DatagramPacket(buffer, buffer.length);
+
+                while (!scheduler.isShutdown()) {
+                    try {
+                        socket.receive(packet);
+                        if (exclusivePeer) {
+                            // Пакет обрабатывается целиком до или после resetSession, но не во время
+                            synchronized (this) {
+                                processPacket(packet);
+                            }
+                        } else {
+                            processPacket(packet);
+                        }
+                    } catch (Exception e) {
+                        if (!socket.isClosed()) {
+                            logger.error("Receive error", e);
+                        }
+                    }
+                }
+            });
+        }
+    }
+
+    private void processPacket(DatagramPacket udpPacket) throws IOException {
+        Packet packet;
+        try {
+            packet = deserialize(Arrays.copyOf(udpPacket.getData(), udpPacket.getLength()));
+        } catch (IOException e) {
+            // Повреждённый пакет отбрасываем без подтверждения: отправитель повторит его по таймауту
+            corrupted.increment();
+            logger.debug("Dropped datagram from {}:{}: {}", udpPacket.getAddress(), udpPacket.getPort(), e.getMessage());
+            return;
+        }
+        if (exclusivePeer && !fromBoundPeer(packet, udpPacket.getSocketAddress())) {
+            // Без подтверждения: клиент повторит пакет и будет обслужен после текущего
+            logger.trace("Dropped datagram from {}: socket is busy with {}", udpPacket.getSocketAddress(), boundPeer);
+            return;
+        }
+        PacketReceivedEvent.emit(getPort(), packet.sequenceNumber(), packet.isAck(), udpPacket.getLength());
+
+        if (packet.isAck()) {
+            var payload = ByteBuffer.wrap(packet.data());
+            int window = payload.remaining() >= Integer.BYTES ? payload.getInt() : -1;
+            if (payload.remaining() >= 2 * Integer.BYTES) {
+                peerLossReached = payload.getInt();
+                peerLossCount = payload.getInt();
+            }
+            handleAck(packet.sequenceNumber(), window);
+        } else if (packet.isParity()) {
+            handleParityPacket(packet, udpPacket.getAddress(), udpPacket.getPort());
+        } else {
+            handleDataPacket(packet, udpPacket.getAddress(), udpPacket.getPort());
+        }
+    }
+
+    // Привязывает только пакет данных: запоздавшее подтверждение от прошлого клиента не должно занять сокет
+    private boolean fromBoundPeer(Packet packet, SocketAddress sender) {
+        if (boundPeer == null && !packet.isAck()) {
+            boundPeer = sender;
+        }
+        return sender.equals(boundPeer);
+    }
+
+    private void handleDataPacket(Packet packet, InetAddress senderAddress, int senderPort) throws IOException {
+        countArrival(packet.sequenceNumber(), false);
+        acceptDataPacket(packet, senderAddress, senderPort);
+    }
+
+    /*
+     * Номера, через которые перескочил пришедший пакет, считаются потерянными. Восстановленный
+     * по чётности пакет тоже потерян, если его номер ещё не был пропущен. Повторы приходят
+     * с номерами позади highestSeen и второй раз не считаются.
+     */
+    private void countArrival(int seq, boolean rebuilt) {
+        if (!Sequence.after(seq, highestSeen)) {
+            return;
+        }
+        int skipped = seq - highestSeen - 1;
+        lossReached += seq - highestSeen;
+        lossCount += rebuilt ? skipped + 1 : skipped;
+        highestSeen = seq;
+    }
+
+    private void acceptDataPacket(Packet packet, InetAddress senderAddress, int senderPort) throws IOException {
+        logger.trace("received packet: {}, expected packet: {}", packet.sequenceNumber, expectedSeqNumber);
+        int seq = packet.sequenceNumber();
+        if (!bufferAndOrderPackets(packet, senderAddress, senderPort)) {
+            logger.trace("Dropped packet [seq={}]: receive window is full", seq);
+            if (anyDelivered) {
+                sendAck(expectedSeqNumber.get() - 1, senderAddress, senderPort);
+            }
+            return;
+        }
+        // Подтверждение накопительное: после заполнения дыры подтверждаем всё, что уже лежало в буфере
+        int expected = expectedSeqNumber.get();
+        if (Sequence.before(seq, expected)) {
+            sendAck(expected - 1, senderAddress, senderPort);
+        }
+        Packet rebuilt = fecDecoder.onData(seq, packet.data(), expected);
+        if (rebuilt != null) {
+            recovered(rebuilt, senderAddress, senderPort);
+        }
+    }
+
+    private void handleParityPacket(Packet packet, InetAddress senderAddress, int senderPort) throws IOException {
+        Packet rebuilt = fecDecoder.onParity(packet.sequenceNumber(), packet.data(), expectedSeqNumber.get());
+        if (rebuilt != null) {
+            recovered(rebuilt, senderAddress, senderPort);
+        }
+    }
+
+    private void recovered(Packet packet, InetAddress senderAddress, int senderPort) throws IOException {
+        recovered.increment();
+        logger.trace("Recovered packet [seq={}] from parity", packet.sequenceNumber());
+        countArrival(packet.sequenceNumber(), true);
+        acceptDataPacket(packet, senderAddress, senderPort);
+    }
+
+    // false - пакет не поместился в окно приёма и отброшен, отправитель повторит его позже
+    synchronized boolean bufferAndOrderPackets(Packet packet, InetAddress address, int port) {
+        int seq = packet.sequenceNumber();
+        if (seq - expectedSeqNumber.get() >= RECEIVE_WINDOW - receivedQueue.size()) {
+            return false;
+        }
+        byte[] data = Arrays.copyOf(packet.data(), packet.data().length);
+
+        orderedBuffer.put(seq, new Message(data, address, port, data.length));
+
+        while (!orderedBuffer.isEmpty()) {
+            int firstKey = orderedBuffer.firstKey();
+            if (firstKey == expectedSeqNumber.get()) {
+                Message msg = orderedBuffer.remove(firstKey);
+                receivedQueue.add(msg);
+                expectedSeqNumber.set(firstKey + 1);
+                anyDelivered = true;
+            } else if (Sequence.after(firstKey, expectedSeqNumber.get())) {
+                break;
+            } else {
+                orderedBuffer.remove(firstKey);
+            }
+        }
+        return true;
+    }
+
+    private synchronized int freeReceiveWindow() {
+        return Math.max(RECEIVE_WINDOW - receivedQueue.size() - orderedBuffer.size(), 0);
+    }
+
+    private void startRetryChecker() {
+        if (scheduler != null && !scheduler.isShutdown()) {
+            scheduler.scheduleAtFixedRate(() -> {
+                long now = System.currentTimeMillis();
+                pendingPackets.forEach((seq, info) -> {
+                    long elapsed = now - info.lastSentTime;
+                    int timeout = BASE_RETRY_TIMEOUT_MS * (1 << info.retries);
+
+                    if (elapsed > timeout) {
+                        resendPacket(seq, info);
+                    }
+                });
+                if (FEC_ENABLED) {
+                    adaptFecGroup();
+                    var parity = fecEncoder.flushIfIdle(FEC_FLUSH_NANOS);
+                    if (parity != null) {
+                        sendParity(parity);
+                    }
+                }
+            }, 100, 100, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /*
+     * Размер группы подбирается по сглаженной доле потерь, о которой сообщает получатель:
+     * примерно одна потеря на две группы. При потерях меньше 0.1% пакеты чётности не отправляются.
+     * Доля повторов у отправителя не годится: восстановленный по чётности пакет не повторяется,
+     * и с работающей FEC она падала до нуля, выключая FEC обратно.
+     */
+    private void adaptFecGroup() {
+        int reached = peerLossReached;
+        int lost = peerLossCount;
+        int reachedDelta = reached - lastLossReached;
+        if (reachedDelta <= 0) {
+            return;
+        }
+        double sample = (double) (lost - lastLossCount) / reachedDelta;
+        lastLossReached = reached;
+        lastLossCount = lost;
+        lossRate = lossRate * 0.8 + sample * 0.2;
+        fecGroupSize = lossRate < 0.001
+                ? 0
+                : (int) Math.max(2, Math.min(WINDOW_SIZE, Math.round(0.5 / lossRate)));
+    }
+
+    private void sendParity(FecEncoder.Parity parity) {
+        try {
+            byte[] bytes = serialize(parity.packet());
+            socket.send(new DatagramPacket(bytes, bytes.length, parity.address(), parity.port()));
+            paritySent.increment();
+        } catch (IOException e) {
+            logger.debug("Failed to send parity [seq={}]: {}", parity.packet().sequenceNumber(), e.getMessage());
+        }
+    }
+
+    private void resendPacket(int seqNumber, PacketInfo info) {
+        try {
+            DatagramPacket dp = new DatagramPacket(
+                    info.data,
+                    info.data.length,
+                    info.address,
+                    info.port
+            );
+
+            socket.send(dp);
+            retransmits.increment();
+            info.retries++;
+            info.lastSentTime = System.currentTimeMillis();
+            PacketRetransmitEvent.emit(getPort(), seqNumber, info.retries, info.data.length);
+            logger.trace("Resent packet [seq={}, retry={}]", seqNumber, info.retries);
+        } catch (IOException e) {
+            logger.error("Failed to resend packet [seq={}]: {}", seqNumber, e.getMessage());
+        }
+    }
+
+    public void send(byte[] data, InetAddress address, int port) throws IOException {
+        send(data, address, port, 0);
+    }
+
+    public void send(byte[] data, InetAddress address, int port, long timeoutMillis) throws IOException {
+        final long startTime = System.currentTimeMillis();
+        if (PACING_ENABLED) {
+            pacer.pace(Packet.headerSize() + data.length);
+        }
+        windowLock.lock();
+        try {
+            while (!canSend()) {
+                if (timeoutMillis > 0) {
+                    long elapsed = System.currentTimeMillis() - startTime;
+                    if (elapsed >= timeoutMillis) {
+                        throw new SocketTimeoutException("Send timeout after " + timeoutMillis + "ms");
+                    }
+                    long remaining = timeoutMillis - elapsed;
+                    try {
+                        windowNotFull.await(remaining, TimeUnit.MILLISECONDS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new IOException("Send interrupted", e);
+                    }
+                } else {
+                    try {
+                        windowNotFull.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new IOException("Send interrupted", e);
+                    }
+                }
+            }
+            int currentSeq = nextSeqNumber.getAndIncrement();
+            Packet packet = new Packet(false, currentSeq, data);
+            byte[] bytes = serialize(packet);
+            registerPending(currentSeq, bytes, address, port);
+            DatagramPacket dp = new DatagramPacket(bytes, bytes.length, address, port);
+            socket.send(dp);
+            PacketSentEvent.emit(getPort(), currentSeq, bytes.length);
+            int groupSize = fecGroupSize;
+            if (FEC_ENABLED && groupSize > 1) {
+                var parity = fecEncoder.add(currentSeq, data, address, port, groupSize);
+                if (parity != null) {
+                    sendParity(parity);
+                }
+            }
+        } finally {
+            windowLock.unlock();
+        }
+    }
+
+    // Хотя бы одна дейтаграмма в полёте разрешена всегда: она служит пробой закрытого окна получателя
+    private boolean canSend() {
+        int inFlight = MAX_WINDOW - windowAvailable.get();
+        return windowAvailable.get() > 0 && inFlight < Math.max(Math.min(peerWindow, sendWindow), 1);
+    }
+
+    /*
+     * Окно отправки - BDP с запасом BDP_GAIN, чтобы темп, выведенный из окна, мог расти.
+     * Неподтверждённые дейтаграммы хранятся в pendingPackets, а не в буфере сокета: при включённом
+     * темпе пакеты уходят в ядро по одному, и буфер отправки окно не ограничивает. Без темпа окно
+     * уходит пачкой, поэтому оно урезается до SO_SNDBUF; буфер при необходимости увеличивается
+     * до MAX_BUFFER_SIZE, но не выше net.core.wmem_max.
+     */
+    private void retune() {
+        long needed = (long) Math.ceil(BDP_GAIN * bdp.getBdp() / packetSize) + 1;
+        int window = (int) Math.max(WINDOW_SIZE, Math.min(MAX_WINDOW, needed));
+        if ((long) window * packetSize > sendBufferSize && sendBufferSize < MAX_BUFFER_SIZE) {
+            try {
+                socket.setSendBufferSize((int) Math.min(2L * window * packetSize, MAX_BUFFER_SIZE));
+                sendBufferSize = socket.getSendBufferSize();
+            } catch (SocketException e) {
+                logger.debug("Failed to grow SO_SNDBUF: {}", e.getMessage());
+            }
+        }
+        int fits = sendBufferSize / packetSize;
+        if (!PACING_ENABLED && window > fits) {
+            if (!windowCapReported.getAndSet(true)) {
+                logger.warn("Send window {} clamped to {} by SO_SNDBUF {}: enable server.udp.pacing"
+                        + " or raise net.core.wmem_max", window, Math.max(WINDOW_SIZE, fits), sendBufferSize);
+            }
+            window = Math.max(WINDOW_SIZE, fits);
+        }
+        if (window != sendWindow) {
+            logger.debug("Send window {} -> {} (rate {} B/s, min RTT {} us)",
+                    sendWindow, window, bdp.getRate(), bdp.getMinRttNanos() / 1000);
+            sendWindow = window;
+            pacer.setWindow(window);
+        }
+    }
+
+    void registerPending(int seqNumber, byte[] bytes, InetAddress address, int port) {
+        synchronized (pendingPackets) {
+            pendingPackets.put(seqNumber, new PacketInfo(bytes, address, port));
+            windowAvailable.decrementAndGet();
+        }
+    }
+
+    void handleAck(int ackNumber) {
+        handleAck(ackNumber, -1);
+    }
+
+    // window < 0 - подтверждение без объявленного окна
+    void handleAck(int ackNumber, int window) {
+        logger.trace("received ACK {}, window {}", ackNumber, window);
+        int previousWindow = peerWindow;
+        if (window >= 0) {
+            peerWindow = window;
+        }
+
+        windowLock.lock();
+        try {
+            synchronized (pendingPackets) {
+                    // Запоздавшее подтверждение после более нового: окно в нём уже учтено выше
+                    if (Sequence.before(ackNumber, lastAcked.get())) {
+                        return;
+                    }
+                    int delta = ackNumber - lastAcked.get();
+                    if (delta == 0 && window > previousWindow) {
+                        // Окно выросло без новых данных: следующий пакет был отброшен переполненным
+                        // получателем, повторяем его сразу, а не через BASE_RETRY_TIMEOUT_MS
+                        PacketInfo dropped = pendingPackets.get(ackNumber + 1);
+                        if (dropped != null) {
+                            resendPacket(ackNumber + 1, dropped);
+                        }
+                    }
+
+                    // Обновляем счетчики
+                    lastAcked.set(ackNumber);
+                    PacketInfo acked = pendingPackets.get(ackNumber);
+                    long rttNanos = 0;
+                    if (acked != null && acked.retries == 0) {
+                        rttNanos = System.nanoTime() - acked.firstSentNanos;
+                        rtt.observeNanos(rttNanos);
+                        pacer.onRtt(rttNanos);
+                        bdp.onRtt(rttNanos);
+                    }
+                    int pendingBefore = pendingPackets.size();
+                    long ackedBytes = 0;
+                    for (var iterator = pendingPackets.entrySet().iterator(); iterator.hasNext(); ) {
+                        var entry = iterator.next();
+                        if (!Sequence.after(entry.getKey(), ackNumber)) {
+                            ackedBytes += entry.getValue().data.length;
+                            iterator.remove();
+                        }
+                    }
+                    PacketAckEvent.emit(getPort(), ackNumber, pendingBefore - pendingPackets.size(), rttNanos);
+
+                    // Корректируем окно отправки
+                    int newWindow = Math.min(MAX_WINDOW, windowAvailable.get() + delta);
+                    windowAvailable.set(newWindow);
+                    if (ackedBytes > 0 && bdp.onDelivered(ackedBytes)) {
+                        retune();
+                    }
+
+            }
+            windowNotFull.signalAll();
+        } finally {
+            windowLock.unlock();
+        }
+    }
+
+    public Message receive(int timeout) throws SocketTimeoutException {
+        try {
+            Message msg = receivedQueue.poll(timeout, TimeUnit.MILLISECONDS);
+            if (msg == null) throw new SocketTimeoutException("Receive timeout");
+            onConsumed();
+            return msg;
+        } catch (InterruptedException e) {
+            throw new SocketTimeoutException("Interrupted during receive");
+        }
+    }
+
+    public Message receive() throws SocketTimeoutException {
+        try {
+            if (soTimeout > 0) return receive(soTimeout);
+            Message msg = receivedQueue.take();
+            onConsumed();
+            return msg;
+        } catch (InterruptedException e) {
+            throw new SocketTimeoutException("Interrupted during receive");
+        }
+    }
+
+    /*
+     * Окно открылось после объявленного нуля или освободилась половина после почти закрытого -
+     * сообщаем отправителю, не дожидаясь его повтора. Иначе после объявленного окна в 1-2 дейтаграммы
+     * отправитель так и держит их в полёте, пока не придут новые данные.
+     */
+    private void onConsumed() {
+        int threshold = Math.max(RECEIVE_WINDOW / 2, 1);
+        if (advertisedWindow >= threshold || peerAddress == null) {
+            return;
+        }
+        if (advertisedWindow > 0 && freeReceiveWindow() < threshold) {
+            return;
+        }
+        try {
+            sendAck(expectedSeqNumber.get() - 1, peerAddress, peerPort);
+        } catch (IOException e) {
+            logger.debug("Failed to send window update: {}", e.getMessage());
+        }
+    }
+
+    private void sendAck(int seqNumber, InetAddress senderAddress, int senderPort) throws IOException {
+        int window = freeReceiveWindow();
+        advertisedWindow = window;
+        peerAddress = senderAddress;
+        peerPort = senderPort;
+        // Свободное окно, затем счётчики потерь для FEC отправителя; старая сторона читает только окно
+        Packet ack = new Packet(true, seqNumber, ByteBuffer.allocate(3 * Integer.BYTES)
+                .putInt(window).putInt(lossReached).putInt(lossCount).array());
+        byte[] bytes = serialize(ack);
+        DatagramPacket dp = new DatagramPacket(bytes, bytes.length, senderAddress, senderPort);
+        socket.send(dp);
+    }
+
+    byte[] serialize(Packet packet) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(Packet.headerSize() + packet.data().length);
+        buffer.putInt(packet.sequenceNumber());
+        buffer.put(packet.type());
+        buffer.putInt(packet.data().length);
+        buffer.putInt(checksum(buffer.array(), packet.data()));
+        buffer.put(packet.data());
+        return buffer.array();
+    }
+
+    Packet deserialize(byte[] rawData) throws IOException {
+        try {
+            ByteBuffer buffer = ByteBuffer.wrap(rawData);
+            int sequenceNumber = buffer.getInt();
+            byte type = buffer.get();
+            int dataLength = buffer.getInt();
+            int crc = buffer.getInt();
+
+            if (dataLength < 0 || dataLength > buffer.remaining()) {
+                throw new IOException("Invalid packet length");
+            }
+
+            byte[] data = new byte[dataLength];
+            buffer.get(data);
+            if (crc != checksum(rawData, data)) {
+                throw new IOException("CRC32C mismatch [seq=" + sequenceNumber + "]");
+            }
+            return new Packet(type, sequenceNumber, data);
+        } catch (BufferUnderflowException e) {
+            throw new IOException("Malformed packet", e);
+        }
+    }
+
+    // CRC32C по seq, типу и длине (первые 9 байт) и данным; java.util.zip.CRC32C - интринсик JIT
+    private static int checksum(byte[] header, byte[] data) {
+        CRC32C crc = new CRC32C();
+        crc.update(header, 0, Packet.headerSize() - Integer.BYTES);
+        crc.update(data, 0, data.length);
+        return (int) crc.getValue();
+    }
+
+    /*
+     * Номера пакетов и окна у сокета одни на всех отправителей. Если несколько клиентов подключаются
+     * одновременно, повтор чужого CONNECT попадал в чужую нумерацию и подтверждался, не будучи принят.
+     */
+    public void setExclusivePeer(boolean exclusive) {
+        this.exclusivePeer = exclusive;
+    }
+
+    /*
+     * Начинает новый сеанс без остановки потоков. В отличие от stopServices/startServices, здесь
+     * нет промежутка, когда поток приёма работает со старым состоянием: подтверждённый в нём
+     * CONNECT следующего клиента терялся при сбросе.
+     */
+    public synchronized void resetSession() {
+        resetState();
+    }
+
+    public void setSoTimeout(int timeout) {
+        this.soTimeout = Math.max(timeout, 0);
+    }
+
+    public void send(String message, InetAddress address, int port) throws IOException {
+        send(message, address, port, 0);
+    }
+
+    public void send(String message, InetAddress address, int port, int timeout) throws IOException {
+        send(message, StandardCharsets.UTF_8.name(), address, port, timeout);
+    }
+
+    public void send(String message, String charsetName, InetAddress address, int port, int timeout) throws IOException {
+        try {
+            byte[] data = message.getBytes(charsetName);
+            send(data, address, port, timeout);
+        } catch (UnsupportedEncodingException e) {
+            throw new IOException("Unsupported charset: " + charsetName, e);
+        }
+    }
+
+    public void send(String message, String charsetName, InetAddress address, int port) throws IOException {
+        send(message, charsetName, address, port, 0);
+    }
+
+    public void stopServices() {
+        controlLock.lock();
+        resetState();
+        try {
+            if (isRunning) {
+                isRunning = false;
+                // Останавливаем пул потоков
+                if (scheduler != null) {
+                    scheduler.shutdown();
+                    try {
+                        if (!scheduler.awaitTermination(500, TimeUnit.MILLISECONDS)) {
+                            scheduler.shutdownNow();
+                        }
+                    } catch (InterruptedException e) {
+                        logger.error("Shutdown interrupted", e);
+                        Thread.currentThread().interrupt();
+                    }
+                    scheduler = null; // Важно: сбрасываем ссылку
+                }
+                logger.info("Services stopped");
+            }
+        } finally {
+            controlLock.unlock();
+        }
+    }
+
+    void resetState() {
+        resetState(0);
+    }
+
+    // Тесты начинают нумерацию у Integer.MAX_VALUE, чтобы пройти переход через него за пару пакетов
+    void resetState(int firstSeq) {
+        nextSeqNumber.set(firstSeq);
+        lastAcked.set(firstSeq - 1);
+        expectedSeqNumber.set(firstSeq);
+        pendingPackets.clear();
+        receivedQueue.clear();
+        orderedBuffer.clear();
+        anyDelivered = false;
+        windowAvailable.set(MAX_WINDOW);
+        sendWindow = WINDOW_SIZE;
+        peerWindow = WINDOW_SIZE;
+        advertisedWindow = RECEIVE_WINDOW;
+        highestSeen = firstSeq - 1;
+        lossReached = 0;
+        lossCount = 0;
+        peerLossReached = 0;
+        peerLossCount = 0;
+        lastLossReached = 0;
+        lastLossCount = 0;
+        peerAddress = null;
+        boundPeer = null;
+        fecEncoder.reset();
+        fecDecoder.reset();
+        pacer.reset();
+        pacer.setWindow(WINDOW_SIZE);
+        bdp.reset();
+    }
+
+    @Override
+    public void close() {
+        stopServices();
+        socket.close();
+        metrics.forEach(MetricsRegistry.getInstance()::remove);
+    }
+}
\ No newline at end of file
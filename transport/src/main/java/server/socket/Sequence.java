@@ -0,0 +1,24 @@
+package server.socket;
+
+import java.util.Comparator;
+
+/*
+ * Номера пакетов идут по кругу через все 2^32 значения int и сравниваются по модулю (RFC 1982):
+ * a раньше b, если (a - b) < 0 с переполнением. Верно, пока номера ближе 2^31 друг к другу -
+ * окна отправки и приёма на много порядков меньше, так что передача любой длины не ломается
+ * на переходе через Integer.MAX_VALUE.
+ */
+final class Sequence {
+    static final Comparator<Integer> ORDER = (a, b) -> Integer.signum(a - b);
+
+    private Sequence() {
+    }
+
+    static boolean before(int a, int b) {
+        return a - b < 0;
+    }
+
+    static boolean after(int a, int b) {
+        return a - b > 0;
+    }
+}
@@ -0,0 +1,103 @@
+package server.socket;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ReliableUdpSocketTest {
+    private static final InetAddress LOOPBACK = InetAddress.getLoopbackAddress();
+
+    private ReliableUdpSocket socket;
+
+    @BeforeEach
+    void open() throws IOException {
+        socket = new ReliableUdpSocket(0, false);
+    }
+
+    @AfterEach
+    void close() {
+        socket.close();
+    }
+
+    @Test
+    void ordersPacketsAcrossMaxValue() throws IOException {
+        int first = Integer.MAX_VALUE - 1;
+        socket.resetState(first);
+        // Пакеты после перехода приходят раньше тех, что до него
+        assertTrue(socket.bufferAndOrderPackets(packet(Integer.MIN_VALUE + 1), LOOPBACK, 0));
+        assertTrue(socket.bufferAndOrderPackets(packet(Integer.MIN_VALUE), LOOPBACK, 0));
+        assertTrue(socket.bufferAndOrderPackets(packet(Integer.MAX_VALUE), LOOPBACK, 0));
+        assertThrows(SocketTimeoutException.class, () -> socket.receive(10));
+
+        assertTrue(socket.bufferAndOrderPackets(packet(first), LOOPBACK, 0));
+        for (int seq : new int[]{first, Integer.MAX_VALUE, Integer.MIN_VALUE, Integer.MIN_VALUE + 1}) {
+            assertEquals(Integer.toString(seq), socket.receive(100).text());
+        }
+    }
+
+    @Test
+    void dropsDuplicateFromBeforeTheWrap() throws IOException {
+        socket.resetState(Integer.MAX_VALUE);
+        socket.bufferAndOrderPackets(packet(Integer.MAX_VALUE), LOOPBACK, 0);
+        assertEquals(Integer.toString(Integer.MAX_VALUE), socket.receive(100).text());
+
+        socket.bufferAndOrderPackets(packet(Integer.MAX_VALUE), LOOPBACK, 0);
+        assertThrows(SocketTimeoutException.class, () -> socket.receive(10));
+    }
+
+    @Test
+    void serializeRoundTrip() throws IOException {
+        byte[] payload = "payload".getBytes(StandardCharsets.UTF_8);
+        var packet = socket.deserialize(socket.serialize(new ReliableUdpSocket.Packet(
+                ReliableUdpSocket.Packet.PARITY, Integer.MIN_VALUE, payload)));
+
+        assertEquals(ReliableUdpSocket.Packet.PARITY, packet.type());
+        assertEquals(Integer.MIN_VALUE, packet.sequenceNumber());
+        assertArrayEquals(payload, packet.data());
+    }
+
+    @Test
+    void rejectsAnySingleFlippedBit() throws IOException {
+        byte[] bytes = socket.serialize(new ReliableUdpSocket.Packet(false, 42, new byte[64]));
+        for (int bit = 0; bit < bytes.length * 8; bit++) {
+            byte[] corrupted = bytes.clone();
+            corrupted[bit / 8] ^= (byte) (1 << (bit % 8));
+            assertThrows(IOException.class, () -> socket.deserialize(corrupted), "bit " + bit);
+        }
+    }
+
+    @Test
+    void deliversAcrossMaxValueOverLoopback() throws IOException {
+        try (var sender = new ReliableUdpSocket(0, true)) {
+            socket.startServices();
+            int first = Integer.MAX_VALUE - 10;
+            socket.resetState(first);
+            sender.resetState(first);
+
+            assertTimeoutPreemptively(Duration.ofSeconds(30), () -> {
+                for (int i = 0; i < 20; i++) {
+                    sender.send(Integer.toString(i), LOOPBACK, socket.getPort());
+                }
+                for (int i = 0; i < 20; i++) {
+                    assertEquals(Integer.toString(i), socket.receive(5_000).text());
+                }
+            });
+        }
+    }
+
+    private static ReliableUdpSocket.Packet packet(int seq) {
+        return new ReliableUdpSocket.Packet(false, seq, Integer.toString(seq).getBytes(StandardCharsets.UTF_8));
+    }
+}
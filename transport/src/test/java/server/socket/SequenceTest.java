@@ -0,0 +1,42 @@
+package server.socket;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.TreeSet;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SequenceTest {
+
+    @Test
+    void comparesAcrossMaxValue() {
+        assertTrue(Sequence.before(Integer.MAX_VALUE, Integer.MIN_VALUE));
+        assertTrue(Sequence.after(Integer.MIN_VALUE, Integer.MAX_VALUE));
+        assertTrue(Sequence.before(Integer.MAX_VALUE - 5, Integer.MIN_VALUE + 5));
+        assertFalse(Sequence.after(Integer.MAX_VALUE, Integer.MIN_VALUE));
+        assertFalse(Sequence.before(Integer.MIN_VALUE, Integer.MAX_VALUE));
+    }
+
+    @Test
+    void comparesAcrossZero() {
+        assertTrue(Sequence.before(-1, 0));
+        assertTrue(Sequence.after(0, -1));
+    }
+
+    @Test
+    void equalNumbersAreNeitherBeforeNorAfter() {
+        assertFalse(Sequence.before(Integer.MAX_VALUE, Integer.MAX_VALUE));
+        assertFalse(Sequence.after(Integer.MAX_VALUE, Integer.MAX_VALUE));
+    }
+
+    @Test
+    void orderKeepsWrappedNumbersInSendingOrder() {
+        var sorted = new TreeSet<>(Sequence.ORDER);
+        sorted.addAll(List.of(Integer.MIN_VALUE + 1, Integer.MAX_VALUE, Integer.MIN_VALUE, Integer.MAX_VALUE - 1));
+        assertEquals(List.of(Integer.MAX_VALUE - 1, Integer.MAX_VALUE, Integer.MIN_VALUE, Integer.MIN_VALUE + 1),
+                List.copyOf(sorted));
+    }
+}